@@ -1,14 +1,21 @@
 package hudson.plugins.sauce_ondemand;
 
+import com.saucelabs.ci.JobInformation;
 import hudson.model.Action;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.bind.JavaScriptMethod;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Ross Rowe
@@ -37,6 +44,125 @@ public abstract class AbstractAction implements Action {
         return "sauce-ondemand-report";
     }
 
+    /**
+     * The number of jobs on a page if the page size isn't specified.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * The maximum number of jobs which can be requested in a single page.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * @return the Sauce jobs to be displayed
+     */
+    public abstract List<JobInformation> getJobs();
+
+    /**
+     * @return the index used to filter, sort and page the jobs, by default built from {@link #getJobs()} on each call
+     */
+    protected JobQueryIndex getJobQueryIndex() {
+        return new JobQueryIndex(getJobs());
+    }
+
+    /**
+     * Invoked by the Sauce results panels to display a page of the jobs.
+     *
+     * @param start      the position of the first job to be returned
+     * @param limit      the number of jobs to be returned
+     * @param sort       the field to sort on (name, status, os, browser or version), null to display the jobs in the
+     *                   order in which they were run
+     * @param descending true to sort in descending order
+     * @param status     only include jobs with this status, ignored if null or empty
+     * @param os         only include jobs run on this OS, ignored if null or empty
+     * @param browser    only include jobs run on this browser, ignored if null or empty
+     * @param name       only include jobs whose name starts with this prefix, ignored if null or empty
+     * @return the page of jobs, as a JSON object
+     */
+    @JavaScriptMethod
+    public JSONObject getJobsPage(int start, int limit, String sort, boolean descending, String status, String os, String browser, String name) {
+        Map<String, String> filters = new HashMap<String, String>();
+        filters.put("status", status);
+        filters.put("os", os);
+        filters.put("browser", browser);
+        filters.put("name", name);
+        return queryJobs(filters, sort, descending, start, limit);
+    }
+
+    /**
+     * JSON API which returns a page of the jobs, accepting the <code>start</code>, <code>limit</code>,
+     * <code>sort</code>, <code>descending</code>, <code>status</code>, <code>os</code>, <code>browser</code> and
+     * <code>name</code> request parameters.
+     *
+     * @param req
+     * @param rsp
+     * @throws IOException
+     */
+    public void doJobs(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Map<String, String> filters = new HashMap<String, String>();
+        filters.put("status", req.getParameter("status"));
+        filters.put("os", req.getParameter("os"));
+        filters.put("browser", req.getParameter("browser"));
+        filters.put("name", req.getParameter("name"));
+        JSONObject data = queryJobs(filters, req.getParameter("sort"), Boolean.parseBoolean(req.getParameter("descending")),
+                parseInt(req.getParameter("start"), 0), parseInt(req.getParameter("limit"), DEFAULT_PAGE_SIZE));
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(data.toString());
+    }
+
+    /**
+     * @return the page of jobs, along with the total number of matching jobs and the values which can be filtered on
+     */
+    private JSONObject queryJobs(Map<String, String> filters, String sort, boolean descending, int start, int limit) {
+        if (limit <= 0) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+        JobQueryIndex index = getJobQueryIndex();
+        JobQueryIndex.Page page = index.query(filters, sort, descending, start, limit);
+        JSONArray jobs = new JSONArray();
+        for (JobInformation job : page.getJobs()) {
+            jobs.add(toJSON(job));
+        }
+        JSONObject data = new JSONObject();
+        data.put("start", page.getStart());
+        data.put("limit", limit);
+        data.put("total", page.getTotal());
+        data.put("size", index.size());
+        data.put("jobs", jobs);
+        JSONObject values = new JSONObject();
+        values.put("status", index.getValues("status"));
+        values.put("os", index.getValues("os"));
+        values.put("browser", index.getValues("browser"));
+        data.put("values", values);
+        return data;
+    }
+
+    private static JSONObject toJSON(JobInformation job) {
+        JSONObject jobData = new JSONObject();
+        jobData.put("jobId", job.getJobId());
+        jobData.put("name", job.getName());
+        jobData.put("os", job.getOs());
+        jobData.put("browser", job.getBrowser());
+        jobData.put("version", job.getVersion());
+        jobData.put("status", job.getStatus());
+        jobData.put("videoUrl", job.getVideoUrl());
+        jobData.put("logUrl", job.getLogUrl());
+        return jobData;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      *
      * @param req
@@ -0,0 +1,222 @@
+package hudson.plugins.sauce_ondemand;
+
+/**
+ * Stops calls being made to a service which is failing or responding slowly, so that callers can fall back to the
+ * data they already have immediately rather than waiting for the service.
+ * <p/>
+ * The outcome of the most recent calls is recorded, a call is treated as failed if it threw an error or took longer
+ * than the slow call threshold.  Once enough calls have been recorded and the proportion of failed calls reaches the
+ * failure rate threshold, the breaker opens and calls are refused.  After the open duration has passed a single probe
+ * call is allowed through (the breaker is half open), which closes the breaker if it succeeds or reopens it if it
+ * fails.
+ * <p/>
+ * Each call which is allowed is given a {@link Permit}, which its outcome is recorded with.  Outcomes are only recorded
+ * for calls which were allowed since the breaker last opened or closed, so a call which was allowed before the
+ * breaker opened and finishes while it is half open isn't mistaken for the probe.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the breaker.
+     */
+    public enum State {
+        /**
+         * Calls are allowed.
+         */
+        CLOSED,
+        /**
+         * Calls are refused.
+         */
+        OPEN,
+        /**
+         * A single probe call is allowed.
+         */
+        HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThreshold;
+    private final long openDuration;
+
+    /**
+     * Outcomes of the most recent calls, true for a failed call, used as a ring buffer.
+     */
+    private final boolean[] outcomes;
+    private int next;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * Incremented each time the breaker opens or closes, so that the outcomes of calls allowed before then are
+     * ignored.
+     */
+    private long generation;
+
+    /**
+     * @param windowSize           the number of recent calls whose outcome is recorded
+     * @param minimumCalls         the number of calls which must be recorded before the breaker can open
+     * @param failureRateThreshold the proportion of failed calls at which the breaker opens
+     * @param slowCallThreshold    calls taking at least this many milliseconds are treated as failed
+     * @param openDuration         the number of milliseconds calls are refused for once the breaker has opened
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallThreshold, long openDuration) {
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Determines whether a call can be made.  Callers which are allowed to make a call must record its outcome using
+     * {@link #record(Permit, boolean, long)}.
+     *
+     * @return the permit to record the outcome of the call with, or null if the call should be refused
+     */
+    public synchronized Permit acquire() {
+        switch (state) {
+            case CLOSED:
+                return new Permit(generation, false);
+            case OPEN:
+                if (currentTimeMillis() - openedAt < openDuration) {
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return new Permit(generation, true);
+            default:
+                if (probing) {
+                    return null;
+                }
+                probing = true;
+                return new Permit(generation, true);
+        }
+    }
+
+    /**
+     * @return true if calls are currently being refused, without affecting the state of the breaker
+     */
+    public synchronized boolean isOpen() {
+        return (state == State.OPEN && currentTimeMillis() - openedAt < openDuration) || (state == State.HALF_OPEN && probing);
+    }
+
+    /**
+     * Records the outcome of a call.  The outcome is ignored if the breaker has opened or closed since the call was
+     * allowed.
+     *
+     * @param permit  the permit which the call was allowed with
+     * @param success true if the call was successful
+     * @param elapsed the number of milliseconds the call took
+     */
+    public synchronized void record(Permit permit, boolean success, long elapsed) {
+        if (permit.generation != generation) {
+            //call was allowed before the breaker last opened or closed
+            return;
+        }
+        boolean failed = !success || elapsed >= slowCallThreshold;
+        if (permit.probe) {
+            probing = false;
+            if (failed) {
+                open();
+            } else {
+                close();
+            }
+            return;
+        }
+        if (calls == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+            open();
+        }
+    }
+
+    /**
+     * @return the number of milliseconds until a probe call will be allowed, 0 if calls are allowed
+     */
+    public synchronized long getRetryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openDuration - (currentTimeMillis() - openedAt));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of recent calls whose outcome is recorded
+     */
+    public synchronized int getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the number of recent calls which failed or were slow
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return state + " (" + failures + " of the last " + calls + " calls failed)";
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = currentTimeMillis();
+        generation++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        generation++;
+        calls = 0;
+        failures = 0;
+        next = 0;
+    }
+
+    /**
+     * Allows a call to be made, see {@link #acquire()}.
+     */
+    public static final class Permit {
+
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+
+        /**
+         * @return true if the call is the probe call which is allowed while the breaker is half open
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+    }
+
+    /**
+     * @return the current time in milliseconds, overridden by tests
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
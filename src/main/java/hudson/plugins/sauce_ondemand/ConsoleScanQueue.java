@@ -0,0 +1,285 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves the scanning of console output for Sauce session ids off the thread which writes the build log.
+ * <p/>
+ * The writing thread copies each line into a fixed size ring buffer, which doesn't allocate or wait, and a single
+ * background thread shared by all builds scans the buffered lines with a {@link SessionIdScanner}.  The buffer has
+ * a single producer (the thread writing the log) and a single consumer at a time (the background thread, or a
+ * caller of {@link #drain()}), so the producer never takes a lock.
+ * <p/>
+ * If a line doesn't fit in the free space of the buffer, because the background thread has fallen behind or the
+ * line is longer than the buffer, a copy of it is added to a bounded overflow list instead, which the consumer scans
+ * after the buffer.  Later lines are added to the overflow list until the consumer has emptied it, so the lines are
+ * always scanned in the order they were written.  If the overflow list is also full, the line is dropped.  The writing
+ * thread never scans a line itself.  The overflowed and dropped lines are counted, see {@link #getOverflowCount()}
+ * and {@link #getDroppedCount()}.
+ */
+public class ConsoleScanQueue {
+
+    private static final Logger logger = Logger.getLogger(ConsoleScanQueue.class.getName());
+
+    /**
+     * Default capacity of the buffer, in bytes.
+     */
+    private static final int CAPACITY = Integer.getInteger(ConsoleScanQueue.class.getName() + ".capacity", 256 * 1024);
+
+    /**
+     * How often the background thread scans the buffers of running builds.
+     */
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Size of the header which precedes each line in the buffer, holding the length of the line.
+     */
+    private static final int HEADER_SIZE = 4;
+
+    /**
+     * The queues of running builds, scanned by the background thread.
+     */
+    private static final Queue<ConsoleScanQueue> ACTIVE = new ConcurrentLinkedQueue<ConsoleScanQueue>();
+
+    private static Thread consumer;
+
+    private final SessionIdScanner scanner;
+
+    private final byte[] buffer;
+    private final int mask;
+
+    /**
+     * Position at which the next line will be written, only updated by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Position of the next line to be scanned, only updated by the consumer.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Copies of the lines which didn't fit in the buffer, scanned by the consumer after the buffered lines.
+     */
+    private final Queue<byte[]> overflow = new ConcurrentLinkedQueue<byte[]>();
+
+    /**
+     * Total length of the lines in {@link #overflow}, which is bounded by the capacity of the buffer.
+     */
+    private final AtomicLong overflowSize = new AtomicLong();
+
+    private final AtomicLong overflows = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Holds the line being scanned, only used by the consumer.
+     */
+    private byte[] line = new byte[256];
+
+    /**
+     * @param scanner the scanner which the buffered lines are passed to
+     */
+    public ConsoleScanQueue(SessionIdScanner scanner) {
+        this(scanner, CAPACITY);
+    }
+
+    /**
+     * @param scanner  the scanner which the buffered lines are passed to
+     * @param capacity the capacity of the buffer in bytes, rounded up to a power of two
+     */
+    ConsoleScanQueue(SessionIdScanner scanner, int capacity) {
+        this.scanner = scanner;
+        int size = Integer.highestOneBit(Math.max(capacity, 64) - 1) << 1;
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Starts scanning the buffered lines in the background.
+     */
+    public void start() {
+        ACTIVE.add(this);
+        synchronized (ConsoleScanQueue.class) {
+            if (consumer == null) {
+                consumer = new Thread(new Runnable() {
+                    public void run() {
+                        consume();
+                    }
+                }, "Sauce session id scanner");
+                consumer.setDaemon(true);
+                consumer.start();
+            } else {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    /**
+     * Buffers a line to be scanned in the background, adding it to the overflow list if it doesn't fit in the buffer,
+     * or dropping it if it doesn't fit in either.  Must only be called by the thread which writes the output.
+     *
+     * @param b   buffer holding the line
+     * @param off offset of the line within the buffer
+     * @param len length of the line
+     */
+    public void offer(byte[] b, int off, int len) {
+        long t = tail.get();
+        if (!overflow.isEmpty() || HEADER_SIZE + len > buffer.length - (t - head.get())) {
+            if (overflowSize.get() + len > buffer.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+            overflowSize.addAndGet(len);
+            overflow.add(Arrays.copyOfRange(b, off, off + len));
+            overflows.incrementAndGet();
+            return;
+        }
+        put(t, len);
+        copyIn(b, off, t + HEADER_SIZE, len);
+        //publishes the line to the consumer
+        tail.lazySet(t + HEADER_SIZE + len);
+    }
+
+    /**
+     * Scans all the lines which have been buffered, then the lines in the overflow list.
+     */
+    public synchronized void drain() {
+        while (true) {
+            scanBuffered();
+            byte[] overflowed = overflow.peek();
+            if (overflowed == null) {
+                return;
+            }
+            if (tail.get() != head.get()) {
+                //lines buffered before the first overflowed line was added are scanned first
+                continue;
+            }
+            scan(overflowed, overflowed.length);
+            //removed once scanned, so that the producer keeps adding lines to the list until it is empty
+            overflow.poll();
+            overflowSize.addAndGet(-overflowed.length);
+        }
+    }
+
+    private void scanBuffered() {
+        long h = head.get();
+        long t = tail.get();
+        while (h < t) {
+            int len = get(h);
+            if (line.length < len) {
+                line = new byte[Math.max(len, line.length * 2)];
+            }
+            copyOut(h + HEADER_SIZE, line, len);
+            h += HEADER_SIZE + len;
+            //release the space before scanning, so the producer can reuse it
+            head.lazySet(h);
+            scan(line, len);
+        }
+    }
+
+    private void scan(byte[] b, int len) {
+        try {
+            scanner.scan(b, 0, len);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Unable to scan console output for Sauce session ids", e);
+        }
+    }
+
+    /**
+     * Marks the output as finished, any lines which are still buffered are scanned by the background thread or by the
+     * next call to {@link #drain()}.  Lines offered after the queue is closed are still buffered rather than scanned
+     * by the writing thread, and are scanned by the next call to {@link #drain()} if the background thread has already
+     * stopped scanning the queue.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * @return the number of lines which were added to the overflow list because they didn't fit in the buffer
+     */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    /**
+     * @return the number of lines which weren't scanned because neither the buffer nor the overflow list had room
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private boolean isFinished() {
+        return closed && head.get() == tail.get() && overflow.isEmpty();
+    }
+
+    private void put(long position, int value) {
+        buffer[(int) (position & mask)] = (byte) (value >>> 24);
+        buffer[(int) ((position + 1) & mask)] = (byte) (value >>> 16);
+        buffer[(int) ((position + 2) & mask)] = (byte) (value >>> 8);
+        buffer[(int) ((position + 3) & mask)] = (byte) value;
+    }
+
+    private int get(long position) {
+        return ((buffer[(int) (position & mask)] & 0xFF) << 24)
+                | ((buffer[(int) ((position + 1) & mask)] & 0xFF) << 16)
+                | ((buffer[(int) ((position + 2) & mask)] & 0xFF) << 8)
+                | (buffer[(int) ((position + 3) & mask)] & 0xFF);
+    }
+
+    private void copyIn(byte[] b, int off, long position, int len) {
+        int start = (int) (position & mask);
+        int first = Math.min(len, buffer.length - start);
+        System.arraycopy(b, off, buffer, start, first);
+        if (first < len) {
+            System.arraycopy(b, off + first, buffer, 0, len - first);
+        }
+    }
+
+    private void copyOut(long position, byte[] b, int len) {
+        int start = (int) (position & mask);
+        int first = Math.min(len, buffer.length - start);
+        System.arraycopy(buffer, start, b, 0, first);
+        if (first < len) {
+            System.arraycopy(buffer, 0, b, first, len - first);
+        }
+    }
+
+    /**
+     * Run by the background thread, scans the buffered lines of each running build, removing the queues of builds
+     * which have finished once they have been drained.
+     */
+    private static void consume() {
+        while (true) {
+            for (Iterator<ConsoleScanQueue> iterator = ACTIVE.iterator(); iterator.hasNext(); ) {
+                ConsoleScanQueue queue = iterator.next();
+                try {
+                    queue.drain();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Unable to scan console output for Sauce session ids", e);
+                }
+                if (queue.isFinished()) {
+                    iterator.remove();
+                }
+            }
+            if (ACTIVE.isEmpty()) {
+                //woken by start()
+                LockSupport.park(ConsoleScanQueue.class);
+            } else {
+                LockSupport.parkNanos(ConsoleScanQueue.class, POLL_INTERVAL);
+            }
+            Thread.interrupted();
+        }
+    }
+}
@@ -2,23 +2,408 @@ package hudson.plugins.sauce_ondemand;
 
 import com.saucelabs.saucerest.SauceREST;
 import hudson.ProxyConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.Proxy;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Jenkins-specific subclass which will open a URL connection using {@link hudson.ProxyConfiguration}.
+ * <p/>
+ * Connections are opened with explicit timeouts, and responses are requested gzip compressed and are always read
+ * to the end and closed, so that the underlying connections are kept alive and reused by the JVM's connection
+ * cache rather than a new connection (and TLS handshake) being made for each request.  Instances hold no state
+ * other than the credentials, so a single instance is shared for each Sauce user (see {@link #get(String, String)}).
  *
  * @author Ross Rowe
  */
 public class JenkinsSauceREST extends SauceREST {
+
+    private static final Logger logger = Logger.getLogger(JenkinsSauceREST.class.getName());
+
+    /**
+     * String pattern for the base URL of the Sauce REST API for a user, the same base which {@link SauceREST} resolves
+     * relative paths against (see {@link SauceREST#retrieveResults(String)}).
+     */
+    public static final String REST_URL = "https://saucelabs.com/rest/v1/%1$s";
+
+    /**
+     * String pattern for the URL which updates the details of a Sauce job.
+     */
+    private static final String JOB_UPDATE_URL = REST_URL + "/jobs/%2$s";
+
+    /**
+     * Timeout for establishing a connection, in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT = Integer.getInteger(JenkinsSauceREST.class.getName() + ".connectTimeout", 10000);
+
+    /**
+     * Timeout for reading a response, in milliseconds.
+     */
+    private static final int READ_TIMEOUT = Integer.getInteger(JenkinsSauceREST.class.getName() + ".readTimeout", 60000);
+
+    /**
+     * Shared instances, keyed on username.  An instance is replaced when a different access key is used for the
+     * user, so only the current access key of each user is held.
+     */
+    private static final ConcurrentMap<String, JenkinsSauceREST> INSTANCES = new ConcurrentHashMap<String, JenkinsSauceREST>();
+
+    /**
+     * Stops requests being made while Sauce Labs is failing or responding slowly, shared by all instances.  Opens
+     * when at least half of the last 20 requests (and at least 10) failed or took 10 seconds or more, and allows a
+     * probe request after 30 seconds.
+     */
+    private static final CircuitBreaker CIRCUIT_BREAKER = new CircuitBreaker(20, 10, 0.5, 10000, 30000);
+
+    /**
+     * Retrievals in progress, keyed on credentials and URL.
+     */
+    private static final SingleFlight<String, String> RETRIEVALS = new SingleFlight<String, String>();
+
+    /**
+     * The proxy configuration which {@link #proxies} were determined for.
+     */
+    private static ProxyConfiguration proxyConfiguration;
+
+    /**
+     * The proxy to use for each host, determined once per proxy configuration.
+     */
+    private static final Map<String, Proxy> proxies = new HashMap<String, Proxy>();
+
+    private final String username;
+    private final String accessKey;
+
+    /**
+     * SHA-256 digest of the access key, used to determine whether a shared instance has the requested access key.
+     */
+    private final String accessKeyDigest;
+
     public JenkinsSauceREST(String username, String accessKey) {
         super(username, accessKey);
+        this.username = username;
+        this.accessKey = accessKey;
+        this.accessKeyDigest = digest(accessKey);
+    }
+
+    /**
+     * @param username  the Sauce username
+     * @param accessKey the Sauce access key
+     * @return the instance shared by all callers using the credentials
+     */
+    public static JenkinsSauceREST get(String username, String accessKey) {
+        String key = String.valueOf(username);
+        String digest = digest(accessKey);
+        while (true) {
+            JenkinsSauceREST existing = INSTANCES.get(key);
+            if (existing != null && existing.accessKeyDigest.equals(digest)) {
+                return existing;
+            }
+            JenkinsSauceREST sauceREST = new JenkinsSauceREST(username, accessKey);
+            //replaces the instance for the user's previous access key
+            if (existing == null ? INSTANCES.putIfAbsent(key, sauceREST) == null : INSTANCES.replace(key, existing, sauceREST)) {
+                return sauceREST;
+            }
+        }
+    }
+
+    /**
+     * @return the number of shared instances, one for each Sauce user
+     */
+    static int getInstanceCount() {
+        return INSTANCES.size();
+    }
+
+    /**
+     * @return the hex encoded SHA-256 digest of the access key, or an empty string if the access key is null
+     */
+    private static String digest(String accessKey) {
+        return accessKey == null ? "" : DigestUtils.sha256Hex(accessKey);
     }
 
     @Override
     public HttpURLConnection openConnection(URL url) throws IOException {
-        return (HttpURLConnection) ProxyConfiguration.open(url);
+        HttpURLConnection connection;
+        Jenkins jenkins = Jenkins.getInstance();
+        ProxyConfiguration proxy = jenkins == null ? null : jenkins.proxy;
+        if (proxy == null) {
+            connection = (HttpURLConnection) url.openConnection();
+        } else if (proxy.getUserName() != null) {
+            //let Jenkins set up the proxy authentication
+            connection = (HttpURLConnection) ProxyConfiguration.open(url);
+        } else {
+            connection = (HttpURLConnection) url.openConnection(getProxy(proxy, url.getHost()));
+        }
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        return connection;
+    }
+
+    /**
+     * @return the proxy to use for the host, determined once for each host while the proxy configuration is
+     * unchanged
+     */
+    private static synchronized Proxy getProxy(ProxyConfiguration configuration, String host) {
+        if (configuration != proxyConfiguration) {
+            proxies.clear();
+            proxyConfiguration = configuration;
+        }
+        Proxy proxy = proxies.get(host);
+        if (proxy == null) {
+            proxy = configuration.createProxy(host);
+            proxies.put(host, proxy);
+        }
+        return proxy;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Overridden so that the response is requested compressed and the connection can be reused, and so that
+     * responses are shared using the {@link SauceRESTCache}.  Concurrent requests for the same URL are coalesced
+     * into a single request.  If Sauce Labs is unavailable, the last response which was retrieved for the URL is
+     * returned (even if it has expired).
+     */
+    @Override
+    public String retrieveResults(final URL restEndpoint) {
+        final SauceRESTCache cache = SauceRESTCache.get();
+        String response = cache.get(username, accessKey, restEndpoint);
+        if (response == null) {
+            try {
+                response = RETRIEVALS.execute(username + '\n' + accessKey + '\n' + restEndpoint.toExternalForm(), new Callable<String>() {
+                    public String call() throws Exception {
+                        String result = retrieve(restEndpoint);
+                        if (result == null) {
+                            //fall back to the last response which was retrieved
+                            result = cache.getStale(username, accessKey, restEndpoint);
+                            return result == null ? "" : result;
+                        }
+                        if (!result.equals("")) {
+                            cache.put(username, accessKey, restEndpoint, result);
+                        }
+                        return result;
+                    }
+                });
+            } catch (ExecutionException e) {
+                logger.log(Level.WARNING, "Error retrieving Sauce Results", e.getCause());
+                response = "";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = "";
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return the response, an empty string if the request was rejected by Sauce Labs, or null if Sauce Labs is
+     * unavailable (ie. the request failed or was refused by the {@link #CIRCUIT_BREAKER})
+     */
+    private String retrieve(URL restEndpoint) {
+        CircuitBreaker.Permit permit = CIRCUIT_BREAKER.acquire();
+        if (permit == null) {
+            logger.fine("Sauce REST API is unavailable, not retrieving " + restEndpoint);
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        boolean available = false;
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(restEndpoint);
+            connection.setRequestMethod("GET");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            authenticate(connection);
+            int status = connection.getResponseCode();
+            if (status >= 300) {
+                drain(connection.getErrorStream());
+                logger.log(Level.WARNING, "Error retrieving Sauce Results from " + restEndpoint + ", response code " + status);
+                available = !isServerError(status);
+                return available ? "" : null;
+            }
+            InputStream is = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                is = new GZIPInputStream(is);
+            }
+            try {
+                String response = IOUtils.toString(is, "UTF-8");
+                available = true;
+                return response;
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            if (connection != null) {
+                drain(connection.getErrorStream());
+            }
+            logger.log(Level.WARNING, "Error retrieving Sauce Results", e);
+            return null;
+        } finally {
+            CIRCUIT_BREAKER.record(permit, available, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Updates the details of a Sauce job.  Unlike {@link SauceREST#updateJobInfo(String, Map)}, failures are not
+     * swallowed but are reported by throwing a {@link ResponseException}, so that the update can be retried (see
+     * {@link JobUpdateDispatcher}).  Updates are refused with a 503 response code while Sauce Labs is unavailable.
+     *
+     * @param jobId   the Sauce job id
+     * @param updates the details to be updated
+     * @throws ResponseException thrown if the update was not successful
+     */
+    public void updateJobInfoOrThrow(String jobId, Map<String, Object> updates) {
+        CircuitBreaker.Permit permit = CIRCUIT_BREAKER.acquire();
+        if (permit == null) {
+            throw new ResponseException("Sauce REST API is unavailable, unable to update Sauce job " + jobId, 503,
+                    String.valueOf(CIRCUIT_BREAKER.getRetryAfterMillis() / 1000), null);
+        }
+        long start = System.currentTimeMillis();
+        boolean available = false;
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(new URL(String.format(JOB_UPDATE_URL, username, jobId)));
+            connection.setDoOutput(true);
+            connection.setRequestMethod("PUT");
+            connection.setRequestProperty("Content-Type", "application/json");
+            authenticate(connection);
+            OutputStream os = connection.getOutputStream();
+            try {
+                os.write(JSONObject.fromObject(updates).toString().getBytes("UTF-8"));
+            } finally {
+                os.close();
+            }
+            int status = connection.getResponseCode();
+            available = !isServerError(status);
+            if (status >= 300) {
+                drain(connection.getErrorStream());
+                throw new ResponseException("Unable to update Sauce job " + jobId + ", response code " + status,
+                        status, connection.getHeaderField("Retry-After"), null);
+            }
+            drain(connection.getInputStream());
+        } catch (IOException e) {
+            if (connection != null) {
+                drain(connection.getErrorStream());
+            }
+            throw new ResponseException("Unable to update Sauce job " + jobId, 0, null, e);
+        } finally {
+            CIRCUIT_BREAKER.record(permit, available, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return true if Sauce Labs is currently treated as unavailable, in which case callers should use the data
+     * they already have rather than waiting for a response
+     */
+    public static boolean isUnavailable() {
+        return CIRCUIT_BREAKER.isOpen();
+    }
+
+    /**
+     * @return the circuit breaker which guards the requests made to Sauce Labs
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return CIRCUIT_BREAKER;
+    }
+
+    /**
+     * @return true if the response code indicates that Sauce Labs failed to process the request, rather than
+     * the request itself being invalid
+     */
+    private static boolean isServerError(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private void authenticate(HttpURLConnection connection) throws IOException {
+        if (username != null && accessKey != null) {
+            connection.setRequestProperty("Authorization", "Basic " +
+                    new String(Base64.encodeBase64((username + ":" + accessKey).getBytes("UTF-8")), "US-ASCII"));
+        }
+    }
+
+    /**
+     * Reads the remainder of a response and closes it, which allows the connection to be reused.
+     *
+     * @param is the response stream, can be null
+     */
+    private static void drain(InputStream is) {
+        if (is == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[4096];
+            while (is.read(buffer) != -1) {
+                //discard
+            }
+        } catch (IOException e) {
+            //the connection won't be reused
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Thrown when a request to the Sauce REST API was not successful.
+     */
+    public static class ResponseException extends RuntimeException {
+
+        private final int status;
+        private final String retryAfter;
+
+        /**
+         * @param message    the detail message
+         * @param status     the HTTP response code, or 0 if no response was received
+         * @param retryAfter the value of the Retry-After response header, can be null
+         * @param cause      the cause, can be null
+         */
+        public ResponseException(String message, int status, String retryAfter, Throwable cause) {
+            super(message, cause);
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * @return the HTTP response code, or 0 if no response was received
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return true if the request may succeed if it is retried, ie. if no response was received, the request was
+         * rate limited or a server error occurred
+         */
+        public boolean isRetryable() {
+            return status == 0 || status == 429 || status >= 500;
+        }
+
+        /**
+         * @return the number of milliseconds the server asked to wait before retrying, or 0 if not specified
+         */
+        public long getRetryAfterMillis() {
+            if (retryAfter != null) {
+                try {
+                    return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+                } catch (NumberFormatException e) {
+                    //HTTP dates aren't supported, use the default backoff
+                }
+            }
+            return 0;
+        }
     }
 }
@@ -0,0 +1,226 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.model.Run;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the Sauce jobs of builds which have finished, once they have been read from their
+ * {@link JobInformationFile}, so that the memory used by the jobs of historical builds is bounded however many builds
+ * are loaded.
+ * <p/>
+ * The cache is bounded by the estimated size of the jobs held, and the job lists of the least recently used builds
+ * are evicted first.  Job lists are also held by soft references, so they can be reclaimed before they are evicted if
+ * memory is short.  The OS, browser, version and status of the jobs are interned, as the same few values are
+ * repeated across most jobs.  A single instance is shared by the whole controller.
+ */
+public class JobInformationCache {
+
+    /**
+     * Maximum estimated size of the cached jobs, in bytes.
+     */
+    private static final long MAX_SIZE = Long.getLong(JobInformationCache.class.getName() + ".maxSize", 32 * 1024 * 1024);
+
+    /**
+     * Estimated size of a job excluding its strings, in bytes.
+     */
+    private static final int JOB_OVERHEAD = 96;
+
+    /**
+     * Estimated size of a string excluding its characters, in bytes.
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    private static final JobInformationCache INSTANCE = new JobInformationCache(MAX_SIZE);
+
+    /**
+     * Cached job lists keyed on build, in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * Interned attribute values, weakly held so that values which are no longer used can be reclaimed.
+     */
+    private final Map<String, WeakReference<String>> strings = new WeakHashMap<String, WeakReference<String>>();
+
+    private final long maxSize;
+
+    /**
+     * Total estimated size of the cached jobs.
+     */
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    JobInformationCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache shared by the controller
+     */
+    public static JobInformationCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param key identifies the build, see {@link #key(Run)}
+     * @return the cached jobs of the build, or null if they aren't cached
+     */
+    public synchronized List<JobInformation> get(String key) {
+        Entry entry = entries.get(key);
+        List<JobInformation> jobs = entry == null ? null : entry.jobs.get();
+        if (jobs == null) {
+            if (entry != null) {
+                //reclaimed by the garbage collector
+                remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return jobs;
+    }
+
+    /**
+     * Caches the jobs of a build, interning their repeated attribute values.  Jobs which are larger than the cache
+     * aren't cached.
+     *
+     * @param key  identifies the build, see {@link #key(Run)}
+     * @param jobs the jobs of the build
+     */
+    public synchronized void put(String key, List<JobInformation> jobs) {
+        remove(key);
+        long jobsSize = 0;
+        for (JobInformation job : jobs) {
+            job.setOs(intern(job.getOs()));
+            job.setBrowser(intern(job.getBrowser()));
+            job.setVersion(intern(job.getVersion()));
+            job.setStatus(intern(job.getStatus()));
+            jobsSize += estimateSize(job);
+        }
+        if (jobsSize > maxSize) {
+            return;
+        }
+        entries.put(key, new Entry(jobs, jobsSize));
+        size += jobsSize;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the jobs of a build, eg. when they have been modified or the build has been deleted.
+     *
+     * @param key identifies the build, see {@link #key(Run)}
+     */
+    public synchronized void invalidate(String key) {
+        remove(key);
+    }
+
+    /**
+     * Removes all the cached jobs.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of builds whose jobs are cached
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total estimated size of the cached jobs, in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d builds (%d KB), %d hits, %d misses, %d evictions",
+                getCount(), getSize() / 1024, getHits(), getMisses(), getEvictions());
+    }
+
+    /**
+     * @param run the build
+     * @return the key which identifies the jobs of the build in the cache
+     */
+    public static String key(Run<?, ?> run) {
+        return run.getExternalizableId();
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.size;
+        }
+    }
+
+    /**
+     * @return the interned copy of the value
+     */
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        WeakReference<String> reference = strings.get(value);
+        String interned = reference == null ? null : reference.get();
+        if (interned == null) {
+            strings.put(value, new WeakReference<String>(value));
+            interned = value;
+        }
+        return interned;
+    }
+
+    /**
+     * @return the estimated size of the job, excluding its interned values
+     */
+    private static long estimateSize(JobInformation job) {
+        return JOB_OVERHEAD + estimateSize(job.getJobId()) + estimateSize(job.getHmac()) + estimateSize(job.getName())
+                + estimateSize(job.getVideoUrl()) + estimateSize(job.getLogUrl());
+    }
+
+    private static long estimateSize(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + 2L * value.length();
+    }
+
+    private static final class Entry {
+        private final SoftReference<List<JobInformation>> jobs;
+        private final long size;
+
+        private Entry(List<JobInformation> jobs, long size) {
+            this.jobs = new SoftReference<List<JobInformation>>(jobs);
+            this.size = size;
+        }
+    }
+}
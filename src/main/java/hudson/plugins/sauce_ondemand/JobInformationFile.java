@@ -0,0 +1,110 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import com.thoughtworks.xstream.XStreamException;
+import hudson.util.XStream2;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the Sauce jobs of a build in a compressed file in the build directory, so that they aren't included in
+ * build.xml and are only read when they are displayed.
+ */
+public class JobInformationFile {
+
+    /**
+     * Name of the file within the build directory.
+     */
+    public static final String FILE_NAME = "sauce-jobs.xml.gz";
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    static {
+        XSTREAM.alias("jobs", ArrayList.class);
+        XSTREAM.alias("job", JenkinsJobInformation.class);
+    }
+
+    private final File file;
+
+    /**
+     * @param buildDirectory the root directory of the build
+     */
+    public JobInformationFile(File buildDirectory) {
+        this.file = new File(buildDirectory, FILE_NAME);
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * @return the jobs stored in the file
+     * @throws IOException thrown if the file can't be read
+     */
+    @SuppressWarnings("unchecked")
+    public List<JobInformation> read() throws IOException {
+        InputStream inputStream = null;
+        try {
+            inputStream = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return new ArrayList<JobInformation>((List<JobInformation>) XSTREAM.fromXML(inputStream));
+        } catch (XStreamException e) {
+            throw new IOException("Unable to read " + file, e);
+        } catch (ClassCastException e) {
+            throw new IOException("Unable to read " + file, e);
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Writes the jobs to a temporary file which then replaces the file, so that a partially written file is never
+     * read.
+     *
+     * @param jobs the jobs to be stored
+     * @throws IOException thrown if the file can't be written
+     */
+    public void write(List<JobInformation> jobs) throws IOException {
+        File tempFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        OutputStream outputStream = null;
+        try {
+            outputStream = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+            XSTREAM.toXML(new ArrayList<JobInformation>(jobs), writer);
+            writer.flush();
+            outputStream.close();
+            outputStream = null;
+            if (!tempFile.renameTo(file)) {
+                //the rename doesn't replace an existing file on all platforms
+                if (!file.delete() || !tempFile.renameTo(file)) {
+                    throw new IOException("Unable to replace " + file);
+                }
+            }
+        } catch (XStreamException e) {
+            throw new IOException("Unable to write " + file, e);
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+            if (tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
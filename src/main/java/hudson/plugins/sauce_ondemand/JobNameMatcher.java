@@ -0,0 +1,247 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.SuiteResult;
+import hudson.tasks.junit.TestResult;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Matches test cases to the Sauce jobs that were run by them.
+ * <p/>
+ * A test case is identified as a match for a job if:
+ * <ul>
+ * <li>the job name equals the full name of the test; or</li>
+ * <li>the job name contains the test name; or</li>
+ * <li>the full name of the test contains the job name (matching whole words only)</li>
+ * </ul>
+ * The matcher is built once for a set of jobs and test cases, using hash lookups of the candidate substrings of the
+ * names rather than compiling a regex for every job/test pair.  Job names are matched literally.
+ */
+public class JobNameMatcher {
+
+    /**
+     * The jobs being matched, in order.
+     */
+    private final List<JobInformation> jobs = new ArrayList<JobInformation>();
+
+    /**
+     * Indexes of the jobs, keyed on job name.
+     */
+    private final Map<String, List<Integer>> jobsByName = new HashMap<String, List<Integer>>();
+
+    /**
+     * Length of the longest job name.
+     */
+    private int maxJobNameLength;
+
+    /**
+     * The jobs which match a test case, keyed on the full name and display name of the test.
+     */
+    private final Map<String, List<JobInformation>> jobsByCase = new HashMap<String, List<JobInformation>>();
+
+    /**
+     * Number of jobs the matcher was built with.
+     */
+    private final int jobCount;
+
+    /**
+     * @param jobs       the Sauce jobs, jobs without a name are never matched
+     * @param testResult the test results of the build, can be null
+     */
+    public JobNameMatcher(Collection<? extends JobInformation> jobs, TestResult testResult) {
+        this(jobs, getCases(testResult));
+    }
+
+    /**
+     * @param jobs  the Sauce jobs, jobs without a name are never matched
+     * @param cases the test cases to be matched
+     */
+    public JobNameMatcher(Collection<? extends JobInformation> jobs, List<CaseResult> cases) {
+        this.jobCount = jobs.size();
+        for (JobInformation job : jobs) {
+            if (job.getName() != null) {
+                addJob(job);
+            }
+        }
+        if (this.jobs.isEmpty()) {
+            return;
+        }
+
+        Set<String> displayNames = new HashSet<String>();
+        for (CaseResult cr : cases) {
+            if (cr.getDisplayName() != null) {
+                displayNames.add(cr.getDisplayName());
+            }
+        }
+        Map<String, BitSet> jobsContaining = findJobsContaining(displayNames);
+
+        for (CaseResult cr : cases) {
+            String key = key(cr);
+            if (jobsByCase.containsKey(key)) {
+                continue;
+            }
+            BitSet matches = new BitSet(this.jobs.size());
+            String fullName = cr.getFullName();
+            if (fullName != null) {
+                //if job name equals full name of test
+                addAll(matches, jobsByName.get(fullName));
+                //or if the full name of the test contains the job name (matching whole words only)
+                matchWholeWords(fullName, matches);
+            }
+            //or if job name contains the test name
+            BitSet containing = cr.getDisplayName() == null ? null : jobsContaining.get(cr.getDisplayName());
+            if (containing != null) {
+                matches.or(containing);
+            }
+            if (!matches.isEmpty()) {
+                List<JobInformation> matchedJobs = new ArrayList<JobInformation>(matches.cardinality());
+                for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                    matchedJobs.add(this.jobs.get(i));
+                }
+                jobsByCase.put(key, matchedJobs);
+            }
+        }
+    }
+
+    /**
+     * @param cr the test case
+     * @return the jobs which match the test case, in job order
+     */
+    public List<JobInformation> getJobs(CaseResult cr) {
+        List<JobInformation> matches = jobsByCase.get(key(cr));
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * @return the number of jobs the matcher was built with
+     */
+    public int getJobCount() {
+        return jobCount;
+    }
+
+    private void addJob(JobInformation job) {
+        String name = job.getName();
+        List<Integer> indexes = jobsByName.get(name);
+        if (indexes == null) {
+            indexes = new ArrayList<Integer>(1);
+            jobsByName.put(name, indexes);
+        }
+        indexes.add(jobs.size());
+        jobs.add(job);
+        maxJobNameLength = Math.max(maxJobNameLength, name.length());
+    }
+
+    /**
+     * Finds the jobs whose name contains each of the display names, by looking up every substring of the job
+     * names which has the length of one of the display names.
+     *
+     * @param displayNames the test display names
+     * @return the matching jobs, keyed on display name
+     */
+    private Map<String, BitSet> findJobsContaining(Set<String> displayNames) {
+        Map<String, BitSet> jobsContaining = new HashMap<String, BitSet>();
+        BitSet lengths = new BitSet();
+        for (String displayName : displayNames) {
+            if (displayName.length() <= maxJobNameLength) {
+                lengths.set(displayName.length());
+            }
+        }
+        if (lengths.get(0)) {
+            //every job name contains the empty string
+            BitSet all = new BitSet(jobs.size());
+            all.set(0, jobs.size());
+            jobsContaining.put("", all);
+        }
+        for (int j = 0; j < jobs.size(); j++) {
+            String name = jobs.get(j).getName();
+            for (int length = lengths.nextSetBit(1); length >= 0 && length <= name.length(); length = lengths.nextSetBit(length + 1)) {
+                for (int start = 0; start + length <= name.length(); start++) {
+                    String candidate = name.substring(start, start + length);
+                    if (displayNames.contains(candidate)) {
+                        BitSet matches = jobsContaining.get(candidate);
+                        if (matches == null) {
+                            matches = new BitSet(jobs.size());
+                            jobsContaining.put(candidate, matches);
+                        }
+                        matches.set(j);
+                    }
+                }
+            }
+        }
+        return jobsContaining;
+    }
+
+    /**
+     * Adds the jobs whose name occurs in the full name of the test between two word boundaries, which is the
+     * equivalent of finding <code>\b(jobName)\b</code>.
+     *
+     * @param fullName the full name of the test
+     * @param matches  the matched job indexes
+     */
+    private void matchWholeWords(String fullName, BitSet matches) {
+        List<Integer> boundaries = new ArrayList<Integer>();
+        for (int i = 0; i <= fullName.length(); i++) {
+            boolean before = i > 0 && isWordCharacter(fullName.charAt(i - 1));
+            boolean after = i < fullName.length() && isWordCharacter(fullName.charAt(i));
+            if (before != after) {
+                boundaries.add(i);
+            }
+        }
+        if (!boundaries.isEmpty()) {
+            addAll(matches, jobsByName.get(""));
+        }
+        for (int i = 0; i < boundaries.size(); i++) {
+            int start = boundaries.get(i);
+            for (int j = i + 1; j < boundaries.size(); j++) {
+                int end = boundaries.get(j);
+                if (end - start > maxJobNameLength) {
+                    break;
+                }
+                addAll(matches, jobsByName.get(fullName.substring(start, end)));
+            }
+        }
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static void addAll(BitSet matches, List<Integer> indexes) {
+        if (indexes != null) {
+            for (Integer index : indexes) {
+                matches.set(index);
+            }
+        }
+    }
+
+    private static String key(CaseResult cr) {
+        return cr.getFullName() + '\n' + cr.getDisplayName();
+    }
+
+    /**
+     * @param testResult the test results, can be null
+     * @return all the test cases of the test results, in suite order
+     */
+    static List<CaseResult> getCases(TestResult testResult) {
+        List<CaseResult> cases = new ArrayList<CaseResult>();
+        if (testResult != null) {
+            for (SuiteResult sr : testResult.getSuites()) {
+                cases.addAll(sr.getCases());
+            }
+        }
+        return cases;
+    }
+}
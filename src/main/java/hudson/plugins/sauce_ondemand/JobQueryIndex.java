@@ -0,0 +1,270 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory index over the Sauce jobs of a build, which supports filtering, sorting and paging the jobs so that
+ * builds with thousands of jobs can be displayed a page at a time.
+ * <p/>
+ * Jobs can be filtered by status, OS and browser (matching the value exactly, ignoring case) and by name prefix
+ * (ignoring case), and sorted by any of {@link #FIELDS}.  The sort orders are calculated once per field, when they
+ * are first used.
+ */
+public class JobQueryIndex {
+
+    /**
+     * The fields which jobs can be sorted on.
+     */
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList("name", "status", "os", "browser", "version"));
+
+    /**
+     * The fields which jobs can be filtered on by value.
+     */
+    private static final String[] FILTER_FIELDS = {"status", "os", "browser"};
+
+    private final List<JobInformation> jobs;
+
+    /**
+     * Positions of the jobs with each value, keyed on filter field and lower case value.
+     */
+    private final Map<String, Map<String, BitSet>> values = new HashMap<String, Map<String, BitSet>>();
+
+    /**
+     * Distinct values of each filter field, in sorted order.
+     */
+    private final Map<String, List<String>> distinctValues = new HashMap<String, List<String>>();
+
+    /**
+     * Positions of the jobs in sorted order, keyed on field.
+     */
+    private final Map<String, int[]> orders = new HashMap<String, int[]>();
+
+    /**
+     * Lower case job names, in name order, used to find the jobs matching a name prefix.
+     */
+    private String[] sortedNames;
+
+    /**
+     * @param jobs the jobs to be indexed
+     */
+    public JobQueryIndex(List<JobInformation> jobs) {
+        this.jobs = new ArrayList<JobInformation>(jobs);
+        for (String field : FILTER_FIELDS) {
+            Map<String, BitSet> fieldValues = new HashMap<String, BitSet>();
+            Map<String, String> distinct = new TreeMap<String, String>();
+            for (int i = 0; i < this.jobs.size(); i++) {
+                String value = getValue(this.jobs.get(i), field);
+                if (value == null) {
+                    continue;
+                }
+                String key = value.toLowerCase(Locale.ENGLISH);
+                BitSet positions = fieldValues.get(key);
+                if (positions == null) {
+                    positions = new BitSet(this.jobs.size());
+                    fieldValues.put(key, positions);
+                    distinct.put(key, value);
+                }
+                positions.set(i);
+            }
+            values.put(field, fieldValues);
+            distinctValues.put(field, new ArrayList<String>(distinct.values()));
+        }
+    }
+
+    /**
+     * @return the number of jobs indexed
+     */
+    public int size() {
+        return jobs.size();
+    }
+
+    /**
+     * @param field one of status, os or browser
+     * @return the distinct values of the field, in sorted order
+     */
+    public List<String> getValues(String field) {
+        List<String> fieldValues = distinctValues.get(field);
+        return fieldValues == null ? Collections.<String>emptyList() : Collections.unmodifiableList(fieldValues);
+    }
+
+    /**
+     * Finds a page of the jobs which match the filters.
+     *
+     * @param filters    the values to filter on, keyed on field (status, os, browser or name, which matches the start
+     *                   of the name), null or empty values are ignored
+     * @param sort       the field to sort on, if null or not one of {@link #FIELDS} the jobs are returned in the order
+     *                   in which they were run
+     * @param descending true to sort in descending order
+     * @param start      the position of the first job to be returned
+     * @param limit      the maximum number of jobs to be returned
+     * @return the matching jobs
+     */
+    public Page query(Map<String, String> filters, String sort, boolean descending, int start, int limit) {
+        BitSet matches = new BitSet(jobs.size());
+        matches.set(0, jobs.size());
+        if (filters != null) {
+            for (Map.Entry<String, String> filter : filters.entrySet()) {
+                String value = filter.getValue();
+                if (value == null || value.length() == 0) {
+                    continue;
+                }
+                if (filter.getKey().equals("name")) {
+                    matches.and(findNamesStartingWith(value.toLowerCase(Locale.ENGLISH)));
+                } else if (values.containsKey(filter.getKey())) {
+                    BitSet positions = values.get(filter.getKey()).get(value.toLowerCase(Locale.ENGLISH));
+                    if (positions == null) {
+                        matches.clear();
+                    } else {
+                        matches.and(positions);
+                    }
+                }
+            }
+        }
+
+        int total = matches.cardinality();
+        int from = Math.max(0, start);
+        List<JobInformation> page = new ArrayList<JobInformation>(Math.max(0, Math.min(limit, total - from)));
+        int[] order = FIELDS.contains(sort) ? getOrder(sort) : null;
+        int seen = 0;
+        for (int i = 0; i < jobs.size() && page.size() < limit; i++) {
+            int position;
+            if (order == null) {
+                position = descending ? jobs.size() - 1 - i : i;
+            } else {
+                position = descending ? order[jobs.size() - 1 - i] : order[i];
+            }
+            if (matches.get(position)) {
+                if (seen >= from) {
+                    page.add(jobs.get(position));
+                }
+                seen++;
+            }
+        }
+        return new Page(page, from, total);
+    }
+
+    /**
+     * @return the positions of the jobs whose name starts with the prefix
+     */
+    private synchronized BitSet findNamesStartingWith(String prefix) {
+        int[] order = getOrder("name");
+        BitSet positions = new BitSet(jobs.size());
+        //names are sorted with nulls last, which binarySearch can't handle, so only search the non-null names
+        int count = 0;
+        while (count < sortedNames.length && sortedNames[count] != null) {
+            count++;
+        }
+        int i = Arrays.binarySearch(sortedNames, 0, count, prefix);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i < count && sortedNames[i].startsWith(prefix); i++) {
+            positions.set(order[i]);
+        }
+        return positions;
+    }
+
+    /**
+     * @return the positions of the jobs sorted on the field, calculated on first use
+     */
+    private synchronized int[] getOrder(final String field) {
+        int[] order = orders.get(field);
+        if (order == null) {
+            final String[] keys = new String[jobs.size()];
+            Integer[] positions = new Integer[jobs.size()];
+            for (int i = 0; i < jobs.size(); i++) {
+                String value = getValue(jobs.get(i), field);
+                keys[i] = value == null ? null : value.toLowerCase(Locale.ENGLISH);
+                positions[i] = i;
+            }
+            //stable sort, so that jobs with equal values stay in the order in which they were run
+            Arrays.sort(positions, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    String x = keys[a];
+                    String y = keys[b];
+                    if (x == null) {
+                        return y == null ? 0 : 1;
+                    }
+                    return y == null ? -1 : x.compareTo(y);
+                }
+            });
+            order = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                order[i] = positions[i];
+            }
+            orders.put(field, order);
+            if (field.equals("name")) {
+                sortedNames = new String[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    sortedNames[i] = keys[order[i]];
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return the value of the field for the job, can be null
+     */
+    static String getValue(JobInformation job, String field) {
+        if (field.equals("name")) {
+            return job.getName();
+        } else if (field.equals("status")) {
+            return job.getStatus();
+        } else if (field.equals("os")) {
+            return job.getOs();
+        } else if (field.equals("browser")) {
+            return job.getBrowser();
+        } else if (field.equals("version")) {
+            return job.getVersion();
+        }
+        return null;
+    }
+
+    /**
+     * A page of jobs returned by {@link JobQueryIndex#query(Map, String, boolean, int, int)}.
+     */
+    public static class Page {
+        private final List<JobInformation> jobs;
+        private final int start;
+        private final int total;
+
+        Page(List<JobInformation> jobs, int start, int total) {
+            this.jobs = jobs;
+            this.start = start;
+            this.total = total;
+        }
+
+        /**
+         * @return the jobs on the page
+         */
+        public List<JobInformation> getJobs() {
+            return jobs;
+        }
+
+        /**
+         * @return the position of the first job on the page
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the total number of jobs which match the filters
+         */
+        public int getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.saucerest.SauceREST;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the updates for the Sauce jobs of a build to the Sauce REST API in parallel.
+ * <p/>
+ * At most {@link PluginImpl#getJobUpdateConcurrency()} updates are in progress at once, and the rate of requests
+ * made for a Sauce account is limited to {@link PluginImpl#getJobUpdateRate()} per second across all builds.
+ * Updates which are rate limited or which fail with a server error are retried with an exponential backoff.
+ */
+public class JobUpdateDispatcher {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger logger = Logger.getLogger(JobUpdateDispatcher.class.getName());
+
+    /**
+     * Maximum number of times an update is attempted.
+     */
+    private static final int MAX_ATTEMPTS = 4;
+
+    /**
+     * Maximum delay between attempts, in milliseconds.
+     */
+    private static final long MAX_BACKOFF = 30000;
+
+    /**
+     * Rate limiters, keyed on Sauce username, shared by all builds.
+     */
+    private static final ConcurrentMap<String, TokenBucket> RATE_LIMITERS = new ConcurrentHashMap<String, TokenBucket>();
+
+    private final SauceREST sauceREST;
+    private final int concurrency;
+    private final TokenBucket rateLimiter;
+    private final long initialBackoff;
+
+    /**
+     * @param sauceREST         the REST client to use
+     * @param username          the Sauce username, requests are rate limited per username
+     * @param concurrency       the maximum number of updates in progress at once
+     * @param requestsPerSecond the maximum number of requests per second for the Sauce username
+     */
+    public JobUpdateDispatcher(SauceREST sauceREST, String username, int concurrency, int requestsPerSecond) {
+        this(sauceREST, getRateLimiter(username, requestsPerSecond), concurrency, 1000);
+    }
+
+    JobUpdateDispatcher(SauceREST sauceREST, TokenBucket rateLimiter, int concurrency, long initialBackoff) {
+        this.sauceREST = sauceREST;
+        this.rateLimiter = rateLimiter;
+        this.concurrency = Math.max(1, concurrency);
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Sends the updates, and waits for them to complete.
+     *
+     * @param updates the updates to be made, keyed on Sauce job id
+     * @return the outcome of the updates
+     * @throws InterruptedException thrown if the thread is interrupted while waiting, the remaining updates are
+     *                              cancelled
+     */
+    public Summary dispatch(Map<String, Map<String, Object>> updates) throws InterruptedException {
+        final Summary summary = new Summary();
+        long start = System.currentTimeMillis();
+        if (!updates.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, updates.size()),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Sauce job updates"));
+            try {
+                List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(updates.size());
+                for (final Map.Entry<String, Map<String, Object>> update : updates.entrySet()) {
+                    futures.add(executor.submit(new Callable<Boolean>() {
+                        public Boolean call() throws Exception {
+                            return update(update.getKey(), update.getValue(), summary);
+                        }
+                    }));
+                }
+                for (Future<Boolean> future : futures) {
+                    try {
+                        if (future.get()) {
+                            summary.succeeded.incrementAndGet();
+                        } else {
+                            summary.failed.incrementAndGet();
+                        }
+                    } catch (ExecutionException e) {
+                        logger.log(Level.WARNING, "Error updating Sauce job", e.getCause());
+                        summary.failed.incrementAndGet();
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        summary.elapsed = System.currentTimeMillis() - start;
+        return summary;
+    }
+
+    /**
+     * Performs an update, retrying if it fails with a retryable error.
+     *
+     * @return true if the update was successful
+     */
+    private boolean update(String jobId, Map<String, Object> updates, Summary summary) throws InterruptedException {
+        long backoff = initialBackoff;
+        for (int attempt = 1; ; attempt++) {
+            rateLimiter.acquire();
+            try {
+                logger.fine("Performing Sauce REST update for " + jobId);
+                if (sauceREST instanceof JenkinsSauceREST) {
+                    ((JenkinsSauceREST) sauceREST).updateJobInfoOrThrow(jobId, updates);
+                } else {
+                    //failures can't be detected, so aren't retried
+                    sauceREST.updateJobInfo(jobId, updates);
+                }
+                return true;
+            } catch (JenkinsSauceREST.ResponseException e) {
+                if (!e.isRetryable() || attempt >= MAX_ATTEMPTS) {
+                    logger.log(Level.WARNING, "Error updating Sauce job " + jobId, e);
+                    return false;
+                }
+                logger.log(Level.FINE, "Retrying update of Sauce job " + jobId, e);
+                summary.retried.incrementAndGet();
+                Thread.sleep(Math.max(backoff, Math.min(e.getRetryAfterMillis(), MAX_BACKOFF)));
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * @return the rate limiter for the username, replacing it if the rate has been reconfigured
+     */
+    static TokenBucket getRateLimiter(String username, int requestsPerSecond) {
+        String key = String.valueOf(username);
+        while (true) {
+            TokenBucket bucket = RATE_LIMITERS.get(key);
+            if (bucket == null) {
+                bucket = new TokenBucket(requestsPerSecond);
+                TokenBucket existing = RATE_LIMITERS.putIfAbsent(key, bucket);
+                return existing == null ? bucket : existing;
+            }
+            if (bucket.getRate() == requestsPerSecond) {
+                return bucket;
+            }
+            //the rate has been reconfigured, only one caller replaces the bucket
+            TokenBucket replacement = new TokenBucket(requestsPerSecond);
+            if (RATE_LIMITERS.replace(key, bucket, replacement)) {
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * The outcome of dispatching the updates of a build.
+     */
+    public static class Summary {
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retried = new AtomicInteger();
+        private long elapsed;
+
+        public int getSucceeded() {
+            return succeeded.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getRetried() {
+            return retried.get();
+        }
+
+        /**
+         * @return the time taken to perform the updates, in milliseconds
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Updated %d Sauce jobs in %.1fs (%d failed, %d retries)",
+                    getSucceeded(), elapsed / 1000.0, getFailed(), getRetried());
+        }
+    }
+
+    /**
+     * Limits the rate at which requests are made.  Up to one second's worth of requests can be made in a burst.
+     */
+    static class TokenBucket {
+        private final int rate;
+        private double tokens;
+        private long last;
+
+        /**
+         * @param rate the number of requests per second, requests are not limited if this is not positive
+         */
+        TokenBucket(int rate) {
+            this.rate = rate;
+            this.tokens = rate;
+            this.last = System.nanoTime();
+        }
+
+        int getRate() {
+            return rate;
+        }
+
+        /**
+         * Waits until a request can be made.
+         *
+         * @throws InterruptedException thrown if the thread is interrupted while waiting
+         */
+        void acquire() throws InterruptedException {
+            long wait = reserve();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        /**
+         * Takes a token, which may not be available until later.
+         *
+         * @return the number of nanoseconds to wait before the token is available
+         */
+        private synchronized long reserve() {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - last) * rate / 1e9);
+            last = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.model.Run;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Holds the {@link SauceOnDemandBuildWrapper.SauceOnDemandLogParser} of each running build, from when the build log
+ * is decorated until the build's Sauce action has been created.
+ * <p/>
+ * The parsers are weakly keyed on the build, and are removed by the {@link SauceOnDemandRunListener} when the build
+ * completes or is deleted, so builds which are aborted before their Sauce action is created don't leave their parser
+ * reachable.
+ */
+public final class LogParserRegistry {
+
+    private static final Map<Run<?, ?>, SauceOnDemandBuildWrapper.SauceOnDemandLogParser> PARSERS =
+            Collections.synchronizedMap(new WeakHashMap<Run<?, ?>, SauceOnDemandBuildWrapper.SauceOnDemandLogParser>());
+
+    private LogParserRegistry() {
+    }
+
+    /**
+     * @param run    the running build
+     * @param parser the parser of the build's log
+     */
+    public static void register(Run<?, ?> run, SauceOnDemandBuildWrapper.SauceOnDemandLogParser parser) {
+        PARSERS.put(run, parser);
+    }
+
+    /**
+     * @param run the build
+     * @return the parser of the build's log, or null if the build isn't running or doesn't use Sauce
+     */
+    public static SauceOnDemandBuildWrapper.SauceOnDemandLogParser get(Run<?, ?> run) {
+        return PARSERS.get(run);
+    }
+
+    /**
+     * @param run the build
+     * @return the parser which was registered for the build, or null if none was registered
+     */
+    public static SauceOnDemandBuildWrapper.SauceOnDemandLogParser remove(Run<?, ?> run) {
+        return PARSERS.remove(run);
+    }
+
+    /**
+     * @return the number of parsers registered
+     */
+    public static int size() {
+        return PARSERS.size();
+    }
+}
@@ -73,6 +73,14 @@ public class PluginImpl extends Plugin implements Describable<PluginImpl> {
      * Format for the date component of the HMAC.
      */
     private static final String DATE_FORMAT = "yyyy-MM-dd-HH";
+    /**
+     * Default number of Sauce job updates which are sent in parallel.
+     */
+    private static final int DEFAULT_JOB_UPDATE_CONCURRENCY = 4;
+    /**
+     * Default maximum number of Sauce job updates sent per second for a Sauce account.
+     */
+    private static final int DEFAULT_JOB_UPDATE_RATE = 10;
 
     private static final Logger logger = Logger.getLogger(PluginImpl.class.getName());
 
@@ -94,6 +102,47 @@ public class PluginImpl extends Plugin implements Describable<PluginImpl> {
 
     private boolean disableStatusColumn;
 
+    /**
+     * Indicates whether the details of Sauce jobs are retrieved for the whole build once it has finished, rather
+     * than individually as each session id is output.
+     */
+    private boolean bulkJobRetrieval;
+
+    /**
+     * Number of Sauce job updates which are sent in parallel when a build is published.
+     */
+    private int jobUpdateConcurrency;
+
+    /**
+     * Maximum number of Sauce job updates sent per second for a Sauce account.
+     */
+    private int jobUpdateRate;
+
+    /**
+     * Number of seconds for which an idle Sauce Connect tunnel is kept running in case another build needs it.
+     */
+    private int sauceConnectLinger;
+
+    /**
+     * Label expression of the nodes on which Sauce Connect is started as soon as they come online.
+     */
+    private String sauceConnectPrewarmLabels;
+
+    /**
+     * Maximum number of seconds for the Sauce Connect process to start, 0 if unlimited.
+     */
+    private int sauceConnectProcessTimeout;
+
+    /**
+     * Maximum number of seconds for Sauce Connect to create its tunnel once its process has started, 0 if unlimited.
+     */
+    private int sauceConnectTunnelTimeout;
+
+    /**
+     * Maximum number of seconds for Sauce Connect to become ready once its tunnel has been created, 0 if unlimited.
+     */
+    private int sauceConnectReadyTimeout;
+
     private String environmentVariablePrefix;
 
     public String getUsername() {
@@ -149,6 +198,11 @@ public class PluginImpl extends Plugin implements Describable<PluginImpl> {
         HudsonSauceManagerFactory.getInstance().start();
     }
 
+    @Override
+    public void stop() throws Exception {
+        SessionEnricher.shutdown();
+    }
+
     public void setCredential(String username, String apiKey) throws IOException {
         this.username = username;
         this.apiKey = Secret.fromString(apiKey);
@@ -159,6 +213,14 @@ public class PluginImpl extends Plugin implements Describable<PluginImpl> {
     public void configure(StaplerRequest req, JSONObject formData) throws IOException, ServletException, Descriptor.FormException {
         reuseSauceAuth = formData.getBoolean("reuseSauceAuth");
         disableStatusColumn = formData.getBoolean("disableStatusColumn");
+        bulkJobRetrieval = formData.getBoolean("bulkJobRetrieval");
+        jobUpdateConcurrency = formData.optInt("jobUpdateConcurrency", DEFAULT_JOB_UPDATE_CONCURRENCY);
+        jobUpdateRate = formData.optInt("jobUpdateRate", DEFAULT_JOB_UPDATE_RATE);
+        sauceConnectLinger = formData.optInt("sauceConnectLinger", 0);
+        sauceConnectPrewarmLabels = formData.getString("sauceConnectPrewarmLabels");
+        sauceConnectProcessTimeout = formData.optInt("sauceConnectProcessTimeout", 0);
+        sauceConnectTunnelTimeout = formData.optInt("sauceConnectTunnelTimeout", 0);
+        sauceConnectReadyTimeout = formData.optInt("sauceConnectReadyTimeout", 0);
         username = formData.getString("username");
         apiKey = Secret.fromString(formData.getString("apiKey"));
         sauceConnectDirectory = formData.getString("sauceConnectDirectory");
@@ -267,6 +329,95 @@ public class PluginImpl extends Plugin implements Describable<PluginImpl> {
         this.disableStatusColumn = disableStatusColumn;
     }
 
+    public boolean isBulkJobRetrieval() {
+        return bulkJobRetrieval;
+    }
+
+    public void setBulkJobRetrieval(boolean bulkJobRetrieval) {
+        this.bulkJobRetrieval = bulkJobRetrieval;
+    }
+
+    /**
+     * @return the number of Sauce job updates which are sent in parallel when a build is published
+     */
+    public int getJobUpdateConcurrency() {
+        return jobUpdateConcurrency > 0 ? jobUpdateConcurrency : DEFAULT_JOB_UPDATE_CONCURRENCY;
+    }
+
+    public void setJobUpdateConcurrency(int jobUpdateConcurrency) {
+        this.jobUpdateConcurrency = jobUpdateConcurrency;
+    }
+
+    /**
+     * @return the maximum number of Sauce job updates sent per second for a Sauce account
+     */
+    public int getJobUpdateRate() {
+        return jobUpdateRate > 0 ? jobUpdateRate : DEFAULT_JOB_UPDATE_RATE;
+    }
+
+    public void setJobUpdateRate(int jobUpdateRate) {
+        this.jobUpdateRate = jobUpdateRate;
+    }
+
+    /**
+     * @return the number of seconds for which an idle Sauce Connect tunnel is kept running, 0 if tunnels are closed
+     * as soon as no build is using them
+     */
+    public int getSauceConnectLinger() {
+        return Math.max(sauceConnectLinger, 0);
+    }
+
+    public void setSauceConnectLinger(int sauceConnectLinger) {
+        this.sauceConnectLinger = sauceConnectLinger;
+    }
+
+    /**
+     * @return the label expression of the nodes on which Sauce Connect is started as soon as they come online, can be
+     * null
+     */
+    public String getSauceConnectPrewarmLabels() {
+        return sauceConnectPrewarmLabels;
+    }
+
+    public void setSauceConnectPrewarmLabels(String sauceConnectPrewarmLabels) {
+        this.sauceConnectPrewarmLabels = sauceConnectPrewarmLabels;
+    }
+
+    /**
+     * @return the maximum number of seconds for the Sauce Connect process to start, 0 if unlimited
+     */
+    public int getSauceConnectProcessTimeout() {
+        return Math.max(sauceConnectProcessTimeout, 0);
+    }
+
+    public void setSauceConnectProcessTimeout(int sauceConnectProcessTimeout) {
+        this.sauceConnectProcessTimeout = sauceConnectProcessTimeout;
+    }
+
+    /**
+     * @return the maximum number of seconds for Sauce Connect to create its tunnel once its process has started, 0 if
+     * unlimited
+     */
+    public int getSauceConnectTunnelTimeout() {
+        return Math.max(sauceConnectTunnelTimeout, 0);
+    }
+
+    public void setSauceConnectTunnelTimeout(int sauceConnectTunnelTimeout) {
+        this.sauceConnectTunnelTimeout = sauceConnectTunnelTimeout;
+    }
+
+    /**
+     * @return the maximum number of seconds for Sauce Connect to become ready once its tunnel has been created, 0 if
+     * unlimited
+     */
+    public int getSauceConnectReadyTimeout() {
+        return Math.max(sauceConnectReadyTimeout, 0);
+    }
+
+    public void setSauceConnectReadyTimeout(int sauceConnectReadyTimeout) {
+        this.sauceConnectReadyTimeout = sauceConnectReadyTimeout;
+    }
+
     public String getSauceConnectOptions() {
         return sauceConnectOptions;
     }
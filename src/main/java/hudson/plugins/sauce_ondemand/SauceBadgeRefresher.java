@@ -0,0 +1,139 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.Extension;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically determines which Jenkins jobs should display a Sauce badge in the {@link SauceBadgeColumn}, so that
+ * rendering the column only reads from memory.
+ * <p/>
+ * A job displays the badge if the latest Sauce job of its Sauce account was run by the job's last build.  The latest
+ * Sauce job is retrieved once per Sauce account on each pass, however many Jenkins jobs use the account.
+ */
+@Extension
+public class SauceBadgeRefresher extends AsyncPeriodicWork {
+
+    private static final Logger logger = Logger.getLogger(SauceBadgeRefresher.class.getName());
+
+    /**
+     * The Sauce username to display the badge for, keyed on the full name of the Jenkins job.  Jobs which shouldn't
+     * display a badge aren't included.
+     */
+    private static final Map<String, String> badges = new ConcurrentHashMap<String, String>();
+
+    public SauceBadgeRefresher() {
+        super("Sauce badge refresh");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(5);
+    }
+
+    @Override
+    public long getInitialDelay() {
+        return 0;
+    }
+
+    /**
+     * @param job the Jenkins job
+     * @return the Sauce username to display the badge for, or null if the job shouldn't display a badge
+     */
+    public static String getBadgeUser(Job<?, ?> job) {
+        return job == null ? null : badges.get(job.getFullName());
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        if (PluginImpl.get().isDisableStatusColumn()) {
+            badges.clear();
+            return;
+        }
+        Map<String, List<AbstractProject<?, ?>>> projectsByCredential = new HashMap<String, List<AbstractProject<?, ?>>>();
+        Map<String, SauceOnDemandBuildWrapper> credentials = new HashMap<String, SauceOnDemandBuildWrapper>();
+        for (AbstractProject<?, ?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            //the badge isn't displayed for the configurations of a matrix project, which share the project's wrapper
+            if (project instanceof MatrixConfiguration) {
+                continue;
+            }
+            SauceOnDemandBuildWrapper wrapper = SauceEnvironmentUtil.getBuildWrapper(project);
+            if (wrapper == null) {
+                continue;
+            }
+            String credential = wrapper.getUserName() + '\n' + wrapper.getApiKey();
+            List<AbstractProject<?, ?>> projects = projectsByCredential.get(credential);
+            if (projects == null) {
+                projects = new ArrayList<AbstractProject<?, ?>>();
+                projectsByCredential.put(credential, projects);
+                credentials.put(credential, wrapper);
+            }
+            projects.add(project);
+        }
+
+        Set<String> refreshed = new HashSet<String>();
+        for (Map.Entry<String, List<AbstractProject<?, ?>>> entry : projectsByCredential.entrySet()) {
+            SauceOnDemandBuildWrapper wrapper = credentials.get(entry.getKey());
+            String latestBuild = retrieveLatestBuild(wrapper.getUserName(), wrapper.getApiKey());
+            for (AbstractProject<?, ?> project : entry.getValue()) {
+                refreshed.add(project.getFullName());
+                if (latestBuild == null) {
+                    //unable to retrieve the latest job, keep the current state
+                    continue;
+                }
+                AbstractBuild<?, ?> lastBuild = project.getLastBuild();
+                if (lastBuild != null && latestBuild.equals(SauceOnDemandBuildWrapper.sanitiseBuildNumber(SauceEnvironmentUtil.getBuildName(lastBuild)))) {
+                    badges.put(project.getFullName(), wrapper.getUserName());
+                } else {
+                    badges.remove(project.getFullName());
+                }
+            }
+        }
+        //remove jobs which no longer use Sauce
+        badges.keySet().retainAll(refreshed);
+    }
+
+    /**
+     * @param username  the Sauce username
+     * @param accessKey the Sauce access key
+     * @return the build number of the latest Sauce job for the account, an empty string if the job has no build
+     * number, or null if the latest job couldn't be retrieved
+     */
+    protected String retrieveLatestBuild(String username, String accessKey) {
+        if (JenkinsSauceREST.isUnavailable()) {
+            return null;
+        }
+        try {
+            String lastJob = JenkinsSauceREST.get(username, accessKey).retrieveResults("/jobs?limit=1&full=true");
+            JSONArray jsonArray = JSONArray.fromObject(lastJob);
+            if (jsonArray.isEmpty()) {
+                return "";
+            }
+            Object build = jsonArray.getJSONObject(0).opt("build");
+            return build == null || build instanceof JSONNull ? "" : build.toString();
+        } catch (JSONException e) {
+            //unable to connect to Sauce Labs
+            logger.log(Level.FINE, "Unable to retrieve latest Sauce job for " + username, e);
+            return null;
+        }
+    }
+}
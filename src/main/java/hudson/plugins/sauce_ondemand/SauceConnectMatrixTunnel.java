@@ -0,0 +1,68 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.model.Computer;
+import hudson.model.InvisibleAction;
+import hudson.model.TaskListener;
+
+/**
+ * Records the Sauce Connect tunnel launched by a matrix build, which is shared by its configurations instead of each
+ * configuration launching (and closing) its own tunnel with the same tunnel identifier.
+ * <p/>
+ * The tunnel is released once all the configurations have finished, or when the matrix build completes if it is
+ * aborted before then.
+ */
+public class SauceConnectMatrixTunnel extends InvisibleAction {
+
+    /**
+     * The host name of the node on which the tunnel was launched, used as the Selenium host by the configurations.
+     */
+    private final String hostName;
+
+    private final transient SauceOnDemandBuildWrapper wrapper;
+
+    private final transient Computer computer;
+
+    private final transient String options;
+
+    private transient boolean running;
+
+    /**
+     * @param wrapper  the wrapper which launched the tunnel
+     * @param computer the node on which the tunnel was launched
+     * @param hostName the host name of the node
+     * @param options  the resolved Sauce Connect options of the tunnel
+     */
+    public SauceConnectMatrixTunnel(SauceOnDemandBuildWrapper wrapper, Computer computer, String hostName, String options) {
+        this.wrapper = wrapper;
+        this.computer = computer;
+        this.hostName = hostName;
+        this.options = options;
+        this.running = true;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * @return whether the tunnel has been launched and not yet released
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Releases the tunnel, unless it has already been released.
+     *
+     * @param listener the log of the matrix build
+     */
+    public void release(TaskListener listener) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        wrapper.closeMatrixTunnel(computer, listener, options);
+    }
+}
@@ -0,0 +1,369 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares the Sauce Connect tunnels started on a node between the builds which run on it.
+ * <p/>
+ * Tunnels are keyed on the Sauce user and the resolved Sauce Connect options (which include the tunnel identifier),
+ * and are reference counted: a build acquires the running tunnel for its key if there is one, and the tunnel is only
+ * closed once the last build has released it and it has been idle for the linger time, so that back to back builds
+ * don't each pay for Sauce Connect starting and stopping.  A tunnel whose process has exited is discarded rather than
+ * handed to a build.  Builds which acquire a tunnel while it is starting wait for it to start rather than starting
+ * another.
+ * <p/>
+ * There is one pool per JVM, as is the case for the tunnel manager, so tunnels launched on an agent are pooled on
+ * that agent.
+ */
+public class SauceConnectPool {
+
+    private static final Logger logger = Logger.getLogger(SauceConnectPool.class.getName());
+
+    /**
+     * How long a build waits for a tunnel with the same key to finish closing before starting its own, in seconds.
+     */
+    private static final long CLOSE_WAIT = Long.getLong(SauceConnectPool.class.getName() + ".closeWait", 180);
+
+    private static final SauceConnectPool INSTANCE = new SauceConnectPool(Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Sauce Connect pool");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }), TunnelShutdownService.get());
+
+    private final ScheduledExecutorService scheduler;
+
+    private final TunnelShutdownService shutdownService;
+
+    private final Map<String, Tunnel> tunnels = new HashMap<String, Tunnel>();
+
+    /**
+     * Tunnels which are being closed in the background, keyed on the key of the tunnel.
+     */
+    private final Map<String, Future<?>> closing = new HashMap<String, Future<?>>();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    SauceConnectPool(ScheduledExecutorService scheduler, TunnelShutdownService shutdownService) {
+        this.scheduler = scheduler;
+        this.shutdownService = shutdownService;
+    }
+
+    /**
+     * @return the pool of the current JVM
+     */
+    public static SauceConnectPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param username the Sauce user
+     * @param options  the resolved Sauce Connect options
+     * @return the key of the tunnel in the pool
+     */
+    public static String key(String username, String options) {
+        return username + '\n' + (options == null ? "" : options.trim());
+    }
+
+    /**
+     * Acquires the tunnel for the key, starting it if there is no running tunnel.  Each call must be followed by a
+     * call to {@link #release(String, long, PrintStream)} once the tunnel is no longer needed.
+     *
+     * @param key     identifies the tunnel, see {@link #key(String, String)}
+     * @param control starts and stops the tunnel
+     * @param log     the output of the build which acquires the tunnel
+     * @return the Sauce Connect process
+     * @throws AbstractSauceTunnelManager.SauceConnectException thrown if the tunnel can't be started
+     */
+    public Process acquire(String key, Control control, PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException {
+        Tunnel tunnel;
+        synchronized (this) {
+            tunnel = tunnels.get(key);
+            if (tunnel != null && !tunnel.isRunning()) {
+                Tunnel dead = tunnel;
+                if (dead.pendingClose != null) {
+                    dead.pendingClose.cancel(false);
+                }
+                //builds still using the dead tunnel will release its replacement
+                tunnel = new Tunnel(control);
+                tunnel.references = dead.references;
+                tunnel.replaced = dead;
+                tunnels.put(key, tunnel);
+            } else if (tunnel == null) {
+                tunnel = new Tunnel(control);
+                tunnels.put(key, tunnel);
+            }
+            tunnel.references++;
+            if (tunnel.pendingClose != null) {
+                tunnel.pendingClose.cancel(false);
+                tunnel.pendingClose = null;
+            }
+        }
+        synchronized (tunnel) {
+            if (tunnel.replaced != null) {
+                //the tunnel manager must forget the dead process before the replacement is started
+                discarded.incrementAndGet();
+                log.println("Sauce Connect tunnel is no longer running, starting a new tunnel");
+                close(key, tunnel.replaced, log);
+                tunnel.replaced = null;
+            }
+            if (tunnel.process != null) {
+                reused.incrementAndGet();
+                log.println("Reusing running Sauce Connect tunnel");
+                return tunnel.process;
+            }
+            try {
+                awaitClose(key, log);
+                tunnel.process = tunnel.control.open(log);
+                opened.incrementAndGet();
+                return tunnel.process;
+            } catch (AbstractSauceTunnelManager.SauceConnectException e) {
+                abandon(key, tunnel);
+                throw e;
+            } catch (RuntimeException e) {
+                abandon(key, tunnel);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Releases a tunnel acquired by {@link #acquire(String, Control, PrintStream)}.  The tunnel is closed once it
+     * has no other users and has been idle for the linger time.
+     *
+     * @param key    identifies the tunnel
+     * @param linger how long an idle tunnel is kept running in case another build needs it, in milliseconds.  If not
+     *               positive, idle tunnels are closed immediately (in the background, see {@link TunnelShutdownService})
+     * @param log    the output of the build which releases the tunnel
+     */
+    public void release(final String key, long linger, PrintStream log) {
+        final Tunnel tunnel;
+        synchronized (this) {
+            tunnel = tunnels.get(key);
+            if (tunnel == null || tunnel.references <= 0) {
+                logger.log(Level.FINE, "No Sauce Connect tunnel to release for " + key);
+                return;
+            }
+            if (--tunnel.references > 0) {
+                log.println("Sauce Connect tunnel is still in use by " + tunnel.references + " other build(s)");
+                return;
+            }
+            if (linger > 0) {
+                log.println("Keeping idle Sauce Connect tunnel running for " + TimeUnit.MILLISECONDS.toSeconds(linger) + " seconds");
+                tunnel.pendingClose = scheduler.schedule(new Runnable() {
+                    public void run() {
+                        closeIfIdle(key, tunnel);
+                    }
+                }, linger, TimeUnit.MILLISECONDS);
+                return;
+            }
+            tunnels.remove(key);
+        }
+        close(key, tunnel, log);
+    }
+
+    private void closeIfIdle(String key, Tunnel tunnel) {
+        synchronized (this) {
+            if (tunnel.references > 0 || tunnels.get(key) != tunnel) {
+                //acquired or replaced while the close was pending
+                return;
+            }
+            tunnels.remove(key);
+            if (tunnel.pendingClose != null) {
+                tunnel.pendingClose.cancel(false);
+            }
+        }
+        close(key, tunnel, null);
+    }
+
+    /**
+     * Releases the reference of a build whose tunnel failed to start, removing the tunnel if no other build is
+     * waiting for it.
+     */
+    private synchronized void abandon(String key, Tunnel tunnel) {
+        tunnel.references--;
+        if (tunnel.references <= 0 && tunnels.get(key) == tunnel) {
+            tunnels.remove(key);
+        }
+    }
+
+    /**
+     * Hands a tunnel which is no longer used to the {@link TunnelShutdownService}.
+     *
+     * @param log the output of the build which released the tunnel, null if it was closed once idle
+     */
+    private void close(String key, Tunnel tunnel, PrintStream log) {
+        synchronized (tunnel) {
+            if (tunnel.process == null || tunnel.closed) {
+                return;
+            }
+            tunnel.closed = true;
+        }
+        if (log != null) {
+            log.println("Closing Sauce Connect tunnel in the background");
+        }
+        Future<?> future = shutdownService.close(describe(key), tunnel.process, tunnel.control);
+        synchronized (this) {
+            closing.put(key, future);
+        }
+        closed.incrementAndGet();
+    }
+
+    /**
+     * Waits for a tunnel with the same key which is being closed to exit, as the tunnel manager would otherwise hand
+     * back the exiting process.
+     */
+    void awaitClose(String key, PrintStream log) {
+        Future<?> future;
+        synchronized (this) {
+            future = closing.remove(key);
+        }
+        if (future == null || future.isDone()) {
+            return;
+        }
+        log.println("Waiting for the previous Sauce Connect tunnel to close");
+        try {
+            future.get(CLOSE_WAIT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Unable to close Sauce Connect tunnel", e.getCause());
+        } catch (TimeoutException e) {
+            logger.log(Level.WARNING, "Sauce Connect tunnel " + describe(key) + " is still closing, starting a new tunnel");
+        }
+    }
+
+    /**
+     * @return describes the tunnel without its options, which may hold credentials
+     */
+    private static String describe(String key) {
+        int separator = key.indexOf('\n');
+        return separator == -1 ? key : key.substring(0, separator) + " ("
+                + AbstractSauceTunnelManager.getTunnelIdentifier(key.substring(separator + 1), "default") + ")";
+    }
+
+    /**
+     * @return the number of tunnels in the pool, running or idle
+     */
+    public synchronized int getCount() {
+        return tunnels.size();
+    }
+
+    /**
+     * @return the number of tunnels in the pool which aren't used by any build
+     */
+    public synchronized int getIdleCount() {
+        int idle = 0;
+        for (Tunnel tunnel : tunnels.values()) {
+            if (tunnel.references == 0) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    public long getOpened() {
+        return opened.get();
+    }
+
+    public long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return the number of tunnels which have been handed to the shutdown service
+     */
+    public long getClosed() {
+        return closed.get();
+    }
+
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tunnels (%d idle), %d started, %d reused, %d closed, %d discarded",
+                getCount(), getIdleCount(), getOpened(), getReused(), getClosed(), getDiscarded());
+    }
+
+    /**
+     * @return whether the process has not exited
+     */
+    static boolean isAlive(Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Starts and stops a tunnel on behalf of the pool.
+     */
+    public interface Control {
+
+        /**
+         * @param log the output of the build which needs the tunnel
+         * @return the Sauce Connect process
+         * @throws AbstractSauceTunnelManager.SauceConnectException thrown if the tunnel can't be started
+         */
+        Process open(PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException;
+
+        /**
+         * @param log the output to which the progress of the shutdown is written
+         * @throws AbstractSauceTunnelManager.SauceConnectException thrown if the tunnel can't be closed
+         */
+        void close(PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException;
+    }
+
+    private static final class Tunnel {
+        private final Control control;
+        /**
+         * Null until the tunnel has started.
+         */
+        private volatile Process process;
+        private int references;
+        private ScheduledFuture<?> pendingClose;
+        /**
+         * The tunnel which had exited when this tunnel replaced it, closed before this tunnel is started.
+         */
+        private Tunnel replaced;
+        private volatile boolean closed;
+
+        private Tunnel(Control control) {
+            this.control = control;
+        }
+
+        /**
+         * @return whether the tunnel is starting, or has started and its process is still running
+         */
+        private boolean isRunning() {
+            if (closed) {
+                return false;
+            }
+            Process p = process;
+            return p == null || isAlive(p);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.AbstractProject;
+import hudson.model.BuildableItemWithBuildWrappers;
+import hudson.model.Computer;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts Sauce Connect on nodes which match the labels configured for the plugin as soon as they come online, so that
+ * the first build on a freshly provisioned node doesn't wait for its tunnel to start.
+ * <p/>
+ * A tunnel is started for each project which can run on the node and which launches Sauce Connect on the node, using
+ * the Sauce Connect options of the project.  The tunnels are added to the {@link SauceConnectPool} of the node, where
+ * they are kept idle until a build acquires them, or until the pre-started idle time has passed.
+ */
+@Extension
+public class SauceConnectPrewarmer extends ComputerListener {
+
+    private static final Logger logger = Logger.getLogger(SauceConnectPrewarmer.class.getName());
+
+    /**
+     * How long a pre-started tunnel is kept running if no build uses it, in seconds.
+     */
+    private static final long IDLE_TIME = Long.getLong(SauceConnectPrewarmer.class.getName() + ".idleTime", 600);
+
+    @Override
+    public void onOnline(final Computer c, final TaskListener listener) throws IOException, InterruptedException {
+        final Node node = c.getNode();
+        if (node == null || !isPrewarmed(node)) {
+            return;
+        }
+        final List<SauceOnDemandBuildWrapper> wrappers = getWrappers(node);
+        if (wrappers.isEmpty()) {
+            return;
+        }
+        //don't hold up the node being brought online while Sauce Connect starts
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                prewarm(c, listener, wrappers);
+            }
+        });
+    }
+
+    /**
+     * Starts the tunnels on the node, one at a time.  Projects which use the same tunnel share the first one started.
+     */
+    private void prewarm(Computer c, TaskListener listener, List<SauceOnDemandBuildWrapper> wrappers) {
+        long idle = getIdleTime();
+        for (SauceOnDemandBuildWrapper wrapper : wrappers) {
+            try {
+                wrapper.prewarmTunnel(c, listener, idle);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to start Sauce Connect on " + c.getName(), e);
+            } catch (InterruptedException e) {
+                logger.log(Level.WARNING, "Interrupted starting Sauce Connect on " + c.getName(), e);
+                return;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Unable to start Sauce Connect on " + c.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * @return how long a pre-started tunnel is kept running if no build uses it, in milliseconds, which is at least
+     * the linger time configured for the plugin
+     */
+    static long getIdleTime() {
+        return TimeUnit.SECONDS.toMillis(Math.max(IDLE_TIME, PluginImpl.get().getSauceConnectLinger()));
+    }
+
+    /**
+     * @param node the node which has come online
+     * @return whether the node matches the labels configured for the plugin
+     */
+    static boolean isPrewarmed(Node node) {
+        String labels = Util.fixEmptyAndTrim(PluginImpl.get().getSauceConnectPrewarmLabels());
+        if (labels == null) {
+            return false;
+        }
+        Label label = Jenkins.getInstance().getLabel(labels);
+        return label != null && label.contains(node);
+    }
+
+    /**
+     * @param node the node which has come online
+     * @return the Sauce wrappers of the enabled projects which can run on the node
+     */
+    static List<SauceOnDemandBuildWrapper> getWrappers(Node node) {
+        List<SauceOnDemandBuildWrapper> wrappers = new ArrayList<SauceOnDemandBuildWrapper>();
+        for (AbstractProject<?, ?> project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            //the configurations of a matrix project share the wrapper of the project, which is already included
+            if (project.isDisabled() || project instanceof MatrixConfiguration
+                    || !(project instanceof BuildableItemWithBuildWrappers)) {
+                continue;
+            }
+            Label assignedLabel = project.getAssignedLabel();
+            if (assignedLabel != null && !assignedLabel.contains(node)) {
+                continue;
+            }
+            SauceOnDemandBuildWrapper wrapper = ((BuildableItemWithBuildWrappers) project).getBuildWrappersList().get(SauceOnDemandBuildWrapper.class);
+            if (wrapper != null && wrapper.isEnableSauceConnect() && wrapper.isLaunchSauceConnectOnSlave()) {
+                wrappers.add(wrapper);
+            }
+        }
+        return wrappers;
+    }
+}
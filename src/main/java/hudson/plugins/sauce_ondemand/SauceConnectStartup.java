@@ -0,0 +1,236 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the progress of Sauce Connect through the phases of its startup, as its output is written, recording when
+ * each phase was reached.
+ * <p/>
+ * The startup is recorded on the node which launches Sauce Connect, and is sent back to the controller once the tunnel
+ * is ready (or has failed to start), where it is added to the build and to the {@link SauceConnectStartupStats}.
+ */
+public class SauceConnectStartup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The phases of Sauce Connect's startup, in the order in which they are reached.
+     */
+    public enum Phase {
+        /**
+         * The tunnel manager has been asked to launch Sauce Connect.
+         */
+        LAUNCH("Launch"),
+        /**
+         * The Sauce Connect process has started and written its first output.
+         */
+        PROCESS_STARTED("Process started"),
+        /**
+         * The tunnel has been created through the Sauce Labs REST API.
+         */
+        TUNNEL_CREATED("Tunnel created"),
+        /**
+         * Sauce Connect is ready for tests to be run.
+         */
+        READY("Ready");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * @return the next phase, or null if this is the last phase
+         */
+        public Phase next() {
+            return ordinal() + 1 < values().length ? values()[ordinal() + 1] : null;
+        }
+    }
+
+    /**
+     * The time at which each phase was reached, 0 if it hasn't been reached.
+     */
+    private final long[] reached = new long[Phase.values().length];
+
+    /**
+     * Indicates whether a running tunnel was reused rather than Sauce Connect being launched.
+     */
+    private final boolean reused;
+
+    /**
+     * Describes why Sauce Connect failed to start, null if it started (or is still starting).
+     */
+    private String failure;
+
+    /**
+     * The phase which wasn't reached, null if Sauce Connect started (or is still starting).
+     */
+    private Phase failedPhase;
+
+    /**
+     * Starts tracking a launch of Sauce Connect.
+     */
+    public SauceConnectStartup() {
+        this(false);
+        reached(Phase.LAUNCH);
+    }
+
+    private SauceConnectStartup(boolean reused) {
+        this.reused = reused;
+    }
+
+    /**
+     * @return the startup of a build which reused a running tunnel
+     */
+    public static SauceConnectStartup reused() {
+        return new SauceConnectStartup(true);
+    }
+
+    /**
+     * Updates the phase from a line of Sauce Connect's output.
+     *
+     * @param line a line written by Sauce Connect, to its output or its log file
+     */
+    public void line(String line) {
+        if (line.contains("Sauce Connect is up") || line.contains("Connected! You may start your tests")) {
+            reached(Phase.READY);
+        } else if (line.contains("Tunnel ID:") || line.contains("Tunnel remote VM is running")) {
+            reached(Phase.TUNNEL_CREATED);
+        } else if (line.contains("Starting up") || line.contains("Please wait for")) {
+            reached(Phase.PROCESS_STARTED);
+        }
+    }
+
+    /**
+     * Records that a phase has been reached, along with any earlier phases which weren't recognised in the output.
+     */
+    public synchronized void reached(Phase phase) {
+        long now = System.currentTimeMillis();
+        for (int i = phase.ordinal(); i >= 0 && reached[i] == 0; i--) {
+            reached[i] = now;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records that Sauce Connect failed to reach the next phase.
+     *
+     * @param message describes the failure
+     */
+    public synchronized void failed(String message) {
+        failed(getPhase() == null ? Phase.LAUNCH : getPhase().next(), message);
+    }
+
+    /**
+     * Records that Sauce Connect failed to reach a phase.
+     *
+     * @param phase   the phase which wasn't reached
+     * @param message describes the failure
+     */
+    public synchronized void failed(Phase phase, String message) {
+        if (failure == null) {
+            failure = message;
+            failedPhase = phase;
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the last phase reached, null if a running tunnel was reused
+     */
+    public synchronized Phase getPhase() {
+        Phase last = null;
+        for (Phase phase : Phase.values()) {
+            if (reached[phase.ordinal()] != 0) {
+                last = phase;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Waits for the next phase to be reached, or for the startup to fail.
+     *
+     * @param phase   the last phase which was reached
+     * @param timeout the maximum time to wait, in milliseconds
+     * @throws InterruptedException thrown if the thread is interrupted while waiting
+     */
+    public synchronized void awaitChange(Phase phase, long timeout) throws InterruptedException {
+        if (getPhase() == phase && failure == null && timeout > 0) {
+            wait(timeout);
+        }
+    }
+
+    /**
+     * @return the time at which the phase was reached, 0 if it hasn't been reached
+     */
+    public synchronized long getReached(Phase phase) {
+        return reached[phase.ordinal()];
+    }
+
+    /**
+     * @return the time taken to reach the phase from the previous phase in milliseconds, -1 if it wasn't reached
+     */
+    public synchronized long getDuration(Phase phase) {
+        if (phase == Phase.LAUNCH || reached[phase.ordinal()] == 0) {
+            return -1;
+        }
+        return reached[phase.ordinal()] - reached[phase.ordinal() - 1];
+    }
+
+    /**
+     * @return the time taken for Sauce Connect to become ready in milliseconds, -1 if it didn't become ready
+     */
+    public synchronized long getTotal() {
+        if (reached[Phase.READY.ordinal()] == 0) {
+            return -1;
+        }
+        return reached[Phase.READY.ordinal()] - reached[Phase.LAUNCH.ordinal()];
+    }
+
+    public boolean isReused() {
+        return reused;
+    }
+
+    public synchronized String getFailure() {
+        return failure;
+    }
+
+    public synchronized Phase getFailedPhase() {
+        return failedPhase;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (reused) {
+            return "Reused running Sauce Connect tunnel";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            long duration = getDuration(phase);
+            if (duration >= 0) {
+                builder.append(builder.length() == 0 ? "" : ", ").append(phase.getDisplayName()).append(": ")
+                        .append(formatSeconds(duration));
+            }
+        }
+        if (failure != null) {
+            builder.append(builder.length() == 0 ? "" : ", ").append("failed: ").append(failure);
+        } else if (getTotal() >= 0) {
+            builder.append(" (total ").append(formatSeconds(getTotal())).append(')');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the duration in seconds, to a tenth of a second
+     */
+    static String formatSeconds(long millis) {
+        return String.format("%.1fs", millis / (double) TimeUnit.SECONDS.toMillis(1));
+    }
+}
@@ -0,0 +1,45 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.model.InvisibleAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long the Sauce Connect tunnel used by a build took to start, displayed on the build's summary page.
+ */
+public class SauceConnectStartupAction extends InvisibleAction {
+
+    private final SauceConnectStartup startup;
+
+    public SauceConnectStartupAction(SauceConnectStartup startup) {
+        this.startup = startup;
+    }
+
+    public SauceConnectStartup getStartup() {
+        return startup;
+    }
+
+    /**
+     * @return the phases reached after Sauce Connect was launched, along with the phase which wasn't reached if it
+     * failed to start
+     */
+    public List<SauceConnectStartup.Phase> getPhases() {
+        List<SauceConnectStartup.Phase> phases = new ArrayList<SauceConnectStartup.Phase>();
+        for (SauceConnectStartup.Phase phase : SauceConnectStartup.Phase.values()) {
+            if (phase != SauceConnectStartup.Phase.LAUNCH
+                    && (startup.getDuration(phase) >= 0 || phase == startup.getFailedPhase())) {
+                phases.add(phase);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * @return the time taken to reach the phase, or a description of the failure if it wasn't reached
+     */
+    public String getDuration(SauceConnectStartup.Phase phase) {
+        long duration = startup.getDuration(phase);
+        return duration >= 0 ? SauceConnectStartup.formatSeconds(duration) : "failed: " + startup.getFailure();
+    }
+}
@@ -0,0 +1,396 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Launches Sauce Connect while following its progress through the phases of its startup (see
+ * {@link SauceConnectStartup.Phase}), failing the launch as soon as a phase takes longer than its deadline rather than
+ * waiting for the tunnel manager to give up.  The monitor sleeps until a phase is reached, the launch finishes or the
+ * deadline of the next phase passes (see {@link SauceConnectStartup#awaitChange}), rather than polling.
+ * <p/>
+ * The phases are detected from the output which the tunnel manager writes as Sauce Connect starts, and from the log
+ * file of Sauce Connect if one is specified in its options, as the output isn't written unless verbose logging is
+ * enabled.  If neither is available, or no phase has been detected yet, the deadlines are added together and applied
+ * to the whole startup.
+ * <p/>
+ * When a deadline is exceeded, the launch is interrupted and given a short time to finish, so that a Sauce Connect
+ * process which it still returns can be destroyed before the tunnel is cleaned up.
+ */
+public class SauceConnectStartupMonitor {
+
+    private static final Logger logger = Logger.getLogger(SauceConnectStartupMonitor.class.getName());
+
+    /**
+     * How often the Sauce Connect log file is checked for new lines, in milliseconds.
+     */
+    private static final long POLL_INTERVAL = 250;
+
+    /**
+     * How long to wait for an interrupted launch to finish, in milliseconds.
+     */
+    private static final long CANCEL_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Sauce Connect startup " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * The maximum time taken to reach each phase from the previous phase, in milliseconds, 0 if unlimited.
+     */
+    private final long[] deadlines = new long[SauceConnectStartup.Phase.values().length];
+
+    /**
+     * @param processDeadline the maximum time for the Sauce Connect process to start, in milliseconds, 0 if unlimited
+     * @param tunnelDeadline  the maximum time for the tunnel to be created once the process has started
+     * @param readyDeadline   the maximum time for Sauce Connect to become ready once the tunnel has been created
+     */
+    public SauceConnectStartupMonitor(long processDeadline, long tunnelDeadline, long readyDeadline) {
+        deadlines[SauceConnectStartup.Phase.PROCESS_STARTED.ordinal()] = processDeadline;
+        deadlines[SauceConnectStartup.Phase.TUNNEL_CREATED.ordinal()] = tunnelDeadline;
+        deadlines[SauceConnectStartup.Phase.READY.ordinal()] = readyDeadline;
+    }
+
+    /**
+     * Launches Sauce Connect, waiting until it is ready.
+     *
+     * @param opener   launches Sauce Connect through the tunnel manager
+     * @param cleanup  closes the tunnel if it doesn't start in time, can be null
+     * @param options  the resolved Sauce Connect options, used to find its log file
+     * @param verbose  whether the tunnel manager writes the output of Sauce Connect
+     * @param log      the output of the build
+     * @param startup  records the phases reached
+     * @return the Sauce Connect process
+     * @throws StartupException thrown if Sauce Connect fails to start, or doesn't reach a phase before its deadline
+     */
+    public Process start(final Opener opener, Runnable cleanup, String options, boolean verbose, PrintStream log, final SauceConnectStartup startup) throws StartupException {
+        final PrintStream output = new PrintStream(new PhaseOutputStream(log, startup), true);
+        LogFileTailer tailer = null;
+        File logFile = getLogFile(options);
+        if (logFile != null) {
+            tailer = new LogFileTailer(logFile, startup);
+            EXECUTOR.submit(tailer);
+        }
+        boolean phasesVisible = verbose || logFile != null;
+        final Launch launch = new Launch(startup);
+        Future<Process> opening = EXECUTOR.submit(new Callable<Process>() {
+            public Process call() throws AbstractSauceTunnelManager.SauceConnectException {
+                boolean opened = false;
+                try {
+                    Process process = launch.opened(opener.open(output));
+                    opened = true;
+                    return process;
+                } catch (AbstractSauceTunnelManager.SauceConnectException e) {
+                    startup.failed(String.valueOf(e.getMessage()));
+                    throw e;
+                } finally {
+                    if (!opened) {
+                        //wakes the monitor
+                        startup.failed("Sauce Connect failed to start");
+                    }
+                    launch.finished.countDown();
+                }
+            }
+        });
+        try {
+            while (true) {
+                SauceConnectStartup.Phase reached = startup.getPhase();
+                if (opening.isDone() || reached == SauceConnectStartup.Phase.READY || startup.getFailure() != null) {
+                    try {
+                        //the launch has finished, or is about to
+                        Process process = opening.get();
+                        //the tunnel manager only returns once it considers Sauce Connect to be ready
+                        startup.reached(SauceConnectStartup.Phase.READY);
+                        return process;
+                    } catch (ExecutionException e) {
+                        startup.failed(String.valueOf(e.getCause().getMessage()));
+                        throw new StartupException(startup, e.getCause());
+                    }
+                }
+                //until a phase has been detected, the output may not be telling us about the phases at all
+                SauceConnectStartup.Phase phase = phasesVisible ? startup.getPhase() : SauceConnectStartup.Phase.LAUNCH;
+                boolean phaseDetected = phase != SauceConnectStartup.Phase.LAUNCH;
+                SauceConnectStartup.Phase next = phaseDetected ? phase.next() : SauceConnectStartup.Phase.READY;
+                long deadline = phaseDetected ? getDeadline(next) : getTotalDeadline();
+                long elapsed = System.currentTimeMillis() - startup.getReached(phase);
+                if (deadline > 0 && elapsed >= deadline) {
+                    String message = "Sauce Connect didn't reach '" + next.getDisplayName() + "' within "
+                            + SauceConnectStartup.formatSeconds(deadline) + " of '" + phase.getDisplayName() + "'";
+                    startup.failed(next, message);
+                    log.println(message);
+                    launch.abandon(opening);
+                    launch.awaitFinished(CANCEL_TIMEOUT);
+                    if (cleanup != null) {
+                        cleanup.run();
+                    }
+                    throw new StartupException(startup, null);
+                }
+                //woken as soon as a phase is reached or the launch finishes, otherwise when the deadline passes
+                startup.awaitChange(reached, deadline > 0 ? deadline - elapsed : Long.MAX_VALUE);
+            }
+        } catch (InterruptedException e) {
+            launch.abandon(opening);
+            startup.failed("Interrupted");
+            Thread.currentThread().interrupt();
+            throw new StartupException(startup, e);
+        } finally {
+            if (tailer != null) {
+                tailer.stop();
+            }
+            output.flush();
+        }
+    }
+
+    /**
+     * @return the maximum time taken to reach the phase from the previous phase, 0 if unlimited
+     */
+    private long getDeadline(SauceConnectStartup.Phase phase) {
+        return phase == null ? 0 : deadlines[phase.ordinal()];
+    }
+
+    /**
+     * @return the maximum time taken to become ready, 0 if any phase is unlimited
+     */
+    long getTotalDeadline() {
+        long total = 0;
+        for (SauceConnectStartup.Phase phase : SauceConnectStartup.Phase.values()) {
+            if (phase != SauceConnectStartup.Phase.LAUNCH) {
+                if (deadlines[phase.ordinal()] <= 0) {
+                    return 0;
+                }
+                total += deadlines[phase.ordinal()];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param options the resolved Sauce Connect options
+     * @return the log file specified by the options, null if none is specified
+     */
+    static File getLogFile(String options) {
+        if (options == null) {
+            return null;
+        }
+        String[] arguments = options.trim().split("\\s+");
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i].startsWith("--logfile=")) {
+                return new File(arguments[i].substring("--logfile=".length()));
+            }
+            if ((arguments[i].equals("-l") || arguments[i].equals("--logfile")) && i + 1 < arguments.length) {
+                return new File(arguments[i + 1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tracks a launch which is running on the executor, so that a process it returns after being abandoned is
+     * destroyed rather than left running.
+     */
+    private static final class Launch {
+        private final SauceConnectStartup startup;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicReference<Process> process = new AtomicReference<Process>();
+        private final AtomicBoolean abandoned = new AtomicBoolean();
+
+        private Launch(SauceConnectStartup startup) {
+            this.startup = startup;
+        }
+
+        /**
+         * Called by the launch with the process it has opened.
+         */
+        private Process opened(Process opened) {
+            process.set(opened);
+            if (abandoned.get()) {
+                destroy();
+            } else {
+                //the tunnel manager only returns once it considers Sauce Connect to be ready
+                startup.reached(SauceConnectStartup.Phase.READY);
+            }
+            return opened;
+        }
+
+        /**
+         * Interrupts the launch, any process it has opened or opens later is destroyed.
+         */
+        private void abandon(Future<Process> opening) {
+            abandoned.set(true);
+            opening.cancel(true);
+            destroy();
+        }
+
+        /**
+         * Waits for an abandoned launch to finish, so that the process it opened has been destroyed before the
+         * tunnel is cleaned up.
+         */
+        private void awaitFinished(long timeout) throws InterruptedException {
+            if (!finished.await(timeout, TimeUnit.MILLISECONDS)) {
+                logger.log(Level.WARNING, "Sauce Connect launch didn't finish within " + timeout + "ms of being interrupted");
+            }
+            destroy();
+        }
+
+        private void destroy() {
+            Process opened = process.getAndSet(null);
+            if (opened != null) {
+                opened.destroy();
+            }
+        }
+    }
+
+    /**
+     * Launches Sauce Connect.
+     */
+    public interface Opener {
+
+        /**
+         * @param output the output to be passed to the tunnel manager
+         * @return the Sauce Connect process, once it is ready
+         * @throws AbstractSauceTunnelManager.SauceConnectException thrown if Sauce Connect can't be launched
+         */
+        Process open(PrintStream output) throws AbstractSauceTunnelManager.SauceConnectException;
+    }
+
+    /**
+     * Thrown when Sauce Connect fails to start, holding the phases it reached.
+     */
+    public static class StartupException extends AbstractSauceTunnelManager.SauceConnectException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SauceConnectStartup startup;
+
+        public StartupException(SauceConnectStartup startup, Throwable cause) {
+            super(startup.getFailure());
+            this.startup = startup;
+            if (cause != null) {
+                initCause(cause);
+            }
+        }
+
+        public SauceConnectStartup getStartup() {
+            return startup;
+        }
+    }
+
+    /**
+     * Passes the output of the tunnel manager through to the build, updating the phase from each line.
+     */
+    private static final class PhaseOutputStream extends LineTransformationOutputStream {
+        private final OutputStream out;
+        private final SauceConnectStartup startup;
+
+        private PhaseOutputStream(OutputStream out, SauceConnectStartup startup) {
+            this.out = out;
+            this.startup = startup;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            out.write(b, 0, len);
+            startup.line(new String(b, 0, len, "UTF-8"));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Follows the Sauce Connect log file, updating the phase from each line which is appended.
+     */
+    private static final class LogFileTailer implements Runnable {
+        private final File file;
+        private final SauceConnectStartup startup;
+        private final long initialLength;
+        private volatile boolean stopped;
+
+        private LogFileTailer(File file, SauceConnectStartup startup) {
+            this.file = file;
+            this.startup = startup;
+            //lines written by earlier launches are skipped
+            this.initialLength = file.length();
+        }
+
+        public void run() {
+            long position = initialLength;
+            try {
+                while (!stopped) {
+                    long length = file.length();
+                    if (length < position) {
+                        //the log file has been replaced
+                        position = 0;
+                    }
+                    if (length > position) {
+                        position = read(position);
+                    }
+                    Thread.sleep(POLL_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                //stopped
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Unable to read Sauce Connect log file " + file, e);
+            }
+        }
+
+        /**
+         * @return the position following the last complete line read
+         */
+        private long read(long position) throws IOException {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                in.seek(position);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (in.getFilePointer() == in.length() && !line.isEmpty() && !endsWithNewline(in)) {
+                        //incomplete line, read it again once it has been finished
+                        break;
+                    }
+                    startup.line(line);
+                    position = in.getFilePointer();
+                }
+            } finally {
+                in.close();
+            }
+            return position;
+        }
+
+        private static boolean endsWithNewline(RandomAccessFile in) throws IOException {
+            in.seek(in.length() - 1);
+            int last = in.read();
+            return last == '\n' || last == '\r';
+        }
+
+        private void stop() {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the {@link SauceConnectStartup startups} of the Sauce Connect tunnels used by builds, counting how often
+ * a running tunnel was reused and in which phase launches failed, and how long each phase took.  The statistics are
+ * displayed on the configuration page of the plugin.
+ */
+public class SauceConnectStartupStats {
+
+    private static final SauceConnectStartupStats INSTANCE = new SauceConnectStartupStats();
+
+    private static final int PHASES = SauceConnectStartup.Phase.values().length;
+
+    private final AtomicLong launched = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong ready = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final AtomicLong[] failures = counters();
+    private final AtomicLong[] phaseCounts = counters();
+    private final AtomicLong[] phaseTimes = counters();
+
+    SauceConnectStartupStats() {
+    }
+
+    /**
+     * @return the statistics of the current JVM
+     */
+    public static SauceConnectStartupStats get() {
+        return INSTANCE;
+    }
+
+    private static AtomicLong[] counters() {
+        AtomicLong[] counters = new AtomicLong[PHASES];
+        for (int i = 0; i < PHASES; i++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    /**
+     * @param startup the startup of the tunnel used by a build
+     */
+    public void record(SauceConnectStartup startup) {
+        if (startup.isReused()) {
+            reused.incrementAndGet();
+            return;
+        }
+        launched.incrementAndGet();
+        for (SauceConnectStartup.Phase phase : SauceConnectStartup.Phase.values()) {
+            long duration = startup.getDuration(phase);
+            if (duration >= 0) {
+                phaseCounts[phase.ordinal()].incrementAndGet();
+                phaseTimes[phase.ordinal()].addAndGet(duration);
+            }
+        }
+        if (startup.getFailedPhase() != null) {
+            failures[startup.getFailedPhase().ordinal()].incrementAndGet();
+        } else if (startup.getTotal() >= 0) {
+            ready.incrementAndGet();
+            totalTime.addAndGet(startup.getTotal());
+            updateMax(startup.getTotal());
+        }
+    }
+
+    private void updateMax(long elapsed) {
+        long max = maxTime.get();
+        while (elapsed > max && !maxTime.compareAndSet(max, elapsed)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * @return the number of times Sauce Connect was launched
+     */
+    public long getLaunched() {
+        return launched.get();
+    }
+
+    /**
+     * @return the number of times a running tunnel was used instead of launching Sauce Connect
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return the number of launches which failed to reach the phase
+     */
+    public long getFailures(SauceConnectStartup.Phase phase) {
+        return failures[phase.ordinal()].get();
+    }
+
+    /**
+     * @return the average time taken to reach the phase from the previous phase, in milliseconds
+     */
+    public long getAverageTime(SauceConnectStartup.Phase phase) {
+        long count = phaseCounts[phase.ordinal()].get();
+        return count == 0 ? 0 : phaseTimes[phase.ordinal()].get() / count;
+    }
+
+    /**
+     * @return the average time taken for Sauce Connect to become ready, in milliseconds
+     */
+    public long getAverageTime() {
+        long count = ready.get();
+        return count == 0 ? 0 : totalTime.get() / count;
+    }
+
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d launched, %d reused, %dms average, %dms max",
+                getLaunched(), getReused(), getAverageTime(), getMaxTime()));
+        for (SauceConnectStartup.Phase phase : SauceConnectStartup.Phase.values()) {
+            if (phase != SauceConnectStartup.Phase.LAUNCH) {
+                builder.append(String.format("; %s: %dms average, %d failed",
+                        phase.getDisplayName(), getAverageTime(phase), getFailures(phase)));
+            }
+        }
+        return builder.toString();
+    }
+}
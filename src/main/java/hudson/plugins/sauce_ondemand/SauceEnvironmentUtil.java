@@ -7,6 +7,9 @@ import hudson.model.AbstractProject;
 import hudson.model.BuildableItemWithBuildWrappers;
 import hudson.model.Descriptor;
 import hudson.tasks.BuildWrapper;
+import hudson.tasks.Publisher;
+import hudson.tasks.junit.JUnitResultArchiver;
+import hudson.tasks.junit.TestDataPublisher;
 import hudson.util.DescribableList;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONException;
@@ -230,6 +233,29 @@ public final class SauceEnvironmentUtil {
         return buildWrapper;
     }
 
+    /**
+     * @param project the Jenkins project to check
+     * @return boolean indicating whether the project will run the {@link SauceOnDemandReportPublisher}, either
+     * through the {@link SauceOnDemandTestPublisher} or as test data publisher of the JUnit result archiver
+     */
+    public static boolean isReportPublisherConfigured(AbstractProject<?, ?> project) {
+        if (project == null) {
+            return false;
+        }
+        for (Publisher publisher : project.getPublishersList()) {
+            if (publisher instanceof SauceOnDemandTestPublisher) {
+                return true;
+            }
+            if (publisher instanceof JUnitResultArchiver) {
+                DescribableList<TestDataPublisher, Descriptor<TestDataPublisher>> testDataPublishers = ((JUnitResultArchiver) publisher).getTestDataPublishers();
+                if (testDataPublishers != null && testDataPublishers.get(SauceOnDemandReportPublisher.class) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      *
      * @param build the Jenkins build
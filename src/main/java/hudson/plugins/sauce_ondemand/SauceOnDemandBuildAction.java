@@ -3,19 +3,29 @@ package hudson.plugins.sauce_ondemand;
 import com.saucelabs.ci.JobInformation;
 import com.saucelabs.saucerest.SauceREST;
 import hudson.model.AbstractBuild;
+import hudson.model.Run;
 import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.TestResult;
+import jenkins.model.RunAction2;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -26,7 +36,7 @@ import java.util.regex.Pattern;
  *
  * @author Ross Rowe
  */
-public class SauceOnDemandBuildAction extends AbstractAction {
+public class SauceOnDemandBuildAction extends AbstractAction implements RunAction2 {
 
     /** Logger instance. */
     private static final Logger logger = Logger.getLogger(SauceOnDemandBuildAction.class.getName());
@@ -34,17 +44,62 @@ public class SauceOnDemandBuildAction extends AbstractAction {
     /**
      * String pattern for the URL which retrieves Sauce job details from the REST API.
      */
-    private static final String JOB_DETAILS_URL = "http://saucelabs.com/rest/v1/%1$s/build/%2$s/jobs?full=true";
+    private static final String JOB_DETAILS_URL = JenkinsSauceREST.REST_URL + "/build/%2$s/jobs?full=true&limit=%3$d&skip=%4$d";
+
+    /**
+     * Number of jobs retrieved per request.
+     */
+    private static final int JOB_PAGE_SIZE = 100;
+
+    /**
+     * Maximum number of pages of jobs which are retrieved for a build.
+     */
+    private static final int MAX_JOB_PAGES = 100;
 
     /**
      * Regex pattern that is used to identify Sauce job ids which have been run as part of a Jenkins build.
      */
     public static final Pattern SESSION_ID_PATTERN = Pattern.compile("SauceOnDemandSessionID=([0-9a-fA-F]+)(?:.job-name=(.*))?");
 
-    private transient final SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser;
+    /**
+     * The parser of the build's log, released once the build has been finalized.
+     */
+    private transient volatile SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser;
 
-    private AbstractBuild<?, ?> build;
+    /**
+     * Retrievals of the jobs in progress, keyed on build action.
+     */
+    private static final SingleFlight<SauceOnDemandBuildAction, List<JobInformation>> JOB_RETRIEVALS =
+            new SingleFlight<SauceOnDemandBuildAction, List<JobInformation>>();
+
+    /**
+     * Not persisted, set when the action is attached to or loaded with the build.
+     */
+    private transient AbstractBuild<?, ?> build;
+    /**
+     * The jobs of builds saved by earlier versions of the plugin, which stored them in build.xml.  They are read from
+     * here until the build is next saved, when they are moved to the {@link JobInformationFile} (see
+     * {@link SauceOnDemandSaveableListener}).  The jobs of new builds are never stored here.
+     */
     private List<JobInformation> jobInformation;
+    /**
+     * The jobs of the build while it is running, or which couldn't be written to the {@link JobInformationFile}.
+     */
+    private transient volatile List<JobInformation> pendingJobs;
+    /**
+     * Index of the jobs keyed on job id, used while the build output is processed.  Not persisted, it is rebuilt
+     * from the list on first use.
+     */
+    private transient Map<String, JobInformation> jobIndex;
+    /**
+     * Matchers used to associate test cases with jobs when test results are displayed, keyed on test results.
+     */
+    private transient Map<TestResult, JobNameMatcher> jobNameMatchers;
+    /**
+     * Index used to filter, sort and page the jobs when they are displayed, rebuilt when jobs are added or read
+     * again.
+     */
+    private transient SoftReference<JobQueryIndex> jobQueryIndex;
     private String accessKey;
     private String username;
 
@@ -67,8 +122,61 @@ public class SauceOnDemandBuildAction extends AbstractAction {
         return build;
     }
 
+    public void onAttached(Run<?, ?> r) {
+        build = (AbstractBuild<?, ?>) r;
+    }
+
+    /**
+     * The jobs of builds saved by earlier versions of the plugin are used as they were read from build.xml, loading
+     * the build doesn't write any files.
+     */
+    public void onLoad(Run<?, ?> r) {
+        build = (AbstractBuild<?, ?>) r;
+        synchronized (this) {
+            if (jobInformation != null) {
+                pendingJobs = jobInformation;
+            }
+        }
+    }
+
+    /**
+     * @return whether the jobs are stored in build.xml by an earlier version of the plugin
+     */
+    synchronized boolean hasLegacyJobs() {
+        return jobInformation != null;
+    }
+
+    /**
+     * Moves the jobs stored in build.xml into the {@link JobInformationFile} (unless the file has already been
+     * written), then saves build.xml without them.  The jobs are left in build.xml if the file can't be written.
+     * Invoked once the build has been saved for another reason, so that builds which are only viewed aren't
+     * rewritten.
+     */
+    void migrateJobs() {
+        synchronized (this) {
+            if (jobInformation == null) {
+                return;
+            }
+            if (getJobInformationFile().exists()) {
+                pendingJobs = null;
+                jobIndex = null;
+            } else {
+                pendingJobs = jobInformation;
+                if (!storeJobs()) {
+                    return;
+                }
+            }
+            jobInformation = null;
+        }
+        try {
+            build.save();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to save " + build + " after moving its Sauce jobs", e);
+        }
+    }
+
     public boolean hasSauceOnDemandResults() {
-        if (jobInformation == null) {
+        if (getLoadedJobs() == null) {
             //hasn't been initialized by build action yet, return false
             return false;
         }
@@ -77,102 +185,318 @@ public class SauceOnDemandBuildAction extends AbstractAction {
 
     public List<JobInformation> getJobs() {
 
-        if (jobInformation == null) {
+        List<JobInformation> jobs = getLoadedJobs();
+        if (jobs == null) {
+            //concurrent page views of the build share a single retrieval
             try {
-                jobInformation = new ArrayList<JobInformation>();
-                jobInformation.addAll(retrieveJobIdsFromSauce());
-            } catch (IOException e) {
-                logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-            } catch (JSONException e) {
-                logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-            } catch (InvalidKeyException e) {
-                logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-            } catch (NoSuchAlgorithmException e) {
-                logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+                jobs = JOB_RETRIEVALS.execute(this, new Callable<List<JobInformation>>() {
+                    public List<JobInformation> call() throws Exception {
+                        return retrieveJobs();
+                    }
+                });
+            } catch (ExecutionException e) {
+                logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e.getCause());
+                jobs = Collections.emptyList();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                jobs = Collections.emptyList();
             }
         }
 
-        return jobInformation;
+        return jobs;
+    }
+
+    /**
+     * @return the jobs held in memory, or held by the {@link JobInformationCache} once the build has finished (they
+     * are read from the {@link JobInformationFile} if they aren't cached), null if the jobs haven't been retrieved
+     */
+    private synchronized List<JobInformation> getLoadedJobs() {
+        List<JobInformation> jobs = pendingJobs;
+        if (jobs != null || build == null) {
+            return jobs;
+        }
+        String key = JobInformationCache.key(build);
+        jobs = JobInformationCache.get().get(key);
+        if (jobs == null) {
+            JobInformationFile file = getJobInformationFile();
+            if (file.exists()) {
+                try {
+                    jobs = file.read();
+                    JobInformationCache.get().put(key, jobs);
+                    jobIndex = null;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Unable to read Sauce jobs from " + file, e);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * @return the file which stores the jobs, null if the action hasn't been attached to a build
+     */
+    private JobInformationFile getJobInformationFile() {
+        return build == null ? null : new JobInformationFile(build.getRootDir());
+    }
+
+    /**
+     * Writes the jobs to the {@link JobInformationFile} once the build has finished, after which they are held by
+     * the {@link JobInformationCache}.  The jobs are kept in memory if the build is still running, or if the
+     * file can't be written.
+     *
+     * @return true if the jobs were written to the file
+     */
+    public synchronized boolean storeJobs() {
+        List<JobInformation> jobs = pendingJobs;
+        JobInformationFile file = getJobInformationFile();
+        if (jobs == null || file == null || build.isBuilding()) {
+            return false;
+        }
+        try {
+            file.write(jobs);
+            JobInformationCache.get().put(JobInformationCache.key(build), jobs);
+            pendingJobs = null;
+            jobIndex = null;
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to store Sauce jobs in " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Retrieves the jobs for the build and stores them, unless they have already been retrieved.
+     *
+     * @return the jobs for the build
+     */
+    private List<JobInformation> retrieveJobs() {
+        List<JobInformation> loaded = getLoadedJobs();
+        if (loaded != null) {
+            return loaded;
+        }
+        if (JenkinsSauceREST.isUnavailable()) {
+            //don't wait for Sauce Labs, and don't store the empty list so that the jobs are retrieved once it recovers
+            return Collections.emptyList();
+        }
+        List<JobInformation> jobs = new ArrayList<JobInformation>();
+        try {
+            jobs.addAll(retrieveJobIdsFromSauce());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (JSONException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (InvalidKeyException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (NoSuchAlgorithmException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        }
+        synchronized (this) {
+            loaded = getLoadedJobs();
+            if (loaded != null) {
+                return loaded;
+            }
+            pendingJobs = jobs;
+            jobIndex = null;
+            storeJobs();
+            return jobs;
+        }
     }
 
+    /**
+     * @return the client used to retrieve the jobs from the Sauce REST API
+     */
+    protected SauceREST getSauceREST() {
+        return JenkinsSauceREST.get(username, accessKey);
+    }
 
     /**
-     * Invokes the Sauce REST API to retrieve the details for the jobs the user has access to.  Iterates over the jobs
-     * and attempts to find the job that has a 'build' field matching the build key/number.
+     * Invokes the Sauce REST API to retrieve the details for the jobs which have a 'build' field matching the build
+     * key/number.  The jobs are retrieved a page at a time, so that builds which have run more jobs than fit in a
+     * single response are retrieved completely.  Jobs which are started while the pages are being retrieved shift
+     * the later pages, so a job may be returned by more than one page, and only the first occurrence of each job
+     * is kept.
      *
      */
     public List<JobInformation> retrieveJobIdsFromSauce() throws IOException, JSONException, InvalidKeyException, NoSuchAlgorithmException {
-        //invoke Sauce Rest API to find plan results with those values
-        List<JobInformation> jobInformation = new ArrayList<JobInformation>();
+        //invoke Sauce Rest API to find plan results with those values, keyed on job id
+        Map<String, JobInformation> jobInformation = new LinkedHashMap<String, JobInformation>();
 
-        SauceREST sauceREST = new JenkinsSauceREST(username, accessKey);
+        SauceREST sauceREST = getSauceREST();
         String buildNumber = SauceOnDemandBuildWrapper.sanitiseBuildNumber(SauceEnvironmentUtil.getBuildName(build));
-        logger.fine("Performing Sauce REST retrieve results for " + buildNumber);
-        String jsonResponse = sauceREST.retrieveResults(new URL(String.format(JOB_DETAILS_URL, username, buildNumber)));
-        JSONObject job = new JSONObject(jsonResponse);
-        JSONArray jobResults = job.getJSONArray("jobs");
-        if (jobResults == null) {
-            logger.log(Level.WARNING, "Unable to find job data for " + buildNumber);
-
-        } else {
+        for (int page = 0; page < MAX_JOB_PAGES; page++) {
+            logger.fine("Performing Sauce REST retrieve results for " + buildNumber + ", page " + page);
+            String jsonResponse = sauceREST.retrieveResults(new URL(String.format(JOB_DETAILS_URL, username, buildNumber, JOB_PAGE_SIZE, page * JOB_PAGE_SIZE)));
+            JSONObject job = new JSONObject(jsonResponse);
+            JSONArray jobResults = job.getJSONArray("jobs");
+            if (jobResults == null) {
+                logger.log(Level.WARNING, "Unable to find job data for " + buildNumber);
+                break;
+            }
             for (int i = 0; i < jobResults.length(); i++) {
                 //check custom data to find job that was for build
                 JSONObject jobData = jobResults.getJSONObject(i);
-                String jobId = jobData.getString("id");
-                JobInformation information = new JenkinsJobInformation(jobId, PluginImpl.get().calcHMAC(username, accessKey, jobId));
-                String status = jobData.getString("passed");
-                information.setStatus(status);
-                String jobName = jobData.getString("name");
-                if (jobName != null) {
-                    information.setHasJobName(true);
-                    information.setName(jobName);
-                }
-                String build = jobData.getString("build");
-                if (build != null) {
-                    information.setHasBuildNumber(true);
+                if (!jobInformation.containsKey(jobData.getString("id"))) {
+                    jobInformation.put(jobData.getString("id"), createJobInformation(jobData));
                 }
-                information.setOs(jobData.getString("os"));
-                information.setBrowser(jobData.getString("browser"));
-                information.setVersion(jobData.getString("browser_short_version"));
-                information.setVideoUrl(jobData.getString("video_url"));
-                information.setLogUrl(jobData.getString("log_url"));
-
-                jobInformation.add(information);
             }
-            //the list of results retrieved from the Sauce REST API is last-first, so reverse the list
-            Collections.reverse(jobInformation);
+            if (jobResults.length() < JOB_PAGE_SIZE) {
+                //last page
+                break;
+            }
         }
+        //the list of results retrieved from the Sauce REST API is last-first, so reverse the list
+        List<JobInformation> jobs = new ArrayList<JobInformation>(jobInformation.values());
+        Collections.reverse(jobs);
 
-        return jobInformation;
+        return jobs;
+    }
+
+    /**
+     * @param jobData the details of a job, as returned by the Sauce REST API
+     * @return a {@link JobInformation} instance populated with the job details
+     */
+    private JobInformation createJobInformation(JSONObject jobData) throws JSONException, InvalidKeyException, NoSuchAlgorithmException, UnsupportedEncodingException {
+        String jobId = jobData.getString("id");
+        JobInformation information = new JenkinsJobInformation(jobId, PluginImpl.get().calcHMAC(username, accessKey, jobId));
+        information.setStatus(getString(jobData, "passed"));
+        String jobName = getString(jobData, "name");
+        if (jobName != null) {
+            information.setHasJobName(true);
+            information.setName(jobName);
+        }
+        if (getString(jobData, "build") != null) {
+            information.setHasBuildNumber(true);
+        }
+        information.setOs(getString(jobData, "os"));
+        information.setBrowser(getString(jobData, "browser"));
+        information.setVersion(getString(jobData, "browser_short_version"));
+        information.setVideoUrl(getString(jobData, "video_url"));
+        information.setLogUrl(getString(jobData, "log_url"));
+        return information;
+    }
+
+    /**
+     * @return the value of the field, or null if the field is missing or null
+     */
+    private static String getString(JSONObject jobData, String key) throws JSONException {
+        return jobData.isNull(key) ? null : jobData.getString(key);
     }
 
     public ById getById(String id) {
         return new ById(id);
     }
 
+    /**
+     * @param jobId the Sauce job id
+     * @return the details of the Sauce job, or null if the job isn't part of this build
+     */
+    public JobInformation getJob(String jobId) {
+        return jobInformationForBuild(jobId);
+    }
+
     private JobInformation jobInformationForBuild(String jobId) {
-        for (JobInformation jobInfo : getJobs()) {
-            if (jobId.equals(jobInfo.getJobId())) {
-                return jobInfo;
+        getJobs();
+        return getJobIndex().get(jobId);
+    }
+
+    /**
+     * @return the index of the jobs, built on first use
+     */
+    private synchronized Map<String, JobInformation> getJobIndex() {
+        if (jobIndex == null) {
+            jobIndex = new HashMap<String, JobInformation>();
+            List<JobInformation> jobs = getLoadedJobs();
+            if (jobs != null) {
+                for (JobInformation jobInfo : jobs) {
+                    //keep the first entry for a job id, as the list lookup did
+                    if (!jobIndex.containsKey(jobInfo.getJobId())) {
+                        jobIndex.put(jobInfo.getJobId(), jobInfo);
+                    }
+                }
+            }
+        }
+        return jobIndex;
+    }
+
+    /**
+     * Adds the job to the list of jobs and the index.  The jobs are held in memory until they are next stored.
+     *
+     * @param jobInfo the details of the Sauce job
+     */
+    private synchronized void addJob(JobInformation jobInfo) {
+        if (pendingJobs == null) {
+            List<JobInformation> loaded = getLoadedJobs();
+            pendingJobs = loaded == null ? new ArrayList<JobInformation>() : loaded;
+        }
+        pendingJobs.add(jobInfo);
+        Map<String, JobInformation> index = getJobIndex();
+        if (!index.containsKey(jobInfo.getJobId())) {
+            index.put(jobInfo.getJobId(), jobInfo);
+        }
+    }
+
+    /**
+     * @param testResult the test results of the build (or of a module of the build), can be null
+     * @return the matcher which associates the test cases with the jobs of this build, built on first use
+     */
+    public JobNameMatcher getJobNameMatcher(TestResult testResult) {
+        //retrieve the jobs before locking, as the retrieval locks the action from another thread
+        List<JobInformation> jobs = getJobs();
+        synchronized (this) {
+            if (jobNameMatchers == null) {
+                jobNameMatchers = new WeakHashMap<TestResult, JobNameMatcher>();
+            }
+            JobNameMatcher matcher = testResult == null ? null : jobNameMatchers.get(testResult);
+            if (matcher == null || matcher.getJobCount() != jobs.size()) {
+                matcher = new JobNameMatcher(jobs, testResult);
+                if (testResult != null) {
+                    jobNameMatchers.put(testResult, matcher);
+                }
             }
+            return matcher;
+        }
+    }
+
+    @Override
+    protected JobQueryIndex getJobQueryIndex() {
+        //retrieve the jobs before locking, as the retrieval locks the action from another thread
+        List<JobInformation> jobs = getJobs();
+        synchronized (this) {
+            JobQueryIndex index = jobQueryIndex == null ? null : jobQueryIndex.get();
+            if (index == null || index.size() != jobs.size()) {
+                index = new JobQueryIndex(jobs);
+                jobQueryIndex = new SoftReference<JobQueryIndex>(index);
+            }
+            return index;
         }
-        return null;
     }
 
     public SauceOnDemandBuildWrapper.SauceOnDemandLogParser getLogParser() {
         return logParser;
     }
 
+    /**
+     * Releases the parser of the build's log once the build has been finalized, cancelling any retrievals of job
+     * details which are still in progress.
+     */
+    public void releaseLogParser() {
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser parser = logParser;
+        logParser = null;
+        if (parser != null && parser.getEnricher() != null) {
+            parser.getEnricher().cancel();
+        }
+    }
+
     /**
      * Processes the log output, and for lines which are in the valid log format, add a new {@link JobInformation}
-     * instance to the {@link #jobInformation} list.
+     * instance to the jobs of the build.
      * @param caseResult test results being processed, can be null
      * @param output lines of output to be processed, not null
      */
     public void processSessionIds(CaseResult caseResult, String... output) {
 
         logger.log(Level.FINE, caseResult == null ? "Parsing Sauce Session ids in stdout": "Parsing Sauce Session ids in test results");
-        SauceREST sauceREST = new JenkinsSauceREST(username, accessKey);
+        SauceREST sauceREST = getSauceREST();
 
         for (String text : output) {
             if (text == null) continue;
@@ -183,39 +507,66 @@ public class SauceOnDemandBuildAction extends AbstractAction {
                 if (m.groupCount() == 2) {
                     jobName = m.group(2);
                 }
-                JobInformation jobInfo = jobInformationForBuild(jobId);
-                if (jobInfo != null) {
-                    //we already have the job information stored, move to the next match
-                    continue;
-                }
-                try {
-                    jobInfo = new JenkinsJobInformation(jobId, PluginImpl.get().calcHMAC(username, accessKey, jobId));
-                    //retrieve data from session id to see if build number and/or job name has been stored
-                    String jsonResponse = sauceREST.getJobInfo(jobId);
-                    if (!jsonResponse.equals("")) {
-                        JSONObject job = new JSONObject(jsonResponse);
-                        boolean hasJobName = job.has("name") && !job.isNull("name");
-                        jobInfo.setHasJobName(hasJobName);
-                        if (hasJobName) {
-                            jobInfo.setName(job.getString("name"));
-                        }
-                        jobInfo.setHasBuildNumber(job.has("build") && !job.isNull("build"));
-                    }
-                    if (!jobInfo.isHasJobName() && jobName != null) {
-                        jobInfo.setName(jobName);
-                    }
-                    jobInformation.add(jobInfo);
-                } catch (JSONException e) {
-                    logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-                } catch (NoSuchAlgorithmException e) {
-                    logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-                } catch (InvalidKeyException e) {
-                    logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-                } catch (UnsupportedEncodingException e) {
-                    logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
-                }
+                addJobInformation(sauceREST, jobId, jobName);
+            }
+        }
+    }
 
+    /**
+     * Adds a new {@link JobInformation} instance to the jobs of the build for each session id which
+     * was found in the build output.  The jobs which were retrieved for the whole build (see
+     * {@link #retrieveJobIdsFromSauce()}) and the job details which were retrieved in the background while the
+     * build was running are used when available, the remaining jobs are retrieved individually.
+     *
+     * @param sessions Sauce session ids mapped to the job name which was output with them (can be null)
+     */
+    public void processSessionIds(Map<String, String> sessions) {
+        logger.log(Level.FINE, "Processing Sauce Session ids found in stdout");
+        SauceREST sauceREST = getSauceREST();
+        SessionEnricher enricher = logParser == null ? null : logParser.getEnricher();
+        for (Map.Entry<String, String> session : sessions.entrySet()) {
+            String jobId = session.getKey();
+            JobInformation existing = jobInformationForBuild(jobId);
+            if (existing != null) {
+                //we already have the job information stored, use the output job name if none has been stored
+                if (existing.getName() == null && session.getValue() != null) {
+                    existing.setName(session.getValue());
+                }
+                continue;
+            }
+            JobInformation jobInfo = enricher == null ? null : enricher.getJobInformation(jobId);
+            if (jobInfo != null) {
+                addJob(jobInfo);
+            } else {
+                addJobInformation(sauceREST, jobId, session.getValue());
             }
         }
     }
+
+    /**
+     * Retrieves the details for the Sauce job and adds it to the jobs of the build, if it hasn't
+     * already been added.
+     *
+     * @param sauceREST the REST client to use
+     * @param jobId     the Sauce job id
+     * @param jobName   the job name which was output with the job id, can be null
+     */
+    private void addJobInformation(SauceREST sauceREST, String jobId, String jobName) {
+        JobInformation jobInfo = jobInformationForBuild(jobId);
+        if (jobInfo != null) {
+            //we already have the job information stored
+            return;
+        }
+        try {
+            addJob(SessionEnricher.retrieveJobInformation(sauceREST, username, accessKey, jobId, jobName));
+        } catch (JSONException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (NoSuchAlgorithmException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (InvalidKeyException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        } catch (UnsupportedEncodingException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e);
+        }
+    }
 }
@@ -36,6 +36,10 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Util;
 import hudson.console.LineTransformationOutputStream;
+import hudson.matrix.MatrixAggregatable;
+import hudson.matrix.MatrixAggregator;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
 import hudson.model.*;
 import hudson.remoting.Callable;
 import hudson.tasks.BuildWrapper;
@@ -50,15 +54,15 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -71,7 +75,7 @@ import java.util.regex.Pattern;
  * @author Kohsuke Kawaguchi
  * @author Ross Rowe
  */
-public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializable {
+public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializable, MatrixAggregatable {
 
     /**
      * Logger instance.
@@ -97,6 +101,8 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
     public static final String SELENIUM_DEVICE_ORIENTATION = "SELENIUM_DEVICE_ORIENTATION";
     /** Regex pattern which is used to identify replacement parameters. */
     public static final Pattern ENVIRONMENT_VARIABLE_PATTERN = Pattern.compile("[$|%]([a-zA-Z_][a-zA-Z0-9_]+)");
+    /** Regex pattern which matches variable references which are left after the Sauce Connect options are resolved. */
+    private static final Pattern UNRESOLVED_VARIABLE_PATTERN = Pattern.compile("\\$\\{?[a-zA-Z_]");
     /** Environment variable key which contains the browser value for the selected browser.*/
     public static final String SELENIUM_BROWSER = "SELENIUM_BROWSER";
     /** Environment variable key which contains the platform for the selected browser.*/
@@ -123,10 +129,6 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      * Indicates whether Sauce Connect should be started as part of the build.
      */
     private boolean enableSauceConnect;
-    /**
-     * Map of log parser instances, keyed on the Jenkins build number.
-     */
-    private Map<String, SauceOnDemandLogParser> logParserMap;
     /**
      * Host location of the selenium server.
      */
@@ -175,6 +177,11 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      * RunCondition which allows users to define rules which enable Sauce Connect.
      */
     private RunCondition condition;
+    /**
+     * Indicates whether the configurations of a matrix build share one Sauce Connect tunnel, launched by the matrix
+     * build, rather than each launching their own.
+     */
+    private boolean shareMatrixTunnel;
 
 
     /**
@@ -193,6 +200,7 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      * @param useOldSauceConnect        indicates whether Sauce Connect 3 should be launched
      * @param verboseLogging            indicates whether the Sauce Connect output should be written to the Jenkins job output
      * @param useLatestVersion          indicates whether the latest version of the selected browser(s) should be used
+     * @param shareMatrixTunnel         indicates whether the configurations of a matrix build share one Sauce Connect tunnel
      */
     @DataBoundConstructor
     public SauceOnDemandBuildWrapper(
@@ -209,7 +217,8 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
             boolean launchSauceConnectOnSlave,
             boolean useOldSauceConnect,
             boolean verboseLogging,
-            boolean useLatestVersion
+            boolean useLatestVersion,
+            boolean shareMatrixTunnel
     ) {
         this.credentials = credentials;
         this.seleniumInformation = seleniumInformation;
@@ -229,6 +238,31 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
         this.useLatestVersion = useLatestVersion;
         this.condition = condition;
         this.sauceConnectPath = sauceConnectPath;
+        this.shareMatrixTunnel = shareMatrixTunnel;
+    }
+
+    /**
+     * Constructs a new instance whose matrix configurations each launch their own Sauce Connect tunnel.
+     */
+    public SauceOnDemandBuildWrapper(
+            boolean enableSauceConnect,
+            RunCondition condition,
+            Credentials credentials,
+            SeleniumInformation seleniumInformation,
+            String seleniumHost,
+            String seleniumPort,
+            String httpsProtocol,
+            String options,
+            String startingURL,
+            String sauceConnectPath,
+            boolean launchSauceConnectOnSlave,
+            boolean useOldSauceConnect,
+            boolean verboseLogging,
+            boolean useLatestVersion
+    ) {
+        this(enableSauceConnect, condition, credentials, seleniumInformation, seleniumHost, seleniumPort, httpsProtocol,
+                options, startingURL, sauceConnectPath, launchSauceConnectOnSlave, useOldSauceConnect, verboseLogging,
+                useLatestVersion, false);
     }
 
 
@@ -243,7 +277,10 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
     public Environment setUp(final AbstractBuild build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
         listener.getLogger().println("Starting pre-build for Sauce Labs plugin");
         logger.fine("Setting up Sauce Build Wrapper");
-        if (isEnableSauceConnect()) {
+        final SauceConnectMatrixTunnel matrixTunnel = getMatrixTunnel(build);
+        if (matrixTunnel != null) {
+            listener.getLogger().println("Using the Sauce Connect tunnel started for " + ((MatrixRun) build).getParentBuild().getFullDisplayName());
+        } else if (isEnableSauceConnect()) {
 
             boolean canRun = true;
             try {
@@ -255,37 +292,7 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
                 throw new IOException(e);
             }
             if (canRun) {
-                String workingDirectory = PluginImpl.get().getSauceConnectDirectory();
-                String resolvedOptions = getCommandLineOptions(build, listener);
-                if (launchSauceConnectOnSlave) {
-                    listener.getLogger().println("Starting Sauce Connect on slave node using tunnel identifier: " + AbstractSauceTunnelManager.getTunnelIdentifier(resolvedOptions, "default"));
-
-                    if (useOldSauceConnect && !(Computer.currentComputer() instanceof Hudson.MasterComputer)) {
-                        //only copy sauce connect jar if we are using Sauce Connect v3
-                        File sauceConnectJar = copySauceConnectToSlave(build, listener);
-                        Computer.currentComputer().getChannel().call(
-                                new SauceConnectHandler(
-                                        this,
-                                        listener,
-                                        workingDirectory,
-                                        resolvedOptions,
-                                        sauceConnectJar));
-                    } else {
-                        Computer.currentComputer().getChannel().call
-                                (new SauceConnectHandler(
-                                        this,
-                                        listener,
-                                        workingDirectory,
-                                        resolvedOptions
-                                ));
-                    }
-                } else {
-                    listener.getLogger().println("Starting Sauce Connect on master node using identifier: " + AbstractSauceTunnelManager.getTunnelIdentifier(resolvedOptions, "default"));
-                    //launch Sauce Connect on the master
-                    SauceConnectHandler sauceConnectStarter = new SauceConnectHandler(this, listener, workingDirectory, resolvedOptions);
-                    sauceConnectStarter.call();
-
-                }
+                launchSauceConnect(build, listener, getCommandLineOptions(build, listener));
             } else {
                 listener.getLogger().println("Sauce Connect launch skipped due to run condition");
             }
@@ -341,7 +348,9 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
                     }
                     return seleniumHost;
                 } else {
-                    if (isEnableSauceConnect()) {
+                    if (matrixTunnel != null) {
+                        return matrixTunnel.getHostName();
+                    } else if (isEnableSauceConnect()) {
                         return getCurrentHostName();
                     } else {
                         return "ondemand.saucelabs.com";
@@ -363,7 +372,9 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
             @Override
             public boolean tearDown(AbstractBuild build, BuildListener listener) throws IOException, InterruptedException {
                 listener.getLogger().println("Starting post-build for Sauce Labs plugin");
-                if (isEnableSauceConnect()) {
+                if (matrixTunnel != null) {
+                    listener.getLogger().println("The shared Sauce Connect tunnel is closed once all configurations have finished");
+                } else if (isEnableSauceConnect()) {
                     boolean shouldClose = true;
                     try {
                         if (condition != null) {
@@ -374,25 +385,162 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
                         throw new IOException(e);
                     }
                     if (shouldClose) {
-                        listener.getLogger().println("Shutting down Sauce Connect");
-                        String resolvedOptions = getCommandLineOptions(build, listener);
-                        if (launchSauceConnectOnSlave) {
-                            Computer.currentComputer().getChannel().call(new SauceConnectCloser(listener, getUserName(), resolvedOptions, useOldSauceConnect));
-                        } else {
-                            SauceConnectCloser tunnelCloser = new SauceConnectCloser(listener, getUserName(), resolvedOptions, useOldSauceConnect);
-                            tunnelCloser.call();
-                        }
+                        closeSauceConnect(Computer.currentComputer(), listener, getCommandLineOptions(build, listener));
                     }
                 }
 
                 processBuildOutput(build);
-                logParserMap.remove(build.toString());
                 listener.getLogger().println("Finished post-build for Sauce Labs plugin");
                 return true;
             }
         };
     }
 
+    /**
+     * Launches Sauce Connect for the build, on the node running the build or on the master.
+     *
+     * @param build           the build which needs the tunnel
+     * @param listener        the log of the build
+     * @param resolvedOptions the resolved Sauce Connect options
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void launchSauceConnect(AbstractBuild build, BuildListener listener, String resolvedOptions) throws IOException, InterruptedException {
+        String workingDirectory = PluginImpl.get().getSauceConnectDirectory();
+        SauceConnectHandler handler;
+        try {
+            if (launchSauceConnectOnSlave) {
+                listener.getLogger().println("Starting Sauce Connect on slave node using tunnel identifier: " + AbstractSauceTunnelManager.getTunnelIdentifier(resolvedOptions, "default"));
+
+                if (useOldSauceConnect && !(Computer.currentComputer() instanceof Hudson.MasterComputer)) {
+                    //only copy sauce connect jar if we are using Sauce Connect v3
+                    File sauceConnectJar = copySauceConnectToSlave(build, listener);
+                    handler = Computer.currentComputer().getChannel().call(
+                            new SauceConnectHandler(
+                                    this,
+                                    listener,
+                                    workingDirectory,
+                                    resolvedOptions,
+                                    sauceConnectJar));
+                } else {
+                    handler = Computer.currentComputer().getChannel().call
+                            (new SauceConnectHandler(
+                                    this,
+                                    listener,
+                                    workingDirectory,
+                                    resolvedOptions
+                            ));
+                }
+            } else {
+                listener.getLogger().println("Starting Sauce Connect on master node using identifier: " + AbstractSauceTunnelManager.getTunnelIdentifier(resolvedOptions, "default"));
+                //launch Sauce Connect on the master
+                SauceConnectHandler sauceConnectStarter = new SauceConnectHandler(this, listener, workingDirectory, resolvedOptions);
+                handler = sauceConnectStarter.call();
+
+            }
+        } catch (SauceConnectStartupMonitor.StartupException e) {
+            recordStartup(build, listener, e.getStartup());
+            throw e;
+        }
+        recordStartup(build, listener, handler.getStartup());
+    }
+
+    /**
+     * Adds the startup of Sauce Connect to the build and to the {@link SauceConnectStartupStats}.
+     *
+     * @param build    the build which launched Sauce Connect
+     * @param listener the log of the build
+     * @param startup  the phases reached by Sauce Connect, can be null
+     */
+    private void recordStartup(AbstractBuild build, BuildListener listener, SauceConnectStartup startup) {
+        if (startup == null) {
+            return;
+        }
+        listener.getLogger().println("Sauce Connect startup: " + startup);
+        build.addAction(new SauceConnectStartupAction(startup));
+        SauceConnectStartupStats.get().record(startup);
+    }
+
+    /**
+     * Releases the Sauce Connect tunnel launched by {@link #launchSauceConnect(AbstractBuild, BuildListener, String)}.
+     *
+     * @param computer        the node running the build
+     * @param listener        the log of the build
+     * @param resolvedOptions the resolved Sauce Connect options
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void closeSauceConnect(Computer computer, TaskListener listener, String resolvedOptions) throws IOException, InterruptedException {
+        listener.getLogger().println("Shutting down Sauce Connect");
+        if (launchSauceConnectOnSlave) {
+            computer.getChannel().call(new SauceConnectCloser(listener, getUserName(), resolvedOptions));
+        } else {
+            SauceConnectCloser tunnelCloser = new SauceConnectCloser(listener, getUserName(), resolvedOptions);
+            tunnelCloser.call();
+        }
+    }
+
+    /**
+     * @param build the build in progress
+     * @return the tunnel shared by the configurations of the matrix build, if the build is a configuration of a matrix
+     * build which has started a shared tunnel, otherwise null
+     */
+    private SauceConnectMatrixTunnel getMatrixTunnel(AbstractBuild build) {
+        if (!(build instanceof MatrixRun)) {
+            return null;
+        }
+        MatrixBuild parent = ((MatrixRun) build).getParentBuild();
+        SauceConnectMatrixTunnel matrixTunnel = parent == null ? null : parent.getAction(SauceConnectMatrixTunnel.class);
+        return matrixTunnel != null && matrixTunnel.isRunning() ? matrixTunnel : null;
+    }
+
+    /**
+     * Launches the Sauce Connect tunnel shared by the configurations of a matrix build.  If the tunnel can't be
+     * launched, each configuration launches its own.
+     *
+     * @param build    the matrix build
+     * @param listener the log of the matrix build
+     * @throws InterruptedException
+     */
+    private void launchMatrixTunnel(MatrixBuild build, BuildListener listener) throws InterruptedException {
+        try {
+            if (condition != null && !condition.runPerform(build, listener)) {
+                listener.getLogger().println("Sauce Connect launch skipped due to run condition");
+                return;
+            }
+            String resolvedOptions = getCommandLineOptions(build, listener);
+            launchSauceConnect(build, listener, resolvedOptions);
+            build.addAction(new SauceConnectMatrixTunnel(this, Computer.currentComputer(), getCurrentHostName(), resolvedOptions));
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            listener.getLogger().println("Unable to launch the shared Sauce Connect tunnel, each configuration will launch its own: " + e.getMessage());
+            logger.log(Level.WARNING, "Unable to launch Sauce Connect for " + build, e);
+        }
+    }
+
+    /**
+     * Releases the Sauce Connect tunnel shared by the configurations of a matrix build, invoked by the
+     * {@link SauceConnectMatrixTunnel} once the matrix build has finished.
+     *
+     * @param computer        the node on which the tunnel was launched
+     * @param listener        the log of the matrix build
+     * @param resolvedOptions the resolved Sauce Connect options
+     */
+    void closeMatrixTunnel(Computer computer, TaskListener listener, String resolvedOptions) {
+        try {
+            if (launchSauceConnectOnSlave && (computer == null || computer.getChannel() == null)) {
+                //the node has gone, and the tunnel with it
+                return;
+            }
+            closeSauceConnect(computer, listener, resolvedOptions);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to close the shared Sauce Connect tunnel", e);
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Interrupted closing the shared Sauce Connect tunnel", e);
+        }
+    }
+
     /**
      * Returns the command line options to be used as part of Sauce Connect.  Any variable references contained in the
      * options specified within the Jenkins job configuration are resolved, and if common options are specified then these are appended to the list of options.
@@ -405,10 +553,18 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      * @throws InterruptedException
      */
     private String getCommandLineOptions(AbstractBuild build, BuildListener listener) throws IOException, InterruptedException {
+        return getCommandLineOptions(build.getEnvironment(listener));
+    }
+
+    /**
+     * @param environment the environment variables used to resolve the options
+     * @return the Sauce Connect command line options, with the common options appended
+     */
+    private String getCommandLineOptions(Map<String, String> environment) {
 
         StringBuilder resolvedOptions = new StringBuilder();
-        resolvedOptions.append(getResolvedOptions(build, listener, options));
-        String resolvedCommonOptions = getResolvedOptions(build, listener, PluginImpl.get().getSauceConnectOptions());
+        resolvedOptions.append(getResolvedOptions(environment, options));
+        String resolvedCommonOptions = getResolvedOptions(environment, PluginImpl.get().getSauceConnectOptions());
         if (resolvedCommonOptions != null && !resolvedCommonOptions.equals("")) {
             if (!resolvedOptions.toString().equals("")) {
                 resolvedOptions.append(' ');
@@ -421,21 +577,46 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
     /**
      * Returns the Sauce Connect options, with any strings representing environment variables (eg. ${SOME_ENV_VAR}) resolved.
      *
-     * @param build    The same {@link Build} object given to the set up method.
-     * @param listener The same {@link BuildListener} object given to the set up method.
-     * @param options  The command line options to resolve
+     * @param environment the environment variables used to resolve the options
+     * @param options     The command line options to resolve
      * @return the Sauce Connect options to be used for the build
-     * @throws IOException
-     * @throws InterruptedException
      */
-    private String getResolvedOptions(AbstractBuild build, BuildListener listener, String options) throws IOException, InterruptedException {
+    private String getResolvedOptions(Map<String, String> environment, String options) {
         if (options == null) {
             return "";
         }
-        VariableResolver.ByMap<String> variableResolver = new VariableResolver.ByMap<String>(build.getEnvironment(listener));
+        VariableResolver.ByMap<String> variableResolver = new VariableResolver.ByMap<String>(environment);
         return Util.replaceMacro(options, variableResolver);
     }
 
+    /**
+     * Starts the Sauce Connect tunnel used by the builds of the project on a node which has just come online, so
+     * that the first build on the node finds it already running in the {@link SauceConnectPool}.  Tunnels are only
+     * started if they would be launched on the node by the build, and if their options don't depend on the build.
+     *
+     * @param computer the node which has come online
+     * @param listener the log of the node
+     * @param idle     how long the tunnel is kept running if no build uses it, in milliseconds
+     * @return whether a tunnel was started (or was already running) on the node
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    boolean prewarmTunnel(Computer computer, TaskListener listener, long idle) throws IOException, InterruptedException {
+        if (!isEnableSauceConnect() || !launchSauceConnectOnSlave || useOldSauceConnect || computer.getChannel() == null) {
+            return false;
+        }
+        String resolvedOptions = getCommandLineOptions(computer.buildEnvironment(listener));
+        if (UNRESOLVED_VARIABLE_PATTERN.matcher(resolvedOptions).find()) {
+            //the options refer to build variables, so the build's tunnel would differ
+            return false;
+        }
+        listener.getLogger().println("Starting Sauce Connect ahead of builds using tunnel identifier: " + AbstractSauceTunnelManager.getTunnelIdentifier(resolvedOptions, "default"));
+        SauceConnectHandler handler = new SauceConnectHandler(this, listener, PluginImpl.get().getSauceConnectDirectory(), resolvedOptions);
+        handler.prewarmIdle = idle;
+        computer.getChannel().call(handler);
+        return true;
+    }
+
     /**
      * Adds a new {@link SauceOnDemandBuildAction} instance to the {@link AbstractBuild} instance. The
      * processing of the build output will be performed by the {@link SauceOnDemandReportPublisher} instance (which
@@ -444,13 +625,11 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      * @param build the build in progress
      */
     private void processBuildOutput(AbstractBuild build) {
-        if (logParserMap != null) {
+        SauceOnDemandLogParser logParser = LogParserRegistry.remove(build);
+        if (logParser != null) {
             logger.fine("Adding build action to " + build.toString());
-            SauceOnDemandLogParser logParser = logParserMap.get(build.toString());
-            if (logParser != null) {
-                SauceOnDemandBuildAction buildAction = new SauceOnDemandBuildAction(build, logParser, getUserName(), getApiKey());
-                build.addAction(buildAction);
-            }
+            SauceOnDemandBuildAction buildAction = new SauceOnDemandBuildAction(build, logParser, getUserName(), getApiKey());
+            build.addAction(buildAction);
         }
     }
 
@@ -683,6 +862,10 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
         return startingURL;
     }
 
+    public boolean isShareMatrixTunnel() {
+        return shareMatrixTunnel;
+    }
+
     public RunCondition getCondition() {
         return condition;
     }
@@ -698,46 +881,87 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
     /**
      * {@inheritDoc}
      *
-     * Creates a new {@link SauceOnDemandLogParser} instance, which is added to the {@link #logParserMap}.
+     * Creates a new {@link SauceOnDemandLogParser} instance, which is registered in the {@link LogParserRegistry}.  If the
+     * Sauce test publisher is configured for the project, the details of Sauce jobs are retrieved in the background
+     * as their session ids are output, unless they are to be retrieved for the whole build once it has finished
+     * (see {@link PluginImpl#isBulkJobRetrieval()}).
      */
     @Override
     public OutputStream decorateLogger(AbstractBuild build, OutputStream logger) throws IOException, InterruptedException, Run.RunnerAbortedException {
-        SauceOnDemandLogParser sauceOnDemandLogParser = new SauceOnDemandLogParser(logger, build.getCharset());
-        if (logParserMap == null) {
-            logParserMap = new ConcurrentHashMap<String, SauceOnDemandLogParser>();
+        SessionEnricher enricher = null;
+        if (!PluginImpl.get().isBulkJobRetrieval() && SauceEnvironmentUtil.isReportPublisherConfigured(build.getProject())) {
+            enricher = new SessionEnricher(getUserName(), getApiKey());
         }
-        logParserMap.put(build.toString(), sauceOnDemandLogParser);
+        SauceOnDemandLogParser sauceOnDemandLogParser = new SauceOnDemandLogParser(logger, build.getCharset(), enricher);
+        LogParserRegistry.register(build, sauceOnDemandLogParser);
         return sauceOnDemandLogParser;
     }
 
     /**
-     * Handles terminating any running Sauce Connect processes.
+     * Creates an aggregator which maintains a {@link SauceOnDemandMatrixSummaryAction} on the matrix build, adding the
+     * Sauce jobs of each configuration as it finishes.  If the configurations share a Sauce Connect tunnel, the
+     * aggregator launches it before the configurations run and releases it once they have all finished.
+     */
+    public MatrixAggregator createAggregator(MatrixBuild build, Launcher launcher, BuildListener listener) {
+        return new MatrixAggregator(build, launcher, listener) {
+            @Override
+            public boolean startBuild() throws InterruptedException, IOException {
+                if (build.getAction(SauceOnDemandMatrixSummaryAction.class) == null) {
+                    build.addAction(new SauceOnDemandMatrixSummaryAction());
+                }
+                if (isShareMatrixTunnel() && isEnableSauceConnect() && build.getAction(SauceConnectMatrixTunnel.class) == null) {
+                    launchMatrixTunnel(build, listener);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean endBuild() throws InterruptedException, IOException {
+                SauceConnectMatrixTunnel matrixTunnel = build.getAction(SauceConnectMatrixTunnel.class);
+                if (matrixTunnel != null) {
+                    matrixTunnel.release(listener);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean endRun(MatrixRun run) throws InterruptedException, IOException {
+                SauceOnDemandBuildAction runAction = run.getAction(SauceOnDemandBuildAction.class);
+                SauceOnDemandMatrixSummaryAction summary = build.getAction(SauceOnDemandMatrixSummaryAction.class);
+                if (runAction != null && summary != null) {
+                    summary.addRun(run, runAction);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Handles terminating any running Sauce Connect processes.  The build's reference to the tunnel is released, and
+     * the tunnel is closed once no other build is using it and it has been idle for the linger time configured for
+     * the plugin.
      */
     private static final class SauceConnectCloser implements Callable<SauceConnectCloser, AbstractSauceTunnelManager.SauceConnectException> {
 
-        private final BuildListener listener;
+        private final TaskListener listener;
         private final String username;
         private final String options;
-        private final boolean useOldSauceConnect;
+        private final long linger;
 
-        public SauceConnectCloser(final BuildListener listener, final String username, String options, boolean useOldSauceConnect) {
+        public SauceConnectCloser(final TaskListener listener, final String username, String options) {
             this.listener = listener;
             this.username = username;
             this.options = options;
-            this.useOldSauceConnect = useOldSauceConnect;
+            this.linger = TimeUnit.SECONDS.toMillis(PluginImpl.get().getSauceConnectLinger());
         }
 
         /**
          * {@inheritDoc}
          *
-         * Closes the Sauce Connect tunnel.
+         * Releases the Sauce Connect tunnel.
          */
         public SauceConnectCloser call() throws AbstractSauceTunnelManager.SauceConnectException {
-            try {
-                getSauceTunnelManager(useOldSauceConnect).closeTunnelsForPlan(username, options, listener.getLogger());
-            } catch (ComponentLookupException e) {
-                throw new AbstractSauceTunnelManager.SauceConnectException(e);
-            }
+            SauceConnectPool.get().release(SauceConnectPool.key(username, options), linger, listener.getLogger());
             return this;
         }
     }
@@ -751,13 +975,28 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
         private final String username;
         private final String key;
 
-        private final BuildListener listener;
+        private final TaskListener listener;
         private final boolean useOldSauceConnect;
         private final String httpsProtocol;
         private final boolean verboseLogging;
         private final String sauceConnectPath;
         private File sauceConnectJar;
         private int port;
+        /**
+         * If positive, the tunnel is started ahead of any build, and is released once started so that it is kept
+         * idle for this long, in milliseconds.
+         */
+        private long prewarmIdle;
+        /**
+         * The maximum time taken by each phase of Sauce Connect's startup, in milliseconds, 0 if unlimited.
+         */
+        private final long processTimeout;
+        private final long tunnelTimeout;
+        private final long readyTimeout;
+        /**
+         * The phases reached by Sauce Connect, set once it has been launched (or a running tunnel reused).
+         */
+        private SauceConnectStartup startup;
 
         /**
          * @param sauceOnDemandBuildWrapper
@@ -765,7 +1004,7 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
          * @param workingDirectory
          * @param resolvedOptions
          */
-        public SauceConnectHandler(SauceOnDemandBuildWrapper sauceOnDemandBuildWrapper, BuildListener listener, String workingDirectory, String resolvedOptions) {
+        public SauceConnectHandler(SauceOnDemandBuildWrapper sauceOnDemandBuildWrapper, TaskListener listener, String workingDirectory, String resolvedOptions) {
             this.options = resolvedOptions;
             this.workingDirectory = workingDirectory;
             this.listener = listener;
@@ -776,6 +1015,10 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
             this.httpsProtocol = sauceOnDemandBuildWrapper.getHttpsProtocol();
             this.verboseLogging = sauceOnDemandBuildWrapper.isVerboseLogging();
             this.sauceConnectPath = sauceOnDemandBuildWrapper.getSauceConnectPath();
+            PluginImpl plugin = PluginImpl.get();
+            this.processTimeout = TimeUnit.SECONDS.toMillis(plugin.getSauceConnectProcessTimeout());
+            this.tunnelTimeout = TimeUnit.SECONDS.toMillis(plugin.getSauceConnectTunnelTimeout());
+            this.readyTimeout = TimeUnit.SECONDS.toMillis(plugin.getSauceConnectReadyTimeout());
         }
 
         /**
@@ -806,17 +1049,99 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
                     listener.getLogger().println("*** Please update your settings to use Sauce Connect v4 *** ");
                 }
 
-                AbstractSauceTunnelManager sauceTunnelManager = getSauceTunnelManager(useOldSauceConnect);
-                if (sauceTunnelManager instanceof HudsonSauceConnectFourManager && workingDirectory != null) {
-                    ((HudsonSauceConnectFourManager) sauceTunnelManager).setWorkingDirectory(workingDirectory);
+                String poolKey = SauceConnectPool.key(username, options);
+                SauceConnectControl control = new SauceConnectControl(this);
+                SauceConnectPool.get().acquire(poolKey, control, listener.getLogger());
+                //the control is only asked to launch Sauce Connect if no tunnel was running
+                startup = control.startup != null ? control.startup : SauceConnectStartup.reused();
+                if (prewarmIdle > 0) {
+                    SauceConnectPool.get().release(poolKey, prewarmIdle, listener.getLogger());
                 }
-                sauceTunnelManager.setSauceRest(new JenkinsSauceREST(username, key));
-
-                Process process = sauceTunnelManager.openConnection(username, key, port, sauceConnectJar, options, httpsProtocol, listener.getLogger(), verboseLogging, sauceConnectPath);
                 return this;
+            } catch (UnknownHostException e) {
+                throw new AbstractSauceTunnelManager.SauceConnectException(e);
+            }
+        }
+
+        /**
+         * @return the phases reached by Sauce Connect, null if it hasn't been launched
+         */
+        public SauceConnectStartup getStartup() {
+            return startup;
+        }
+    }
+
+    /**
+     * Starts and stops a pooled Sauce Connect tunnel using the tunnel manager.  Holds only the settings needed to do
+     * so, as it is kept by the {@link SauceConnectPool} for as long as the tunnel runs.
+     */
+    private static final class SauceConnectControl implements SauceConnectPool.Control {
+        private final String options;
+        private final String workingDirectory;
+        private final String username;
+        private final String key;
+        private final boolean useOldSauceConnect;
+        private final String httpsProtocol;
+        private final boolean verboseLogging;
+        private final String sauceConnectPath;
+        private final File sauceConnectJar;
+        private final int port;
+        private final long processTimeout;
+        private final long tunnelTimeout;
+        private final long readyTimeout;
+        private volatile SauceConnectStartup startup;
+
+        private SauceConnectControl(SauceConnectHandler handler) {
+            this.options = handler.options;
+            this.workingDirectory = handler.workingDirectory;
+            this.username = handler.username;
+            this.key = handler.key;
+            this.useOldSauceConnect = handler.useOldSauceConnect;
+            this.httpsProtocol = handler.httpsProtocol;
+            this.verboseLogging = handler.verboseLogging;
+            this.sauceConnectPath = handler.sauceConnectPath;
+            this.sauceConnectJar = handler.sauceConnectJar;
+            this.port = handler.port;
+            this.processTimeout = handler.processTimeout;
+            this.tunnelTimeout = handler.tunnelTimeout;
+            this.readyTimeout = handler.readyTimeout;
+        }
+
+        /**
+         * Launches Sauce Connect, failing as soon as a phase of its startup exceeds its deadline.
+         */
+        public Process open(final PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException {
+            final AbstractSauceTunnelManager sauceTunnelManager;
+            try {
+                sauceTunnelManager = getSauceTunnelManager(useOldSauceConnect);
             } catch (ComponentLookupException e) {
                 throw new AbstractSauceTunnelManager.SauceConnectException(e);
-            } catch (UnknownHostException e) {
+            }
+            if (sauceTunnelManager instanceof HudsonSauceConnectFourManager && workingDirectory != null) {
+                ((HudsonSauceConnectFourManager) sauceTunnelManager).setWorkingDirectory(workingDirectory);
+            }
+            sauceTunnelManager.setSauceRest(JenkinsSauceREST.get(username, key));
+            startup = new SauceConnectStartup();
+            SauceConnectStartupMonitor monitor = new SauceConnectStartupMonitor(processTimeout, tunnelTimeout, readyTimeout);
+            return monitor.start(new SauceConnectStartupMonitor.Opener() {
+                public Process open(PrintStream output) throws AbstractSauceTunnelManager.SauceConnectException {
+                    return sauceTunnelManager.openConnection(username, key, port, sauceConnectJar, options, httpsProtocol, output, verboseLogging, sauceConnectPath);
+                }
+            }, new Runnable() {
+                public void run() {
+                    try {
+                        close(log);
+                    } catch (AbstractSauceTunnelManager.SauceConnectException e) {
+                        logger.log(Level.WARNING, "Unable to close Sauce Connect tunnel which didn't start in time", e);
+                    }
+                }
+            }, options, verboseLogging, log, startup);
+        }
+
+        public void close(PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException {
+            try {
+                getSauceTunnelManager(useOldSauceConnect).closeTunnelsForPlan(username, options, log);
+            } catch (ComponentLookupException e) {
                 throw new AbstractSauceTunnelManager.SauceConnectException(e);
             }
         }
@@ -925,30 +1250,50 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
      *
      * @author Ross Rowe
      */
-    public class SauceOnDemandLogParser extends LineTransformationOutputStream implements Serializable {
+    public static class SauceOnDemandLogParser extends LineTransformationOutputStream implements Serializable {
 
         private transient OutputStream outputStream;
-        private transient Charset charset;
-        private List<String> lines;
+        private final SessionIdScanner scanner;
+        private transient SessionEnricher enricher;
+        /**
+         * Buffers the lines to be scanned in the background, so that writing the build log doesn't wait for the
+         * scanner.
+         */
+        private transient ConsoleScanQueue queue;
 
         public SauceOnDemandLogParser(OutputStream outputStream, Charset charset) {
             this.outputStream = outputStream;
-            this.charset = charset;
-            this.lines = new ArrayList<String>();
+            this.scanner = new SessionIdScanner(charset);
+            this.queue = new ConsoleScanQueue(scanner);
+            queue.start();
+        }
+
+        /**
+         * @param outputStream the build log
+         * @param charset      the charset of the build log
+         * @param enricher     retrieves the job details for session ids as they are found, can be null
+         */
+        public SauceOnDemandLogParser(OutputStream outputStream, Charset charset, SessionEnricher enricher) {
+            this(outputStream, charset);
+            this.enricher = enricher;
+            scanner.setListener(enricher);
         }
 
         /**
          * {@inheritDoc}
          *
-         * Decodes the line and add it to the {@link #lines} list.
+         * Writes the line to the build log, and queues the raw bytes to be scanned for Sauce session ids in the
+         * background.
          */
         @Override
         protected void eol(byte[] b, int len) throws IOException {
             if (this.outputStream != null) {
                 this.outputStream.write(b, 0, len);
             }
-            if (charset != null) {
-                lines.add(charset.decode(ByteBuffer.wrap(b, 0, len)).toString());
+            if (queue != null) {
+                queue.offer(b, 0, len);
+            } else {
+                scanner.scan(b, 0, len);
             }
         }
 
@@ -958,13 +1303,46 @@ public class SauceOnDemandBuildWrapper extends BuildWrapper implements Serializa
         @Override
         public void close() throws IOException {
             super.close();
+            if (queue != null) {
+                queue.close();
+            }
             if (outputStream != null) {
                 this.outputStream.close();
             }
         }
 
-        public List<String> getLines() {
-            return lines;
+        /**
+         * @return the Sauce session ids found in the build output, mapped to their job name (can be null)
+         */
+        public Map<String, String> getSessions() {
+            if (queue != null) {
+                //scan the lines which the background thread hasn't reached yet
+                queue.drain();
+            }
+            return scanner.getSessions();
+        }
+
+        /**
+         * @return the number of lines which didn't fit in the scanner's buffer, because the background scanner had
+         * fallen behind, and were scanned from its overflow list instead
+         */
+        public long getOverflowCount() {
+            return queue == null ? 0 : queue.getOverflowCount();
+        }
+
+        /**
+         * @return the number of lines which weren't scanned for session ids, because the background scanner had
+         * fallen too far behind
+         */
+        public long getDroppedCount() {
+            return queue == null ? 0 : queue.getDroppedCount();
+        }
+
+        /**
+         * @return retrieves the job details for session ids as they are found, can be null
+         */
+        public SessionEnricher getEnricher() {
+            return enricher;
         }
     }
 
@@ -0,0 +1,235 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of the Sauce jobs run by all the configurations of a {@link MatrixBuild}, which is attached to the matrix
+ * build and updated as each configuration finishes.  The project page reads the summary instead of the build action
+ * of each configuration, so displaying it doesn't retrieve the jobs of each configuration from Sauce Labs.
+ * <p/>
+ * Only the pass/fail counts of each configuration are persisted with the matrix build, so that build.xml stays small.
+ * The jobs themselves are stored by the build action of each configuration (see {@link JobInformationFile}), and are
+ * only read from the configuration runs when they are displayed.
+ */
+public class SauceOnDemandMatrixSummaryAction extends AbstractAction implements RunAction2 {
+
+    /**
+     * The pass/fail counts of each configuration, keyed on the configuration name, in the order in which the
+     * configurations finished.
+     */
+    private final Map<String, Counts> configurations = new LinkedHashMap<String, Counts>();
+
+    /**
+     * Not persisted, set when the action is attached to or loaded with the build.
+     */
+    private transient MatrixBuild build;
+
+    /**
+     * The jobs of the configurations which have finished since the build was loaded, keyed on the configuration
+     * name.  Null once the build has been loaded, in which case the jobs are read from the configuration runs.
+     */
+    private transient Map<String, List<JobInformation>> jobsByConfiguration = new LinkedHashMap<String, List<JobInformation>>();
+
+    /**
+     * All the jobs, in configuration order, rebuilt when a configuration is added.
+     */
+    private transient List<JobInformation> jobs;
+
+    /**
+     * Index used to filter, sort and page the jobs when they are displayed, rebuilt when a configuration is added.
+     */
+    private transient JobQueryIndex jobQueryIndex;
+
+    public void onAttached(Run<?, ?> r) {
+        build = (MatrixBuild) r;
+    }
+
+    public void onLoad(Run<?, ?> r) {
+        build = (MatrixBuild) r;
+    }
+
+    /**
+     * Adds the jobs of a configuration to the summary, replacing the jobs previously added for the configuration.
+     *
+     * @param run       the configuration run which has finished
+     * @param runAction the Sauce build action of the run
+     */
+    public void addRun(MatrixRun run, SauceOnDemandBuildAction runAction) {
+        addJobs(run.getParent().getName(), runAction.getJobs());
+    }
+
+    /**
+     * Adds the jobs of a configuration to the summary, replacing the jobs previously added for the configuration.
+     *
+     * @param configuration     the name of the configuration
+     * @param configurationJobs the jobs run by the configuration
+     */
+    synchronized void addJobs(String configuration, List<JobInformation> configurationJobs) {
+        Counts counts = new Counts();
+        for (JobInformation job : configurationJobs) {
+            counts.add(job);
+        }
+        configurations.remove(configuration);
+        configurations.put(configuration, counts);
+        if (jobsByConfiguration != null) {
+            jobsByConfiguration.remove(configuration);
+            jobsByConfiguration.put(configuration, new ArrayList<JobInformation>(configurationJobs));
+        }
+        jobs = null;
+        jobQueryIndex = null;
+    }
+
+    /**
+     * Rebuilds the transient state after the action has been read from build.xml.
+     */
+    private Object readResolve() {
+        jobsByConfiguration = null;
+        return this;
+    }
+
+    /**
+     * @return all the jobs run by the configurations which have finished
+     */
+    @Override
+    public synchronized List<JobInformation> getJobs() {
+        if (jobs == null) {
+            List<JobInformation> allJobs = new ArrayList<JobInformation>(getTotal());
+            if (jobsByConfiguration != null) {
+                for (List<JobInformation> configurationJobs : jobsByConfiguration.values()) {
+                    allJobs.addAll(configurationJobs);
+                }
+            } else if (build != null) {
+                for (MatrixRun run : build.getExactRuns()) {
+                    SauceOnDemandBuildAction runAction = run.getAction(SauceOnDemandBuildAction.class);
+                    if (runAction != null && configurations.containsKey(run.getParent().getName())) {
+                        allJobs.addAll(runAction.getJobs());
+                    }
+                }
+            }
+            jobs = Collections.unmodifiableList(allJobs);
+        }
+        return jobs;
+    }
+
+    @Override
+    protected synchronized JobQueryIndex getJobQueryIndex() {
+        if (jobQueryIndex == null) {
+            jobQueryIndex = new JobQueryIndex(getJobs());
+        }
+        return jobQueryIndex;
+    }
+
+    public synchronized boolean hasSauceOnDemandResults() {
+        return getTotal() > 0;
+    }
+
+    public synchronized int getTotal() {
+        int total = 0;
+        for (Counts counts : configurations.values()) {
+            total += counts.total;
+        }
+        return total;
+    }
+
+    public synchronized int getPassed() {
+        int passed = 0;
+        for (BrowserSummary summary : getBrowsers().values()) {
+            passed += summary.passed;
+        }
+        return passed;
+    }
+
+    public synchronized int getFailed() {
+        int failed = 0;
+        for (BrowserSummary summary : getBrowsers().values()) {
+            failed += summary.failed;
+        }
+        return failed;
+    }
+
+    /**
+     * @return the number of passed and failed jobs per browser, keyed on browser
+     */
+    public synchronized Map<String, BrowserSummary> getBrowsers() {
+        Map<String, BrowserSummary> browsers = new TreeMap<String, BrowserSummary>();
+        for (Counts counts : configurations.values()) {
+            for (Map.Entry<String, BrowserSummary> entry : counts.browsers.entrySet()) {
+                BrowserSummary summary = browsers.get(entry.getKey());
+                if (summary == null) {
+                    summary = new BrowserSummary();
+                    browsers.put(entry.getKey(), summary);
+                }
+                summary.passed += entry.getValue().passed;
+                summary.failed += entry.getValue().failed;
+            }
+        }
+        return browsers;
+    }
+
+    /**
+     * @return true if the job passed, false if it failed, null if its status isn't known
+     */
+    private static Boolean getResult(JobInformation job) {
+        String status = job.getStatus();
+        if ("true".equals(status) || "passed".equals(status)) {
+            return Boolean.TRUE;
+        } else if ("false".equals(status) || "failed".equals(status)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    /**
+     * The number of jobs run by a configuration, and the number of passed and failed jobs per browser.
+     */
+    private static final class Counts {
+        private int total;
+        private final Map<String, BrowserSummary> browsers = new TreeMap<String, BrowserSummary>();
+
+        private void add(JobInformation job) {
+            total++;
+            Boolean result = getResult(job);
+            if (result == null) {
+                return;
+            }
+            String browser = job.getBrowser() == null ? "" : job.getBrowser();
+            BrowserSummary summary = browsers.get(browser);
+            if (summary == null) {
+                summary = new BrowserSummary();
+                browsers.put(browser, summary);
+            }
+            if (result) {
+                summary.passed++;
+            } else {
+                summary.failed++;
+            }
+        }
+    }
+
+    /**
+     * The number of passed and failed jobs run on a browser.
+     */
+    public static class BrowserSummary {
+        private int passed;
+        private int failed;
+
+        public int getPassed() {
+            return passed;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+    }
+}
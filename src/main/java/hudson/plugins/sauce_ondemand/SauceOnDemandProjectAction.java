@@ -59,6 +59,10 @@ public class SauceOnDemandProjectAction extends AbstractAction {
         logger.fine("checking if project has sauce results");
         if (isSauceEnabled()) {
             logger.fine("Checking to see if project has Sauce results");
+            SauceOnDemandMatrixSummaryAction summary = getMatrixSummary();
+            if (summary != null) {
+                return summary.hasSauceOnDemandResults();
+            }
             List<SauceOnDemandBuildAction> sauceOnDemandBuildActions = getSauceBuildActions();
             if (sauceOnDemandBuildActions != null) {
                 boolean result = false;
@@ -89,6 +93,18 @@ public class SauceOnDemandProjectAction extends AbstractAction {
         return getBuildWrapper() != null;
     }
 
+    /**
+     * @return the summary of the Sauce jobs of the last build, if it is a matrix build which has a summary, otherwise
+     * null
+     */
+    private SauceOnDemandMatrixSummaryAction getMatrixSummary() {
+        AbstractBuild<?, ?> build = getProject().getLastBuild();
+        if (build instanceof MatrixBuild) {
+            return build.getAction(SauceOnDemandMatrixSummaryAction.class);
+        }
+        return null;
+    }
+
     private List<SauceOnDemandBuildAction> getSauceBuildActions() {
         AbstractBuild<?, ?> build = getProject().getLastBuild();
         if (build != null) {
@@ -116,6 +132,10 @@ public class SauceOnDemandProjectAction extends AbstractAction {
     }
 
     public List<JobInformation> getJobs() {
+        SauceOnDemandMatrixSummaryAction summary = getMatrixSummary();
+        if (summary != null) {
+            return summary.getJobs();
+        }
         List<SauceOnDemandBuildAction> sauceOnDemandBuildAction = getSauceBuildActions();
         if (sauceOnDemandBuildAction != null) {
             List<JobInformation> allJobs = new ArrayList<JobInformation>();
@@ -128,6 +148,15 @@ public class SauceOnDemandProjectAction extends AbstractAction {
         return Collections.emptyList();
     }
 
+    @Override
+    protected JobQueryIndex getJobQueryIndex() {
+        SauceOnDemandMatrixSummaryAction summary = getMatrixSummary();
+        if (summary != null) {
+            return summary.getJobQueryIndex();
+        }
+        return super.getJobQueryIndex();
+    }
+
     /**
      * Generates a zip file containing:
      * <ul>
@@ -30,14 +30,13 @@ import hudson.tasks.junit.CaseResult;
 import hudson.tasks.junit.TestObject;
 import hudson.tasks.junit.TestResultAction.Data;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Contributes {@link SauceOnDemandReport} to {@link CaseResult}.
@@ -50,15 +49,33 @@ public class SauceOnDemandReportFactory extends Data {
 
     public static final SauceOnDemandReportFactory INSTANCE = new SauceOnDemandReportFactory();
 
-    private static final String JOB_NAME_PATTERN = "\\b({0})\\b";
+    /**
+     * The Sauce session ids of each test, keyed on the full name of the test.  This is calculated by the
+     * {@link SauceOnDemandReportPublisher} and stored with the build, so that the session ids don't have to be
+     * found again whenever the test results are displayed.  Null for {@link #INSTANCE} and for builds which were
+     * recorded before the session ids were stored.
+     */
+    private final Map<String, String[]> sessionIds;
+
+    private SauceOnDemandReportFactory() {
+        this(null);
+    }
+
+    /**
+     * @param sessionIds the Sauce session ids of each test, keyed on the full name of the test
+     */
+    public SauceOnDemandReportFactory(Map<String, String[]> sessionIds) {
+        this.sessionIds = sessionIds;
+    }
 
     /**
-     * Makes this a singleton -- since it's stateless, there's no need to keep one around for every build.
+     * Builds which were recorded without the session ids share the stateless singleton, there's no need to keep one
+     * around for every build.
      *
      * @return
      */
     public Object readResolve() {
-        return INSTANCE;
+        return sessionIds == null ? INSTANCE : this;
     }
 
     @Override
@@ -67,25 +84,19 @@ public class SauceOnDemandReportFactory extends Data {
         if (testObject instanceof CaseResult) {
             logger.log(Level.FINE, "Attempting to find Sauce SessionID for test object");
             CaseResult cr = (CaseResult) testObject;
+            if (sessionIds != null) {
+                return getTestAction(cr, sessionIds.get(cr.getFullName()));
+            }
             String jobName = cr.getFullName();
             List<String[]> ids = new ArrayList<String[]>();
 
             AbstractBuild<?, ?> build = cr.getOwner();
             SauceOnDemandBuildAction buildAction = getBuildAction(build);
             if (buildAction != null) {
-                List<JobInformation> jobs = buildAction.getJobs();
-                for (JobInformation job : jobs) {
-                    //if job name matches test class/test name, then add id
-                    if (job.getName() != null) {
-                        Pattern jobNamePattern = Pattern.compile(MessageFormat.format(JOB_NAME_PATTERN, job.getName()));
-                        Matcher matcher = jobNamePattern.matcher(cr.getFullName());
-                        if (job.getName().equals(cr.getFullName()) //if job name equals full name of test
-                                || job.getName().contains(cr.getDisplayName()) //or if job name contains the test name
-                                || matcher.find()) { //or if the full name of the test contains the job name (matching whole words only)
-                            //then we have a match
-                            ids.add(new String[]{job.getJobId(), job.getHmac()});
-                        }
-                    }
+                //if job name matches test class/test name, then add id
+                JobNameMatcher matcher = buildAction.getJobNameMatcher(cr.getParent() == null ? null : cr.getParent().getParent());
+                for (JobInformation job : matcher.getJobs(cr)) {
+                    ids.add(new String[]{job.getJobId(), job.getHmac()});
                 }
             }
 
@@ -107,6 +118,22 @@ public class SauceOnDemandReportFactory extends Data {
         return Collections.emptyList();
     }
 
+    /**
+     * @param cr  the test case
+     * @param ids the stored session ids of the test case, can be null
+     * @return the report for the test case, empty if the test case has no session ids
+     */
+    private List<SauceOnDemandReport> getTestAction(CaseResult cr, String[] ids) {
+        if (ids == null || ids.length == 0) {
+            return Collections.emptyList();
+        }
+        List<String[]> sessions = new ArrayList<String[]>(ids.length);
+        for (String id : ids) {
+            sessions.add(new String[]{id});
+        }
+        return Collections.singletonList(new SauceOnDemandReport(cr, sessions));
+    }
+
     private SauceOnDemandBuildAction getBuildAction(AbstractBuild<?, ?> build) {
         SauceOnDemandBuildAction buildAction = build.getAction(SauceOnDemandBuildAction.class);
         if (buildAction == null && build instanceof MavenBuild) {
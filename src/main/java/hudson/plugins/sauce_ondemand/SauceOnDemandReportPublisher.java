@@ -26,25 +26,30 @@ package hudson.plugins.sauce_ondemand;
 import com.saucelabs.ci.JobInformation;
 import com.saucelabs.saucerest.SauceREST;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.maven.MavenBuild;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.Descriptor;
+import hudson.tasks.Publisher;
 import hudson.tasks.junit.CaseResult;
+import hudson.tasks.junit.JUnitResultArchiver;
 import hudson.tasks.junit.SuiteResult;
 import hudson.tasks.junit.TestDataPublisher;
 import hudson.tasks.junit.TestResult;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Associates Sauce OnDemand session ID to unit tests.
@@ -59,11 +64,6 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
      */
     private static final Logger logger = Logger.getLogger(SauceOnDemandReportPublisher.class.getName());
 
-    /**
-     * Regex which identifies the first word of the job name.
-     */
-    private static final String JOB_NAME_PATTERN = "\\b({0})\\b";
-
     /**
      * Constructs a new instance.
      */
@@ -78,7 +78,7 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
      * @param launcher      This launcher can be used to launch processes for this build.
      * @param buildListener Can be used to send any message.
      * @param testResult    Contains the test results for the build.
-     * @return a singleton {@link SauceOnDemandReportFactory} instance if the build has Sauce results, null if no results are found
+     * @return a {@link SauceOnDemandReportFactory} instance holding the Sauce session ids of each test if the build has Sauce results, null if no results are found
      * @throws IOException
      * @throws InterruptedException
      */
@@ -90,9 +90,10 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
         buildListener.getLogger().println("Starting Sauce Labs test publisher");
         SauceOnDemandBuildAction buildAction = getBuildAction(build);
         if (buildAction != null) {
-            processBuildOutput(build, buildAction, testResult);
+            TestReportSessionScanner.Sessions reportSessions = scanTestReports(build, buildListener);
+            processBuildOutput(build, buildAction, testResult, reportSessions, buildListener);
             if (buildAction.hasSauceOnDemandResults()) {
-                return SauceOnDemandReportFactory.INSTANCE;
+                return new SauceOnDemandReportFactory(getSessionIdsByTest(buildAction, testResult, reportSessions));
             } else {
                 buildListener.getLogger().println("The Sauce OnDemand plugin is configured, but no session IDs were found in the test output.");
                 return null;
@@ -110,8 +111,12 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
      * @param build       The build in progress
      * @param buildAction the Sauce Build Action instance for the build
      * @param testResult  Contains the test results for the build.
+     * @param reportSessions the session ids found in the test reports in the workspace, null if the reports couldn't be scanned
+     * @param buildListener Used to report the outcome of the Sauce job updates.
+     * @throws InterruptedException thrown if the build is interrupted while the Sauce jobs are being updated
      */
-    private void processBuildOutput(AbstractBuild build, SauceOnDemandBuildAction buildAction, TestResult testResult) {
+    private void processBuildOutput(AbstractBuild build, SauceOnDemandBuildAction buildAction, TestResult testResult,
+                                    TestReportSessionScanner.Sessions reportSessions, BuildListener buildListener) throws InterruptedException {
         SauceREST sauceREST = getSauceREST(buildAction);
         SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser = buildAction.getLogParser();
         if (logParser == null) {
@@ -119,12 +124,22 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
             return;
         }
 
-        //process the stdout for the build
-        String[] array = logParser.getLines().toArray(new String[logParser.getLines().size()]);
-        buildAction.processSessionIds(null, array);
+        //the jobs of the build have changed while it was running
+        String sauceBuildNumber = SauceOnDemandBuildWrapper.sanitiseBuildNumber(SauceEnvironmentUtil.getBuildName(build));
+        SauceRESTCache.get().invalidateBuild(buildAction.getUsername(), sauceBuildNumber);
 
-        //try the stdout for the tests
-        if (testResult != null) {
+        //process the session ids found in the stdout for the build
+        buildAction.processSessionIds(logParser.getSessions());
+        if (logParser.getOverflowCount() > 0 || logParser.getDroppedCount() > 0) {
+            buildListener.getLogger().println("The Sauce session id scanner fell behind the build output, "
+                    + logParser.getOverflowCount() + " lines were scanned from its overflow list and "
+                    + logParser.getDroppedCount() + " lines were not scanned for session ids");
+        }
+
+        //try the stdout for the tests, scanned in the workspace if possible
+        if (reportSessions != null) {
+            buildAction.processSessionIds(reportSessions.getSessions());
+        } else if (testResult != null) {
             for (SuiteResult sr : testResult.getSuites()) {
                 for (CaseResult cr : sr.getCases()) {
                     buildAction.processSessionIds(cr, sr.getStdout(), cr.getStdout(), cr.getStdout(), cr.getStderr());
@@ -132,11 +147,13 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
             }
         }
 
+        Map<JobInformation, Boolean> testStatuses = getTestStatuses(testResult, buildAction);
+        Map<String, Map<String, Object>> jobUpdates = new LinkedHashMap<String, Map<String, Object>>();
         for (JobInformation jobInformation : buildAction.getJobs()) {
             Map<String, Object> updates = new HashMap<String, Object>();
             //only store passed/name values if they haven't already been set
             if (jobInformation.getStatus() == null) {
-                Boolean buildResult = hasTestPassed(testResult, jobInformation);
+                Boolean buildResult = testStatuses.get(jobInformation);
                 if (buildResult != null) {
                     //set the status to passed if the test was successful
                     jobInformation.setStatus(buildResult.booleanValue() ? "passed" : "failed");
@@ -154,18 +171,68 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
                 updates.put("build", SauceOnDemandBuildWrapper.sanitiseBuildNumber(build.toString()));
             }
             if (!updates.isEmpty()) {
-                logger.fine("Performing Sauce REST update for " + jobInformation.getJobId());
-                sauceREST.updateJobInfo(jobInformation.getJobId(), updates);
+                jobUpdates.put(jobInformation.getJobId(), updates);
+            }
+        }
+        if (!jobUpdates.isEmpty()) {
+            PluginImpl plugin = PluginImpl.get();
+            JobUpdateDispatcher dispatcher = new JobUpdateDispatcher(sauceREST, buildAction.getUsername(),
+                    plugin.getJobUpdateConcurrency(), plugin.getJobUpdateRate());
+            buildListener.getLogger().println(dispatcher.dispatch(jobUpdates));
+            SauceRESTCache.get().invalidateBuild(buildAction.getUsername(), sauceBuildNumber);
+            SauceRESTCache.get().invalidateJobs(buildAction.getUsername(), jobUpdates.keySet());
+        }
+    }
+
+    /**
+     * Scans the JUnit XML reports of the build for session ids on the node which holds the workspace, so that the
+     * output of the tests doesn't have to be loaded on the controller.
+     *
+     * @param build         The build in progress
+     * @param buildListener Used to report the number of reports scanned
+     * @return the session ids found, null if the reports can't be located or scanned
+     * @throws InterruptedException thrown if the build is interrupted while the reports are being scanned
+     */
+    private TestReportSessionScanner.Sessions scanTestReports(AbstractBuild<?, ?> build, BuildListener buildListener) throws InterruptedException {
+        String pattern = getTestReportPattern(build);
+        FilePath workspace = build.getWorkspace();
+        if (pattern == null || workspace == null) {
+            return null;
+        }
+        try {
+            TestReportSessionScanner.Sessions sessions = workspace.act(new TestReportSessionScanner(pattern, build.getTimeInMillis()));
+            if (sessions.getReportCount() == 0) {
+                //the reports may have been archived from elsewhere, use the parsed results
+                return null;
+            }
+            buildListener.getLogger().println("Scanned " + sessions.getReportCount() + " test reports for Sauce session ids");
+            return sessions;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to scan the test reports of " + build + " for Sauce session ids", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param build The build in progress
+     * @return the pattern of the JUnit XML reports archived by the build, null if the build doesn't archive them with
+     * the JUnit result archiver (eg. Maven builds)
+     */
+    private String getTestReportPattern(AbstractBuild<?, ?> build) {
+        for (Publisher publisher : build.getProject().getPublishersList()) {
+            if (publisher instanceof JUnitResultArchiver) {
+                return Util.fixEmptyAndTrim(((JUnitResultArchiver) publisher).getTestResults());
             }
         }
+        return null;
     }
 
     protected SauceREST getSauceREST(SauceOnDemandBuildAction buildAction) {
-        return new JenkinsSauceREST(buildAction.getUsername(), buildAction.getAccessKey());
+        return JenkinsSauceREST.get(buildAction.getUsername(), buildAction.getAccessKey());
     }
 
     /**
-     * Determines if a Sauce job has passed or failed by attempting to identify a matching test case.
+     * Determines if Sauce jobs have passed or failed by attempting to identify a matching test case.
      *
      * A test case is identified as a match if:
      * <ul>
@@ -174,42 +241,79 @@ public class SauceOnDemandReportPublisher extends TestDataPublisher {
      *     <li>if the full name of the test contains the job name (matching whole words only)</li>
      * </ul>
      *
-     * If a match is found, then a boolean representing whether the test passed will be returned.
+     * If a match is found, then a boolean representing whether the first matching test passed is stored for the job.
      *
-     * @param testResult Contains the test results for the build.
-     * @param job        details of a Sauce job which was run during the build.
-     * @return Boolean indicating whether the test was successful.
+     * @param testResult  Contains the test results for the build.
+     * @param buildAction the Sauce Build Action instance for the build, holding the Sauce jobs which were run during the build.
+     * @return Booleans indicating whether the test for a job was successful, keyed on job
      */
-    private Boolean hasTestPassed(TestResult testResult, JobInformation job) {
-
+    private Map<JobInformation, Boolean> getTestStatuses(TestResult testResult, SauceOnDemandBuildAction buildAction) {
+        Map<JobInformation, Boolean> testStatuses = new IdentityHashMap<JobInformation, Boolean>();
         if (testResult == null) {
-            return null;
+            return testStatuses;
         }
 
+        JobNameMatcher matcher = buildAction.getJobNameMatcher(testResult);
         for (SuiteResult sr : testResult.getSuites()) {
             for (CaseResult cr : sr.getCases()) {
-                //if job name matches test class/test name, and pass/fail status is null, then populate the Sauce job with the test result status
-                if (job.getName() != null && job.getStatus() == null) {
-                    try {
-                        Pattern jobNamePattern = Pattern.compile(MessageFormat.format(JOB_NAME_PATTERN, job.getName()));
-                        Matcher matcher = jobNamePattern.matcher(cr.getFullName());
-                        if (job.getName().equals(cr.getFullName()) //if job name equals full name of test
-                                || job.getName().contains(cr.getDisplayName()) //or if job name contains the test name
-                                || matcher.find()) { //or if the full name of the test contains the job name (matching whole words only)
-                            //then we have a match
-                            //check the pass/fail status of the
-                            return cr.getStatus().equals(CaseResult.Status.PASSED) ||
-                                    cr.getStatus().equals(CaseResult.Status.FIXED);
-                        }
-                    } catch (Exception e) {
-                        //ignore and continue
-                        logger.log(Level.WARNING, "Error parsing line, attempting to continue");
+                for (JobInformation job : matcher.getJobs(cr)) {
+                    //the first matching test determines the pass/fail status of the job
+                    if (!testStatuses.containsKey(job)) {
+                        testStatuses.put(job, cr.getStatus().equals(CaseResult.Status.PASSED) ||
+                                cr.getStatus().equals(CaseResult.Status.FIXED));
                     }
+                }
+            }
+        }
+        return testStatuses;
+    }
 
+    /**
+     * Determines the Sauce session ids for each test, so that they can be stored with the build instead of being
+     * recalculated whenever the test results are displayed.  A test is associated with the jobs it matches (see
+     * {@link #getTestStatuses(TestResult, SauceOnDemandBuildAction)}), or if there are none, with the session ids
+     * found in its output.
+     *
+     * @param buildAction    the Sauce Build Action instance for the build
+     * @param testResult     Contains the test results for the build, can be null
+     * @param reportSessions the session ids found in the test reports in the workspace, null if the reports couldn't
+     *                       be scanned, in which case the output held by the test results is scanned
+     * @return the session ids keyed on the full name of the test, only tests which have session ids are included
+     */
+    private Map<String, String[]> getSessionIdsByTest(SauceOnDemandBuildAction buildAction, TestResult testResult,
+                                                      TestReportSessionScanner.Sessions reportSessions) {
+        Map<String, Set<String>> ids = new HashMap<String, Set<String>>();
+        if (testResult != null) {
+            JobNameMatcher matcher = buildAction.getJobNameMatcher(testResult);
+            for (SuiteResult sr : testResult.getSuites()) {
+                for (CaseResult cr : sr.getCases()) {
+                    Set<String> caseIds = new LinkedHashSet<String>();
+                    for (JobInformation job : matcher.getJobs(cr)) {
+                        caseIds.add(job.getJobId());
+                    }
+                    if (caseIds.isEmpty() && reportSessions != null) {
+                        caseIds.addAll(reportSessions.getSessionIds(cr.getFullName()));
+                    } else if (caseIds.isEmpty()) {
+                        for (String[] session : SauceOnDemandReportFactory.findSessionIDs(cr, cr.getStdout(), cr.getStderr())) {
+                            caseIds.add(session[0]);
+                        }
+                    }
+                    if (!caseIds.isEmpty()) {
+                        Set<String> existing = ids.get(cr.getFullName());
+                        if (existing == null) {
+                            ids.put(cr.getFullName(), caseIds);
+                        } else {
+                            existing.addAll(caseIds);
+                        }
+                    }
                 }
             }
         }
-        return null;
+        Map<String, String[]> sessionIds = new HashMap<String, String[]>();
+        for (Map.Entry<String, Set<String>> entry : ids.entrySet()) {
+            sessionIds.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+        return sessionIds;
     }
 
     /**
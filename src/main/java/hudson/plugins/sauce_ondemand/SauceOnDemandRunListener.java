@@ -0,0 +1,53 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Releases the Sauce state held for each build once it has finished: the log parser of the build is removed from the
+ * {@link LogParserRegistry} (as aborted builds never remove it themselves), and the Sauce jobs of the build are
+ * stored in its {@link JobInformationFile} so that they no longer need to be held in memory.  The jobs of deleted
+ * builds are removed from the {@link JobInformationCache}, and any Sauce Connect tunnel shared by the configurations
+ * of a matrix build is released.
+ */
+@Extension
+@SuppressWarnings("rawtypes")
+public class SauceOnDemandRunListener extends RunListener<Run> {
+
+    @Override
+    public void onCompleted(Run run, TaskListener listener) {
+        releaseLogParser(run);
+        //matrix builds which are aborted before their configurations finish don't release their shared tunnel
+        SauceConnectMatrixTunnel matrixTunnel = (SauceConnectMatrixTunnel) run.getAction(SauceConnectMatrixTunnel.class);
+        if (matrixTunnel != null) {
+            matrixTunnel.release(listener);
+        }
+    }
+
+    @Override
+    public void onFinalized(Run run) {
+        SauceOnDemandBuildAction buildAction = (SauceOnDemandBuildAction) run.getAction(SauceOnDemandBuildAction.class);
+        if (buildAction != null) {
+            buildAction.storeJobs();
+            buildAction.releaseLogParser();
+        }
+    }
+
+    @Override
+    public void onDeleted(Run run) {
+        releaseLogParser(run);
+        JobInformationCache.get().invalidate(JobInformationCache.key(run));
+    }
+
+    /**
+     * Removes the log parser of the build from the registry, and stops retrieving the details of the jobs it found.
+     */
+    private void releaseLogParser(Run run) {
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser = LogParserRegistry.remove(run);
+        if (logParser != null && logParser.getEnricher() != null) {
+            logParser.getEnricher().cancel();
+        }
+    }
+}
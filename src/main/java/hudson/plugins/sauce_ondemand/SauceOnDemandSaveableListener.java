@@ -0,0 +1,28 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * Moves the Sauce jobs which earlier versions of the plugin stored in build.xml into the {@link JobInformationFile}
+ * of the build when the build is next saved, so that builds are only rewritten when Jenkins is already writing them,
+ * rather than when they are loaded.
+ */
+@Extension
+public class SauceOnDemandSaveableListener extends SaveableListener {
+
+    @Override
+    public void onChange(Saveable o, XmlFile file) {
+        if (!(o instanceof Run)) {
+            return;
+        }
+        SauceOnDemandBuildAction buildAction = ((Run<?, ?>) o).getAction(SauceOnDemandBuildAction.class);
+        if (buildAction != null && buildAction.hasLegacyJobs()) {
+            //saves the build again, without the jobs
+            buildAction.migrateJobs();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the responses retrieved from the Sauce REST API, so that the UI components which display the same data
+ * (eg. the badge column, the build and project pages and the browser lists) don't each retrieve it separately.
+ * <p/>
+ * Responses are keyed on the credentials and URL used to retrieve them, and expire after a time which depends on
+ * the endpoint (see {@link #getTimeToLive(URL)}); responses from endpoints which aren't listed aren't cached.  The
+ * cache is bounded by the total length of the responses held, and the least recently used responses are evicted
+ * first.  A single instance is shared by the whole controller.
+ */
+public class SauceRESTCache {
+
+    /**
+     * Maximum total length of the cached responses, in characters.
+     */
+    private static final long MAX_SIZE = Long.getLong(SauceRESTCache.class.getName() + ".maxSize", 8 * 1024 * 1024);
+
+    /**
+     * Time to live for the responses of each endpoint, the first matching pattern applies.
+     */
+    private static final Map<Pattern, Long> TIME_TO_LIVE = new LinkedHashMap<Pattern, Long>();
+
+    static {
+        //supported browsers
+        TIME_TO_LIVE.put(Pattern.compile("/info/"), TimeUnit.HOURS.toMillis(1));
+        //jobs of a build
+        TIME_TO_LIVE.put(Pattern.compile("/build/[^/]+/jobs"), TimeUnit.MINUTES.toMillis(1));
+        //details of a single job
+        TIME_TO_LIVE.put(Pattern.compile("/jobs/[0-9a-fA-F]+$"), TimeUnit.MINUTES.toMillis(1));
+        //latest jobs
+        TIME_TO_LIVE.put(Pattern.compile("/jobs\\?"), TimeUnit.SECONDS.toMillis(30));
+    }
+
+    private static final SauceRESTCache INSTANCE = new SauceRESTCache(MAX_SIZE);
+
+    /**
+     * Cached responses, in least recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    /**
+     * Total length of the cached responses.
+     */
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    SauceRESTCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache shared by the controller
+     */
+    public static SauceRESTCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param username  the Sauce username used to retrieve the response
+     * @param accessKey the Sauce access key used to retrieve the response
+     * @param url       the URL the response was retrieved from
+     * @return the cached response, or null if there is no unexpired response for the URL
+     */
+    public String get(String username, String accessKey, URL url) {
+        if (getTimeToLive(url) <= 0) {
+            return null;
+        }
+        String key = key(username, accessKey, url);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.expires <= System.currentTimeMillis()) {
+                //expired responses are kept until they are replaced or evicted, see getStale
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.response;
+        }
+    }
+
+    /**
+     * Returns the last response which was cached for the URL, even if it has expired, for use when Sauce Labs is
+     * unavailable.
+     *
+     * @param username  the Sauce username used to retrieve the response
+     * @param accessKey the Sauce access key used to retrieve the response
+     * @param url       the URL the response was retrieved from
+     * @return the cached response, or null if there is no response for the URL
+     */
+    public synchronized String getStale(String username, String accessKey, URL url) {
+        Entry entry = entries.get(key(username, accessKey, url));
+        return entry == null ? null : entry.response;
+    }
+
+    /**
+     * Caches a response, if responses of the endpoint are cached.
+     *
+     * @param username  the Sauce username used to retrieve the response
+     * @param accessKey the Sauce access key used to retrieve the response
+     * @param url       the URL the response was retrieved from
+     * @param response  the response
+     */
+    public void put(String username, String accessKey, URL url, String response) {
+        long ttl = getTimeToLive(url);
+        if (ttl <= 0 || response == null || response.length() > maxSize) {
+            return;
+        }
+        String key = key(username, accessKey, url);
+        synchronized (this) {
+            remove(key);
+            entries.put(key, new Entry(url.getFile(), response, System.currentTimeMillis() + ttl));
+            size += response.length();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().response.length();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all the responses which were retrieved for a Sauce username.
+     *
+     * @param username the Sauce username
+     */
+    public void invalidate(String username) {
+        invalidate(username, null);
+    }
+
+    /**
+     * Removes the responses listing the jobs of a Sauce build, eg. when the jobs of the build have been updated.
+     *
+     * @param username    the Sauce username
+     * @param buildNumber the Sauce build number
+     */
+    public void invalidateBuild(String username, String buildNumber) {
+        invalidate(username, Pattern.compile("/build/" + Pattern.quote(buildNumber) + "/jobs"));
+    }
+
+    /**
+     * Removes the responses holding the details of Sauce jobs, eg. when the jobs have been updated.
+     *
+     * @param username the Sauce username
+     * @param jobIds   the Sauce job ids
+     */
+    public void invalidateJobs(String username, Collection<String> jobIds) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (String jobId : jobIds) {
+            ids.append(ids.length() == 0 ? "" : "|").append(Pattern.quote(jobId));
+        }
+        invalidate(username, Pattern.compile("/jobs/(" + ids + ")$"));
+    }
+
+    /**
+     * Removes the responses which were retrieved for a Sauce username from matching URLs, counting them as evicted.
+     *
+     * @param username the Sauce username
+     * @param file     matches the path and query of the URLs, null to match all URLs
+     */
+    private synchronized void invalidate(String username, Pattern file) {
+        String prefix = username + '\n';
+        for (Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix) && (file == null || file.matcher(entry.getValue().file).find())) {
+                size -= entry.getValue().response.length();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached responses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of cached responses
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total length of the cached responses, in characters
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d responses (%d characters), %d hits, %d misses, %d evictions",
+                getCount(), getSize(), getHits(), getMisses(), getEvictions());
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.response.length();
+        }
+    }
+
+    /**
+     * @param url the URL of a Sauce REST endpoint
+     * @return the number of milliseconds the responses of the endpoint are cached for, 0 if they aren't cached
+     */
+    static long getTimeToLive(URL url) {
+        String file = url.getFile();
+        for (Map.Entry<Pattern, Long> timeToLive : TIME_TO_LIVE.entrySet()) {
+            if (timeToLive.getKey().matcher(file).find()) {
+                return timeToLive.getValue();
+            }
+        }
+        return 0;
+    }
+
+    private static String key(String username, String accessKey, URL url) {
+        return username + '\n' + accessKey + '\n' + url.toExternalForm();
+    }
+
+    private static final class Entry {
+        private final String file;
+        private final String response;
+        private final long expires;
+
+        private Entry(String file, String response, long expires) {
+            this.file = file;
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+}
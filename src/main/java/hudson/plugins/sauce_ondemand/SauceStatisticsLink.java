@@ -0,0 +1,76 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only page under Manage Jenkins which displays the statistics collected by the plugin.
+ */
+@Extension
+public class SauceStatisticsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "monitor.png";
+    }
+
+    public String getDisplayName() {
+        return "Sauce OnDemand Statistics";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Statistics collected by the Sauce OnDemand plugin.";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "sauce-ondemand-statistics";
+    }
+
+    public SauceRESTCache getRestCache() {
+        return SauceRESTCache.get();
+    }
+
+    public JobInformationCache getJobCache() {
+        return JobInformationCache.get();
+    }
+
+    /**
+     * @return the Sauce Connect tunnels pooled by the master JVM, tunnels pooled by slaves aren't included
+     */
+    public SauceConnectPool getTunnelPool() {
+        return SauceConnectPool.get();
+    }
+
+    /**
+     * @return the service which closes Sauce Connect tunnels in the master JVM, tunnels closed by slaves aren't included
+     */
+    public TunnelShutdownService getTunnelShutdown() {
+        return TunnelShutdownService.get();
+    }
+
+    public SauceConnectStartupStats getTunnelStartup() {
+        return SauceConnectStartupStats.get();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return JenkinsSauceREST.getCircuitBreaker();
+    }
+
+    /**
+     * @return the phases of the Sauce Connect startup which are timed
+     */
+    public List<SauceConnectStartup.Phase> getPhases() {
+        List<SauceConnectStartup.Phase> phases = new ArrayList<SauceConnectStartup.Phase>();
+        for (SauceConnectStartup.Phase phase : SauceConnectStartup.Phase.values()) {
+            if (phase != SauceConnectStartup.Phase.LAUNCH) {
+                phases.add(phase);
+            }
+        }
+        return phases;
+    }
+}
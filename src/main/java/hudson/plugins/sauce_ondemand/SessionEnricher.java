@@ -0,0 +1,221 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import com.saucelabs.saucerest.SauceREST;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retrieves the details of Sauce jobs in the background as soon as their session ids are found in the build output,
+ * so that the job name and build details are already available when the {@link SauceOnDemandReportPublisher} runs.
+ */
+public class SessionEnricher implements SessionIdScanner.SessionListener {
+
+    /**
+     * Logger instance.
+     */
+    private static final Logger logger = Logger.getLogger(SessionEnricher.class.getName());
+
+    /**
+     * Number of threads used to retrieve job details.
+     */
+    static final int THREAD_COUNT = 4;
+
+    /**
+     * Number of seconds after which idle threads exit.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    /**
+     * Shared by all builds, so that the number of concurrent requests made to Sauce Labs is bounded.  Created when
+     * it is first used, and shut down when the plugin is stopped (see {@link #shutdown()}).
+     */
+    private static ThreadPoolExecutor executor;
+
+    private final String username;
+    private final String accessKey;
+
+    /**
+     * Pending and completed retrievals, keyed on Sauce job id.
+     */
+    private final ConcurrentMap<String, Retrieval> jobs = new ConcurrentHashMap<String, Retrieval>();
+
+    /**
+     * @param username  the Sauce username
+     * @param accessKey the Sauce access key
+     */
+    public SessionEnricher(String username, String accessKey) {
+        this.username = username;
+        this.accessKey = accessKey;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Queues the retrieval of the job details.
+     */
+    public void sessionFound(final String sessionId, final String jobName) {
+        if (jobs.containsKey(sessionId)) {
+            return;
+        }
+        Retrieval retrieval = new Retrieval(sessionId, jobName);
+        if (jobs.putIfAbsent(sessionId, retrieval) != null) {
+            return;
+        }
+        try {
+            getExecutor().execute(retrieval.future);
+        } catch (RuntimeException e) {
+            //the job will be retrieved when the build output is processed
+            jobs.remove(sessionId, retrieval);
+            logger.log(Level.WARNING, "Unable to queue retrieval of Sauce job " + sessionId, e);
+        }
+    }
+
+    /**
+     * @return the client used to retrieve the job details from the Sauce REST API
+     */
+    protected SauceREST getSauceREST() {
+        return JenkinsSauceREST.get(username, accessKey);
+    }
+
+    /**
+     * @return the executor which retrieves the job details, created if it hasn't been created since the plugin
+     * started or was stopped
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), "Sauce job details"));
+            //threads aren't kept while there are no builds running
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the threads which retrieve job details, interrupting the retrievals in progress and cancelling those
+     * which haven't started.  Invoked when the plugin is stopped.
+     */
+    static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the details which were retrieved in the background for a job.  If the retrieval is still running
+     * this waits for it to finish, if it hasn't started yet then it is cancelled so that the caller can retrieve
+     * the details itself.
+     *
+     * @param jobId the Sauce job id
+     * @return the job details, or null if they haven't been retrieved
+     */
+    public JobInformation getJobInformation(String jobId) {
+        Retrieval retrieval = jobs.remove(jobId);
+        if (retrieval == null) {
+            return null;
+        }
+        if (retrieval.claimed.compareAndSet(false, true)) {
+            //hasn't started
+            retrieval.future.cancel(false);
+            return null;
+        }
+        try {
+            return retrieval.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Unable to retrieve Job data from Sauce Labs", e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Cancels any retrievals which haven't started yet.
+     */
+    public void cancel() {
+        for (Retrieval retrieval : jobs.values()) {
+            retrieval.future.cancel(false);
+        }
+        jobs.clear();
+    }
+
+    /**
+     * The retrieval of the details of a job, which is either started by the executor or claimed by the caller of
+     * {@link #getJobInformation(String)}, whichever comes first.
+     */
+    private class Retrieval implements Callable<JobInformation> {
+
+        private final String sessionId;
+        private final String jobName;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final FutureTask<JobInformation> future = new FutureTask<JobInformation>(this);
+
+        Retrieval(String sessionId, String jobName) {
+            this.sessionId = sessionId;
+            this.jobName = jobName;
+        }
+
+        public JobInformation call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                //the caller is retrieving the details itself
+                return null;
+            }
+            return retrieveJobInformation(getSauceREST(), username, accessKey, sessionId, jobName);
+        }
+    }
+
+    /**
+     * Creates a {@link JobInformation} instance for a job, populated with the job name and build details which
+     * have been stored in Sauce Labs.
+     *
+     * @param sauceREST the REST client to use
+     * @param username  the Sauce username
+     * @param accessKey the Sauce access key
+     * @param jobId     the Sauce job id
+     * @param jobName   the job name which was output with the job id, used if no name has been stored, can be null
+     * @return the job details
+     * @throws JSONException                thrown if the response could not be parsed
+     * @throws NoSuchAlgorithmException     thrown if the HMAC could not be generated
+     * @throws InvalidKeyException          thrown if the HMAC could not be generated
+     * @throws UnsupportedEncodingException thrown if the HMAC could not be generated
+     */
+    public static JobInformation retrieveJobInformation(SauceREST sauceREST, String username, String accessKey, String jobId, String jobName)
+            throws JSONException, NoSuchAlgorithmException, InvalidKeyException, UnsupportedEncodingException {
+        JobInformation jobInfo = new JenkinsJobInformation(jobId, PluginImpl.get().calcHMAC(username, accessKey, jobId));
+        //retrieve data from session id to see if build number and/or job name has been stored
+        String jsonResponse = sauceREST.getJobInfo(jobId);
+        if (!jsonResponse.equals("")) {
+            JSONObject job = new JSONObject(jsonResponse);
+            boolean hasJobName = job.has("name") && !job.isNull("name");
+            jobInfo.setHasJobName(hasJobName);
+            if (hasJobName) {
+                jobInfo.setName(job.getString("name"));
+            }
+            jobInfo.setHasBuildNumber(job.has("build") && !job.isNull("build"));
+        }
+        if (!jobInfo.isHasJobName() && jobName != null) {
+            jobInfo.setName(jobName);
+        }
+        return jobInfo;
+    }
+}
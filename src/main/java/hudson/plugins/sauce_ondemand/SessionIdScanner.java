@@ -0,0 +1,226 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Scans raw console output for Sauce session ids as it is written, without decoding or retaining the lines.
+ * <p/>
+ * Lines are matched against the <code>SauceOnDemandSessionID=</code> marker directly on the bytes, and only the
+ * session id/job name pairs are kept, so the memory used per build is proportional to the number of Sauce
+ * sessions rather than to the size of the build log.  The matching rules are the same as for
+ * {@link SauceOnDemandBuildAction#SESSION_ID_PATTERN}.
+ */
+public class SessionIdScanner implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Marker which precedes the session id.
+     */
+    private static final byte[] SESSION_ID_MARKER = "SauceOnDemandSessionID=".getBytes(ASCII);
+
+    /**
+     * Marker which precedes the (optional) job name.
+     */
+    private static final byte[] JOB_NAME_MARKER = "job-name=".getBytes(ASCII);
+
+    /**
+     * Session ids found so far, mapped to the job name which was output with them (can be null).  Only the first
+     * occurrence of a session id is kept.
+     */
+    private final Map<String, String> sessions = new LinkedHashMap<String, String>();
+
+    /**
+     * Notified when a new session id is found, can be null.
+     */
+    private transient SessionListener listener;
+
+    /**
+     * The charset of the build log, used to decode job names.
+     */
+    private transient Charset charset;
+
+    /**
+     * Indicates whether the markers can be matched directly on the encoded bytes.  This holds for every charset
+     * which encodes ASCII characters as single bytes (eg. UTF-8, ISO-8859-1), otherwise lines are decoded and
+     * matched using the regex.
+     */
+    private final boolean asciiCompatible;
+
+    /**
+     * @param charset the charset of the output being scanned, can be null (in which case UTF-8 is assumed)
+     */
+    public SessionIdScanner(Charset charset) {
+        this.charset = charset == null ? Charset.forName("UTF-8") : charset;
+        this.asciiCompatible = Arrays.equals(SESSION_ID_MARKER, "SauceOnDemandSessionID=".getBytes(this.charset));
+    }
+
+    /**
+     * Scans a line of output.
+     *
+     * @param b   buffer holding the line
+     * @param off offset of the line within the buffer
+     * @param len length of the line
+     */
+    public void scan(byte[] b, int off, int len) {
+        if (!asciiCompatible) {
+            scan(getCharset().decode(ByteBuffer.wrap(b, off, len)).toString());
+            return;
+        }
+        int end = off + len;
+        int i = indexOf(b, SESSION_ID_MARKER, off, end);
+        while (i != -1) {
+            int idStart = i + SESSION_ID_MARKER.length;
+            int idEnd = idStart;
+            while (idEnd < end && isHexDigit(b[idEnd])) {
+                idEnd++;
+            }
+            int next = idEnd;
+            if (idEnd > idStart) {
+                String jobName = null;
+                //the job name is separated from the id by any single character
+                int separatorEnd = skipCharacter(b, idEnd, end);
+                if (separatorEnd != -1 && startsWith(b, JOB_NAME_MARKER, separatorEnd, end)) {
+                    int nameStart = separatorEnd + JOB_NAME_MARKER.length;
+                    int nameEnd = nameStart;
+                    while (nameEnd < end && !isLineTerminator(b[nameEnd])) {
+                        nameEnd++;
+                    }
+                    jobName = new String(b, nameStart, nameEnd - nameStart, getCharset());
+                    next = nameEnd;
+                }
+                found(new String(b, idStart, idEnd - idStart, ASCII), jobName);
+            }
+            i = indexOf(b, SESSION_ID_MARKER, next, end);
+        }
+    }
+
+    /**
+     * Scans decoded output.
+     *
+     * @param text the output to be scanned
+     */
+    public void scan(String text) {
+        if (text == null) {
+            return;
+        }
+        Matcher m = SauceOnDemandBuildAction.SESSION_ID_PATTERN.matcher(text);
+        while (m.find()) {
+            found(m.group(1), m.group(2));
+        }
+    }
+
+    /**
+     * Records a session id, unless it has already been found, and notifies the {@link #listener}.
+     *
+     * @param sessionId the Sauce session id
+     * @param jobName   the job name which was output with the session id, can be null
+     */
+    protected void found(String sessionId, String jobName) {
+        synchronized (this) {
+            if (sessions.containsKey(sessionId)) {
+                return;
+            }
+            sessions.put(sessionId, jobName);
+        }
+        SessionListener sessionListener = listener;
+        if (sessionListener != null) {
+            sessionListener.sessionFound(sessionId, jobName);
+        }
+    }
+
+    /**
+     * @param listener notified when a new session id is found, can be null
+     */
+    public void setListener(SessionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return the session ids found so far, in the order in which they were output, mapped to their job name (can
+     * be null)
+     */
+    public synchronized Map<String, String> getSessions() {
+        return new LinkedHashMap<String, String>(sessions);
+    }
+
+    private Charset getCharset() {
+        if (charset == null) {
+            //can happen after deserialization
+            charset = Charset.forName("UTF-8");
+        }
+        return charset;
+    }
+
+    /**
+     * @return the index of the first occurrence of the marker within b[from, end), or -1 if not found
+     */
+    static int indexOf(byte[] b, byte[] marker, int from, int end) {
+        byte first = marker[0];
+        int last = end - marker.length;
+        for (int i = from; i <= last; i++) {
+            if (b[i] == first && startsWith(b, marker, i, end)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] b, byte[] marker, int from, int end) {
+        if (from + marker.length > end) {
+            return false;
+        }
+        for (int j = 0; j < marker.length; j++) {
+            if (b[from + j] != marker[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index following the (possibly multi-byte) character at b[i], or -1 if there is no such character
+     * on the line
+     */
+    private static int skipCharacter(byte[] b, int i, int end) {
+        if (i >= end || isLineTerminator(b[i])) {
+            return -1;
+        }
+        int next = i + 1;
+        if (b[i] < 0) {
+            //skip the continuation bytes of a multi-byte character
+            while (next < end && next - i < 4 && (b[next] & 0xC0) == 0x80) {
+                next++;
+            }
+        }
+        return next;
+    }
+
+    private static boolean isHexDigit(byte c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isLineTerminator(byte c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Callback which is invoked for each new session id, on the thread which is writing the output.
+     */
+    public interface SessionListener {
+
+        /**
+         * @param sessionId the Sauce session id
+         * @param jobName   the job name which was output with the session id, can be null
+         */
+        void sessionFound(String sessionId, String jobName);
+    }
+}
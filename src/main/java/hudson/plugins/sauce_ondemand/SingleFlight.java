@@ -0,0 +1,55 @@
+package hudson.plugins.sauce_ondemand;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces concurrent calls for the same key, so that only one of them is executed and the other callers wait for
+ * and share its result.  Calls are only coalesced while they are in progress, results are not retained once the
+ * call has completed.
+ *
+ * @param <K> the type of the keys identifying the calls
+ * @param <V> the type of the results
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * The calls in progress, keyed on call.
+     */
+    private final ConcurrentMap<K, FutureTask<V>> calls = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    /**
+     * Executes the callable on the calling thread, unless a call for the same key is already in progress, in which
+     * case its result is returned once it has completed.
+     *
+     * @param key      identifies the call
+     * @param callable performs the call
+     * @return the result of the call
+     * @throws ExecutionException   thrown if the call threw an exception
+     * @throws InterruptedException thrown if the thread was interrupted while waiting for another thread's call to
+     *                              complete
+     */
+    public V execute(K key, Callable<V> callable) throws ExecutionException, InterruptedException {
+        FutureTask<V> task = new FutureTask<V>(callable);
+        FutureTask<V> existing = calls.putIfAbsent(key, task);
+        if (existing != null) {
+            return existing.get();
+        }
+        try {
+            task.run();
+        } finally {
+            calls.remove(key, task);
+        }
+        return task.get();
+    }
+
+    /**
+     * @return the number of calls in progress
+     */
+    public int getInFlightCount() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,349 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.FileSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+/**
+ * Finds the Sauce session ids output by each test by stream parsing the JUnit XML reports in the workspace, on the
+ * node which holds the workspace.
+ * <p/>
+ * Only the session ids are sent back to the controller, so the <code>system-out</code> and <code>system-err</code>
+ * of the tests (which can be very large) never have to be loaded on the controller to be scanned.  The output is read
+ * a line at a time, and is attributed to tests in the same way as {@link hudson.tasks.junit.CaseResult#getStdout()}:
+ * tests without output of their own are given the output of their suite.
+ */
+public class TestReportSessionScanner implements FilePath.FileCallable<TestReportSessionScanner.Sessions> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = Logger.getLogger(TestReportSessionScanner.class.getName());
+
+    /**
+     * Reports which were last modified this long before the build started are left over from earlier builds, the
+     * same allowance as is made by the JUnit result archiver.
+     */
+    private static final long STALE_REPORT_ALLOWANCE = 3000;
+
+    private final String pattern;
+
+    private final long buildTime;
+
+    /**
+     * @param pattern   the Ant pattern of the JUnit XML reports, relative to the workspace
+     * @param buildTime the time the build started, reports which are older than the build are ignored
+     */
+    public TestReportSessionScanner(String pattern, long buildTime) {
+        this.pattern = pattern;
+        this.buildTime = buildTime;
+    }
+
+    public Sessions invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        Sessions sessions = new Sessions();
+        FileSet fileSet = Util.createFileSet(workspace, pattern);
+        DirectoryScanner scanner = fileSet.getDirectoryScanner();
+        for (String name : scanner.getIncludedFiles()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            File report = new File(scanner.getBasedir(), name);
+            if (report.lastModified() < buildTime - STALE_REPORT_ALLOWANCE) {
+                continue;
+            }
+            try {
+                scan(report, sessions);
+                sessions.reports++;
+            } catch (XMLStreamException e) {
+                logger.log(Level.WARNING, "Unable to parse test report " + report, e);
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Scans a JUnit XML report, adding the session ids output by its tests.
+     *
+     * @param report   the report
+     * @param sessions holds the session ids found
+     * @throws IOException        thrown if the report can't be read
+     * @throws XMLStreamException thrown if the report isn't well formed
+     */
+    void scan(File report, Sessions sessions) throws IOException, XMLStreamException {
+        InputStream in = new BufferedInputStream(new FileInputStream(report));
+        try {
+            XMLStreamReader reader = createInputFactory().createXMLStreamReader(in);
+            try {
+                scan(report, reader, sessions);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void scan(File report, XMLStreamReader reader, Sessions sessions) throws IOException, XMLStreamException {
+        List<Suite> suites = new ArrayList<Suite>();
+        Suite suite = null;
+        Case testCase = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                String element = reader.getLocalName();
+                if ("testsuite".equals(element)) {
+                    suite = new Suite(reader.getAttributeValue(null, "name"));
+                    suites.add(suite);
+                } else if ("testcase".equals(element) && suite != null) {
+                    String className = reader.getAttributeValue(null, "classname");
+                    if (className == null) {
+                        className = suite.name;
+                    }
+                    testCase = new Case(className + '.' + reader.getAttributeValue(null, "name"));
+                } else if ("system-out".equals(element) || "system-err".equals(element)) {
+                    boolean stdout = "system-out".equals(element);
+                    if (testCase != null) {
+                        scanText(reader, testCase.sessions);
+                        if (stdout) {
+                            testCase.hasStdout = true;
+                        } else {
+                            testCase.hasStderr = true;
+                        }
+                    } else if (suite != null) {
+                        scanText(reader, stdout ? suite.stdout : suite.stderr);
+                        if (stdout) {
+                            suite.hasStdout = true;
+                        } else {
+                            suite.hasStderr = true;
+                        }
+                    }
+                }
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                String element = reader.getLocalName();
+                if ("testcase".equals(element) && testCase != null) {
+                    suite.cases.add(testCase);
+                    testCase = null;
+                } else if ("testsuite".equals(element) && suite != null) {
+                    suites.remove(suites.size() - 1);
+                    if (!suite.hasStdout && !suite.hasStderr) {
+                        scanMavenOutput(report, suite);
+                    }
+                    suite.addTo(sessions);
+                    suite = suites.isEmpty() ? null : suites.get(suites.size() - 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the text content of the current element a line at a time, so that the whole content is never held in
+     * memory.
+     */
+    private static void scanText(XMLStreamReader reader, Map<String, String> found) throws XMLStreamException {
+        StringBuilder line = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamReader.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamReader.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamReader.CHARACTERS || event == XMLStreamReader.CDATA
+                    || event == XMLStreamReader.SPACE) {
+                char[] text = reader.getTextCharacters();
+                int start = reader.getTextStart();
+                int end = start + reader.getTextLength();
+                for (int i = start; i < end; i++) {
+                    char c = text[i];
+                    if (c == '\n' || c == '\r') {
+                        scanLine(line, found);
+                        line.setLength(0);
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        scanLine(line, found);
+    }
+
+    /**
+     * Surefire writes the output of a suite to a separate file when it is redirected, which the JUnit result archiver
+     * reads when the report has no output of its own.
+     */
+    private static void scanMavenOutput(File report, Suite suite) throws IOException {
+        File output = new File(report.getParentFile(), report.getName().replace("TEST-", "").replace(".xml", "-output.txt"));
+        if (!output.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(output), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                scanLine(line, suite.stdout);
+            }
+        } finally {
+            reader.close();
+        }
+        suite.hasStdout = true;
+    }
+
+    private static void scanLine(CharSequence line, Map<String, String> found) {
+        if (line.length() == 0) {
+            return;
+        }
+        Matcher m = SauceOnDemandBuildAction.SESSION_ID_PATTERN.matcher(line);
+        while (m.find()) {
+            if (!found.containsKey(m.group(1))) {
+                found.put(m.group(1), m.group(2));
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * A test suite whose cases are attributed its output once the end of the suite has been reached, as the output
+     * of the suite usually follows its cases.
+     */
+    private static final class Suite {
+        private final String name;
+        private final List<Case> cases = new ArrayList<Case>();
+        private final Map<String, String> stdout = new LinkedHashMap<String, String>();
+        private final Map<String, String> stderr = new LinkedHashMap<String, String>();
+        private boolean hasStdout;
+        private boolean hasStderr;
+
+        private Suite(String name) {
+            this.name = name;
+        }
+
+        private void addTo(Sessions sessions) {
+            sessions.addAll(null, stdout);
+            sessions.addAll(null, stderr);
+            for (Case testCase : cases) {
+                if (!testCase.hasStdout) {
+                    testCase.addAll(stdout);
+                }
+                if (!testCase.hasStderr) {
+                    testCase.addAll(stderr);
+                }
+                sessions.addAll(testCase.fullName, testCase.sessions);
+            }
+        }
+    }
+
+    private static final class Case {
+        private final String fullName;
+        private final Map<String, String> sessions = new LinkedHashMap<String, String>();
+        private boolean hasStdout;
+        private boolean hasStderr;
+
+        private Case(String fullName) {
+            this.fullName = fullName;
+        }
+
+        private void addAll(Map<String, String> found) {
+            for (Map.Entry<String, String> session : found.entrySet()) {
+                if (!sessions.containsKey(session.getKey())) {
+                    sessions.put(session.getKey(), session.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * The session ids found in the test reports, as returned to the controller.
+     */
+    public static final class Sessions implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Every session id found, mapped to the job name which was output with it (can be null).
+         */
+        private final Map<String, String> all = new LinkedHashMap<String, String>();
+
+        /**
+         * The session ids output by each test, keyed on the full name of the test.
+         */
+        private final Map<String, List<String>> byTest = new LinkedHashMap<String, List<String>>();
+
+        private int reports;
+
+        /**
+         * @param fullName the full name of the test which output the session ids, null for the output of a suite
+         * @param found    the session ids mapped to their job name
+         */
+        void addAll(String fullName, Map<String, String> found) {
+            if (found.isEmpty()) {
+                return;
+            }
+            List<String> ids = null;
+            if (fullName != null) {
+                ids = byTest.get(fullName);
+                if (ids == null) {
+                    ids = new ArrayList<String>();
+                    byTest.put(fullName, ids);
+                }
+            }
+            for (Map.Entry<String, String> session : found.entrySet()) {
+                if (!all.containsKey(session.getKey()) || all.get(session.getKey()) == null) {
+                    all.put(session.getKey(), session.getValue());
+                }
+                if (ids != null && !ids.contains(session.getKey())) {
+                    ids.add(session.getKey());
+                }
+            }
+        }
+
+        /**
+         * @return every session id found in the reports, mapped to the job name which was output with it (can be null)
+         */
+        public Map<String, String> getSessions() {
+            return all;
+        }
+
+        /**
+         * @param fullName the full name of a test
+         * @return the session ids output by the test, empty if none were found
+         */
+        public List<String> getSessionIds(String fullName) {
+            List<String> ids = byTest.get(fullName);
+            return ids == null ? Collections.<String>emptyList() : ids;
+        }
+
+        /**
+         * @return the number of reports which were scanned
+         */
+        public int getReportCount() {
+            return reports;
+        }
+    }
+}
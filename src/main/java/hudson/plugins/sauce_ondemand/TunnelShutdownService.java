@@ -0,0 +1,216 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+import hudson.console.LineTransformationOutputStream;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes Sauce Connect tunnels in the background, so that builds don't wait for Sauce Connect to exit.
+ * <p/>
+ * Each tunnel is first closed gracefully through the tunnel manager.  If Sauce Connect hasn't exited once the
+ * timeout has passed, its process is destroyed.  The progress of each shutdown is written to the log of the plugin
+ * (as the build which released the tunnel may have finished), and the outcomes are counted.  There is one service per
+ * JVM, used by the {@link SauceConnectPool} of the JVM.
+ */
+public class TunnelShutdownService {
+
+    private static final Logger logger = Logger.getLogger(TunnelShutdownService.class.getName());
+
+    /**
+     * How long Sauce Connect is given to exit after being asked to close, in seconds.
+     */
+    private static final long TIMEOUT = Long.getLong(TunnelShutdownService.class.getName() + ".timeout", 120);
+
+    /**
+     * How often a process which has been asked to close is checked for having exited.
+     */
+    private static final long POLL_INTERVAL = 250;
+
+    private static final TunnelShutdownService INSTANCE = new TunnelShutdownService(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Sauce Connect shutdown " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final long timeout;
+
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicLong graceful = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * @param timeout how long Sauce Connect is given to exit before its process is destroyed, in milliseconds
+     */
+    TunnelShutdownService(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return the service of the current JVM
+     */
+    public static TunnelShutdownService get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Closes a tunnel in the background.
+     *
+     * @param description describes the tunnel in the log
+     * @param process     the Sauce Connect process, can be null if unknown
+     * @param control     closes the tunnel gracefully
+     * @return completes once the tunnel has been closed (or its process destroyed)
+     */
+    public Future<?> close(final String description, final Process process, final SauceConnectPool.Control control) {
+        inProgress.incrementAndGet();
+        return executor.submit(new Runnable() {
+            public void run() {
+                long start = System.currentTimeMillis();
+                try {
+                    shutdown(description, process, control);
+                } finally {
+                    long elapsed = System.currentTimeMillis() - start;
+                    totalTime.addAndGet(elapsed);
+                    updateMax(elapsed);
+                    inProgress.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private void shutdown(String description, Process process, final SauceConnectPool.Control control) {
+        final PrintStream log = new PrintStream(new LogOutputStream());
+        long deadline = System.currentTimeMillis() + timeout;
+        Future<?> close = executor.submit(new Callable<Void>() {
+            public Void call() throws AbstractSauceTunnelManager.SauceConnectException {
+                control.close(log);
+                return null;
+            }
+        });
+        try {
+            close.get(timeout, TimeUnit.MILLISECONDS);
+            if (process == null || waitFor(process, deadline)) {
+                graceful.incrementAndGet();
+                logger.log(Level.INFO, "Closed Sauce Connect tunnel " + description);
+                return;
+            }
+        } catch (TimeoutException e) {
+            close.cancel(true);
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Unable to close Sauce Connect tunnel " + description, e.getCause());
+            if (process == null || !SauceConnectPool.isAlive(process)) {
+                failed.incrementAndGet();
+                return;
+            }
+        } catch (InterruptedException e) {
+            close.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        if (process == null) {
+            failed.incrementAndGet();
+            logger.log(Level.WARNING, "Sauce Connect tunnel " + description + " didn't close within " + timeout + "ms");
+            return;
+        }
+        logger.log(Level.WARNING, "Sauce Connect tunnel " + description + " didn't close within " + timeout + "ms, destroying the process");
+        process.destroy();
+        destroyed.incrementAndGet();
+    }
+
+    /**
+     * @return whether the process exited before the deadline
+     */
+    private static boolean waitFor(Process process, long deadline) throws InterruptedException {
+        while (SauceConnectPool.isAlive(process)) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        return true;
+    }
+
+    private void updateMax(long elapsed) {
+        long max = maxTime.get();
+        while (elapsed > max && !maxTime.compareAndSet(max, elapsed)) {
+            max = maxTime.get();
+        }
+    }
+
+    /**
+     * @return the number of tunnels which are being closed
+     */
+    public int getInProgress() {
+        return inProgress.get();
+    }
+
+    /**
+     * @return the number of tunnels which closed when asked to
+     */
+    public long getGraceful() {
+        return graceful.get();
+    }
+
+    /**
+     * @return the number of tunnels whose process was destroyed as they didn't close in time
+     */
+    public long getDestroyed() {
+        return destroyed.get();
+    }
+
+    /**
+     * @return the number of tunnels which couldn't be closed
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the average time taken to close a tunnel, in milliseconds
+     */
+    public long getAverageTime() {
+        long count = graceful.get() + destroyed.get() + failed.get();
+        return count == 0 ? 0 : totalTime.get() / count;
+    }
+
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d closing, %d closed, %d destroyed, %d failed, %dms average, %dms max",
+                getInProgress(), getGraceful(), getDestroyed(), getFailed(), getAverageTime(), getMaxTime());
+    }
+
+    /**
+     * Writes the output of tunnels being closed to the log, as there is no build to write it to.
+     */
+    private static final class LogOutputStream extends LineTransformationOutputStream {
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            logger.info(trimEOL(new String(b, 0, len, "UTF-8")));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Fills in the Sauce results panels on the build and project pages once the page has been displayed.  The jobs are
+ * displayed a page at a time, and are filtered and sorted by the server, so builds with thousands of jobs display as
+ * quickly as builds with a few.
+ */
+
+var SAUCE_PAGE_SIZE = 50;
+
+/**
+ * Retrieves the first page of Sauce jobs and displays them in a table within the panel.
+ *
+ * @param proxy the bound Sauce action, which provides the getJobsPage method
+ * @param panelId the id of the panel element, which contains an element with the id panelId + '-content'
+ * @param reportUrl the URL of the job report, relative to the page
+ * @param emptyMessage message displayed if there are no jobs, if null the panel is hidden instead
+ */
+function loadSauceJobs(proxy, panelId, reportUrl, emptyMessage) {
+    var state = {
+        proxy: proxy,
+        panelId: panelId,
+        reportUrl: reportUrl,
+        emptyMessage: emptyMessage,
+        start: 0,
+        sort: null,
+        descending: false,
+        filters: {status: '', os: '', browser: '', name: ''},
+        controls: null
+    };
+    sauceJobsPage(state);
+}
+
+/**
+ * Retrieves and displays the page of jobs described by the state.
+ */
+function sauceJobsPage(state) {
+    var filters = state.filters;
+    state.proxy.getJobsPage(state.start, SAUCE_PAGE_SIZE, state.sort, state.descending,
+            filters.status, filters.os, filters.browser, filters.name, function(t) {
+        var panel = document.getElementById(state.panelId);
+        var content = document.getElementById(state.panelId + '-content');
+        var data = t.responseObject();
+        if (!data || data.size == 0) {
+            if (state.emptyMessage == null) {
+                panel.style.display = 'none';
+            } else {
+                content.innerHTML = '';
+                content.appendChild(document.createTextNode(state.emptyMessage));
+            }
+            return;
+        }
+        if (state.controls == null) {
+            state.controls = sauceJobFilters(state, data.values);
+        }
+        content.innerHTML = '';
+        content.appendChild(state.controls);
+        content.appendChild(sauceJobTable(state, data.jobs));
+        content.appendChild(sauceJobPager(state, data));
+    });
+}
+
+/**
+ * @return the element containing the filter fields, which is kept between pages so that input isn't lost
+ */
+function sauceJobFilters(state, values) {
+    var controls = document.createElement('div');
+    var nameField = document.createElement('input');
+    nameField.type = 'text';
+    nameField.placeholder = 'Job name';
+    var timer = null;
+    nameField.onkeyup = function() {
+        if (timer != null) {
+            clearTimeout(timer);
+        }
+        timer = setTimeout(function() {
+            if (state.filters.name != nameField.value) {
+                state.filters.name = nameField.value;
+                state.start = 0;
+                sauceJobsPage(state);
+            }
+        }, 300);
+    };
+    controls.appendChild(nameField);
+    var fields = [['status', 'All statuses'], ['os', 'All operating systems'], ['browser', 'All browsers']];
+    for (var i = 0; i < fields.length; i++) {
+        controls.appendChild(sauceJobSelect(state, fields[i][0], fields[i][1], values[fields[i][0]] || []));
+    }
+    return controls;
+}
+
+function sauceJobSelect(state, field, allLabel, options) {
+    var select = document.createElement('select');
+    select.options[0] = new Option(allLabel, '');
+    for (var i = 0; i < options.length; i++) {
+        select.options[select.options.length] = new Option(options[i], options[i]);
+    }
+    select.onchange = function() {
+        state.filters[field] = select.value;
+        state.start = 0;
+        sauceJobsPage(state);
+    };
+    return select;
+}
+
+function sauceJobTable(state, jobs) {
+    var table = document.createElement('table');
+    var header = table.insertRow(-1);
+    var headings = [['Job Name', 'name'], ['OS/Browser', 'browser'], ['Pass/Fail', 'status'], ['Job Links', null]];
+    for (var i = 0; i < headings.length; i++) {
+        var th = document.createElement('th');
+        th.align = 'left';
+        if (headings[i][1] == null) {
+            sauceJobText(th, headings[i][0]);
+        } else {
+            var label = headings[i][0];
+            if (state.sort == headings[i][1]) {
+                label += state.descending ? ' \u25BC' : ' \u25B2';
+            }
+            var link = sauceJobLink(th, '#', label);
+            link.onclick = sauceJobSort(state, headings[i][1]);
+        }
+        header.appendChild(th);
+    }
+    for (var j = 0; j < jobs.length; j++) {
+        var job = jobs[j];
+        var row = table.insertRow(-1);
+        sauceJobLink(row.insertCell(-1), state.reportUrl + '?jobId=' + encodeURIComponent(job.jobId), job.name);
+        sauceJobText(row.insertCell(-1), [job.os, job.browser, job.version].join(' '));
+        sauceJobText(row.insertCell(-1), job.status);
+        var links = row.insertCell(-1);
+        sauceJobLink(links, job.videoUrl, 'Video');
+        sauceJobText(links, ' - ');
+        sauceJobLink(links, job.logUrl, 'Logs');
+    }
+    return table;
+}
+
+function sauceJobSort(state, field) {
+    return function() {
+        if (state.sort == field) {
+            state.descending = !state.descending;
+        } else {
+            state.sort = field;
+            state.descending = false;
+        }
+        state.start = 0;
+        sauceJobsPage(state);
+        return false;
+    };
+}
+
+function sauceJobPager(state, data) {
+    var pager = document.createElement('div');
+    if (data.total == 0) {
+        sauceJobText(pager, 'No matching jobs');
+        return pager;
+    }
+    if (data.start > 0) {
+        var previous = sauceJobLink(pager, '#', 'Previous');
+        previous.onclick = function() {
+            state.start = Math.max(0, data.start - data.limit);
+            sauceJobsPage(state);
+            return false;
+        };
+        sauceJobText(pager, ' ');
+    }
+    sauceJobText(pager, (data.start + 1) + '-' + (data.start + data.jobs.length) + ' of ' + data.total);
+    if (data.start + data.jobs.length < data.total) {
+        sauceJobText(pager, ' ');
+        var next = sauceJobLink(pager, '#', 'Next');
+        next.onclick = function() {
+            state.start = data.start + data.limit;
+            sauceJobsPage(state);
+            return false;
+        };
+    }
+    return pager;
+}
+
+function sauceJobText(parent, text) {
+    parent.appendChild(document.createTextNode(text == null ? '' : text));
+}
+
+function sauceJobLink(parent, href, text) {
+    var link = document.createElement('a');
+    link.href = href == null ? '#' : href;
+    sauceJobText(link, text);
+    parent.appendChild(link);
+    return link;
+}
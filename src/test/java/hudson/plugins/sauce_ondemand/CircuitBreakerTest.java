@@ -0,0 +1,108 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the state transitions of {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest {
+
+    private long now;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 1000, 30000) {
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    };
+
+    @Test
+    public void opensWhenFailureRateIsReached() throws Exception {
+        record(true, 10);
+        record(false, 10);
+        record(true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        record(false, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertNull(breaker.acquire());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void slowCallsAreFailures() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            record(true, 5000);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void successfulProbeCloses() throws Exception {
+        open();
+        now += 30000;
+        assertFalse(breaker.isOpen());
+        CircuitBreaker.Permit probe = breaker.acquire();
+        assertTrue(probe.isProbe());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        //only a single probe is allowed
+        assertNull(breaker.acquire());
+        breaker.record(probe, true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.acquire().isProbe());
+    }
+
+    @Test
+    public void failedProbeReopens() throws Exception {
+        open();
+        now += 30000;
+        breaker.record(breaker.acquire(), false, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(30000, breaker.getRetryAfterMillis());
+        assertNull(breaker.acquire());
+    }
+
+    @Test
+    public void callsAllowedBeforeOpeningAreNotTakenForTheProbe() throws Exception {
+        CircuitBreaker.Permit slow = breaker.acquire();
+        open();
+        now += 30000;
+        CircuitBreaker.Permit probe = breaker.acquire();
+        assertTrue(probe.isProbe());
+
+        //the call which was allowed before the breaker opened finishes while the probe is in progress
+        breaker.record(slow, true, 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertNull(breaker.acquire());
+        breaker.record(slow, false, 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(probe, false, 10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void callsAllowedBeforeClosingAreIgnored() throws Exception {
+        CircuitBreaker.Permit slow = breaker.acquire();
+        open();
+        now += 30000;
+        breaker.record(breaker.acquire(), true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.record(slow, false, 10);
+        assertEquals(0, breaker.getCalls());
+        assertEquals(0, breaker.getFailures());
+    }
+
+    private void record(boolean success, long elapsed) {
+        breaker.record(breaker.acquire(), success, elapsed);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            record(false, 10);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
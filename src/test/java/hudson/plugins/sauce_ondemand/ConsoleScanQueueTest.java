@@ -0,0 +1,141 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link ConsoleScanQueue} passes the lines to the scanner in order, whether they were buffered or
+ * overflowed, and counts the lines it drops.
+ */
+public class ConsoleScanQueueTest {
+
+    private final SessionIdScanner scanner = new SessionIdScanner(Charset.forName("UTF-8"));
+
+    @Test
+    public void bufferedLinesAreScannedWhenDrained() throws Exception {
+        ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 1024);
+        offer(queue, "SauceOnDemandSessionID=abc123 job-name=LoginTest\n");
+        offer(queue, "other output\n");
+        assertTrue(scanner.getSessions().isEmpty());
+
+        queue.drain();
+        Map<String, String> sessions = scanner.getSessions();
+        assertEquals(1, sessions.size());
+        assertEquals("LoginTest", sessions.get("abc123"));
+        assertEquals(0, queue.getOverflowCount());
+    }
+
+    @Test
+    public void linesWhichDoNotFitAreScannedAfterBufferedLines() throws Exception {
+        ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 64);
+        //fills the buffer
+        offer(queue, "SauceOnDemandSessionID=aaaa job-name=first test name\n");
+        offer(queue, "SauceOnDemandSessionID=bbbb\n");
+        assertEquals(1, queue.getOverflowCount());
+        //the writing thread doesn't scan the line which overflowed
+        assertTrue(scanner.getSessions().isEmpty());
+
+        queue.drain();
+        assertEquals(Arrays.asList("aaaa", "bbbb"), new ArrayList<String>(scanner.getSessions().keySet()));
+
+        //the buffer is used again once the overflow list has been scanned
+        offer(queue, "SauceOnDemandSessionID=cccc\n");
+        queue.drain();
+        assertEquals(1, queue.getOverflowCount());
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals(Arrays.asList("aaaa", "bbbb", "cccc"), new ArrayList<String>(scanner.getSessions().keySet()));
+    }
+
+    @Test
+    public void linesWhichDoNotFitInTheOverflowListAreDropped() throws Exception {
+        ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 64);
+        //fills the buffer
+        offer(queue, "SauceOnDemandSessionID=aaaa job-name=first test name\n");
+        //each line is 28 bytes, so only two fit in the overflow list
+        offer(queue, "SauceOnDemandSessionID=bbbb\n");
+        offer(queue, "SauceOnDemandSessionID=cccc\n");
+        offer(queue, "SauceOnDemandSessionID=dddd\n");
+        assertEquals(2, queue.getOverflowCount());
+        assertEquals(1, queue.getDroppedCount());
+
+        queue.drain();
+        assertEquals(Arrays.asList("aaaa", "bbbb", "cccc"), new ArrayList<String>(scanner.getSessions().keySet()));
+    }
+
+    @Test
+    public void linesAreScannedInOrderWhileBeingWritten() throws Exception {
+        final int lines = 20000;
+        final ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 256);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < lines; i++) {
+                        offer(queue, "SauceOnDemandSessionID=" + Integer.toHexString(0x100000 + i) + "\n");
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    writing.set(false);
+                }
+            }
+        });
+        Thread consumer = new Thread(new Runnable() {
+            public void run() {
+                while (writing.get()) {
+                    queue.drain();
+                }
+            }
+        });
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join();
+        queue.drain();
+
+        Map<String, String> sessions = scanner.getSessions();
+        assertEquals(lines, sessions.size() + queue.getDroppedCount());
+        int previous = -1;
+        for (String sessionId : sessions.keySet()) {
+            int current = Integer.parseInt(sessionId, 16);
+            assertTrue("session " + sessionId + " was scanned out of order", current > previous);
+            previous = current;
+        }
+    }
+
+    @Test
+    public void linesWrapAroundTheBuffer() throws Exception {
+        ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 64);
+        for (int i = 0; i < 100; i++) {
+            offer(queue, "SauceOnDemandSessionID=" + Integer.toHexString(0x1000 + i) + "\n");
+            queue.drain();
+        }
+        assertEquals(100, scanner.getSessions().size());
+        assertEquals(0, queue.getOverflowCount());
+    }
+
+    @Test
+    public void linesOfferedOnceClosedAreScannedWhenDrained() throws Exception {
+        ConsoleScanQueue queue = new ConsoleScanQueue(scanner, 1024);
+        queue.close();
+        offer(queue, "SauceOnDemandSessionID=abc123\n");
+        //the writing thread doesn't scan the line, even though the queue is closed
+        assertTrue(scanner.getSessions().isEmpty());
+
+        queue.drain();
+        assertTrue(scanner.getSessions().containsKey("abc123"));
+        assertEquals(0, queue.getOverflowCount());
+    }
+
+    private static void offer(ConsoleScanQueue queue, String line) throws Exception {
+        byte[] bytes = line.getBytes("UTF-8");
+        queue.offer(bytes, 0, bytes.length);
+    }
+}
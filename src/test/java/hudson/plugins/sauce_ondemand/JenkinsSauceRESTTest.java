@@ -0,0 +1,112 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import hudson.ProxyConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link JenkinsSauceREST} shares an instance for each Sauce user, and that its connections have
+ * timeouts, request compressed responses and use the proxy configured in Jenkins.
+ */
+public class JenkinsSauceRESTTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private HttpServer server;
+
+    private volatile URI requestUri;
+    private volatile String acceptEncoding;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requestUri = exchange.getRequestURI();
+                acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] body = "{\"jobs\":[]}".getBytes("UTF-8");
+                boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+                if (gzip) {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream os = exchange.getResponseBody();
+                if (gzip) {
+                    os = new GZIPOutputStream(os);
+                }
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void instanceIsSharedForEachUser() throws Exception {
+        JenkinsSauceREST first = JenkinsSauceREST.get("pooled", "first key");
+        assertSame(first, JenkinsSauceREST.get("pooled", "first key"));
+        assertNotSame(first, JenkinsSauceREST.get("other pooled", "first key"));
+        int count = JenkinsSauceREST.getInstanceCount();
+
+        //the instance for the previous access key is replaced rather than kept
+        JenkinsSauceREST second = JenkinsSauceREST.get("pooled", "second key");
+        assertNotSame(first, second);
+        assertSame(second, JenkinsSauceREST.get("pooled", "second key"));
+        assertEquals(count, JenkinsSauceREST.getInstanceCount());
+        assertNotSame(first, JenkinsSauceREST.get("pooled", "first key"));
+    }
+
+    @Test
+    public void connectionsHaveTimeouts() throws Exception {
+        HttpURLConnection connection = JenkinsSauceREST.get("timeouts", "key").openConnection(url("/timeouts"));
+        assertEquals(10000, connection.getConnectTimeout());
+        assertEquals(60000, connection.getReadTimeout());
+    }
+
+    @Test
+    public void compressedResponseIsRead() throws Exception {
+        String response = JenkinsSauceREST.get("gzip", "key").retrieveResults(url("/rest/v1/gzip/jobs?gzip"));
+        assertEquals("gzip", acceptEncoding);
+        assertEquals("{\"jobs\":[]}", response);
+    }
+
+    @Test
+    public void proxyIsUsed() throws Exception {
+        jenkinsRule.jenkins.proxy = new ProxyConfiguration("localhost", server.getAddress().getPort());
+        JenkinsSauceREST sauceREST = JenkinsSauceREST.get("proxy", "key");
+        HttpURLConnection connection = sauceREST.openConnection(new URL("http://saucelabs.invalid/rest/v1/proxy/jobs?timeouts"));
+        assertEquals(10000, connection.getConnectTimeout());
+        assertEquals(60000, connection.getReadTimeout());
+
+        String response = sauceREST.retrieveResults(new URL("http://saucelabs.invalid/rest/v1/proxy/jobs?proxy"));
+        assertEquals("{\"jobs\":[]}", response);
+        //the request for the Sauce host was sent to the proxy
+        assertEquals("saucelabs.invalid", requestUri.getHost());
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http://localhost:" + server.getAddress().getPort() + path);
+    }
+}
@@ -0,0 +1,77 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the eviction and interning performed by {@link JobInformationCache}.
+ */
+public class JobInformationCacheTest {
+
+    @Test
+    public void leastRecentlyUsedBuildsAreEvicted() throws Exception {
+        List<JobInformation> first = jobs(10);
+        List<JobInformation> second = jobs(10);
+        List<JobInformation> third = jobs(10);
+        //room for two builds' jobs
+        JobInformationCache cache = new JobInformationCache(2 * size(first) + 1);
+        cache.put("job#1", first);
+        cache.put("job#2", second);
+        assertSame(first, cache.get("job#1"));
+        cache.put("job#3", third);
+
+        assertSame(first, cache.get("job#1"));
+        assertNull(cache.get("job#2"));
+        assertSame(third, cache.get("job#3"));
+        assertEquals(2, cache.getCount());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2 * size(first), cache.getSize());
+
+        cache.invalidate("job#1");
+        assertNull(cache.get("job#1"));
+        assertEquals(size(first), cache.getSize());
+    }
+
+    @Test
+    public void jobsLargerThanCacheAreNotCached() throws Exception {
+        JobInformationCache cache = new JobInformationCache(10);
+        cache.put("job#1", jobs(1));
+        assertNull(cache.get("job#1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void attributesAreInterned() throws Exception {
+        JobInformationCache cache = new JobInformationCache(1024 * 1024);
+        List<JobInformation> jobs = jobs(2);
+        assertNotSame(jobs.get(0).getBrowser(), jobs.get(1).getBrowser());
+        cache.put("job#1", jobs);
+        assertSame(jobs.get(0).getBrowser(), jobs.get(1).getBrowser());
+        assertSame(jobs.get(0).getOs(), jobs.get(1).getOs());
+        assertEquals("firefox", jobs.get(0).getBrowser());
+    }
+
+    private static long size(List<JobInformation> jobs) {
+        JobInformationCache cache = new JobInformationCache(Long.MAX_VALUE);
+        cache.put("size", jobs);
+        return cache.getSize();
+    }
+
+    private static List<JobInformation> jobs(int count) {
+        List<JobInformation> jobs = new ArrayList<JobInformation>();
+        for (int i = 0; i < count; i++) {
+            JobInformation job = new JenkinsJobInformation(String.format("%032x", i), "hmac");
+            //new String instances, as values read from a file would be
+            job.setBrowser(new String("firefox"));
+            job.setOs(new String("Windows 2012"));
+            jobs.add(job);
+        }
+        return Collections.unmodifiableList(jobs);
+    }
+}
@@ -0,0 +1,123 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.model.FreeStyleBuild;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies that {@link JobInformationFile} stores the jobs of a build outside of build.xml.
+ */
+public class JobInformationFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void jobsAreReadBack() throws Exception {
+        JobInformationFile file = new JobInformationFile(folder.getRoot());
+        assertFalse(file.exists());
+
+        file.write(Arrays.asList(job("abc", "LoginTest", "true"), job("def", null, "false")));
+        assertTrue(file.exists());
+        List<JobInformation> jobs = file.read();
+        assertEquals(2, jobs.size());
+        assertEquals("abc", jobs.get(0).getJobId());
+        assertEquals("LoginTest", jobs.get(0).getName());
+        assertEquals("chrome", jobs.get(0).getBrowser());
+        assertEquals("def", jobs.get(1).getJobId());
+        assertNull(jobs.get(1).getName());
+        assertEquals("false", jobs.get(1).getStatus());
+    }
+
+    @Test
+    public void writeReplacesExistingFile() throws Exception {
+        JobInformationFile file = new JobInformationFile(folder.getRoot());
+        file.write(Arrays.asList(job("abc", "LoginTest", "true")));
+        file.write(new ArrayList<JobInformation>());
+        assertTrue(file.read().isEmpty());
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void legacyJobsAreMovedOutOfBuildXml() throws Exception {
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        when(build.getRootDir()).thenReturn(folder.getRoot());
+        when(build.getExternalizableId()).thenReturn("job#1");
+        SauceOnDemandBuildAction action = new SauceOnDemandBuildAction(build, null, "user", "key");
+        Field jobInformation = SauceOnDemandBuildAction.class.getDeclaredField("jobInformation");
+        jobInformation.setAccessible(true);
+        jobInformation.set(action, new ArrayList<JobInformation>(Arrays.asList(job("abc", "LoginTest", "true"))));
+
+        action.migrateJobs();
+        assertNull(jobInformation.get(action));
+        assertEquals("abc", new JobInformationFile(folder.getRoot()).read().get(0).getJobId());
+        verify(build, times(1)).save();
+
+        //a later migration doesn't write the file again
+        jobInformation.set(action, new ArrayList<JobInformation>(Arrays.asList(job("def", "LoginTest", "true"))));
+        action.migrateJobs();
+        assertEquals("abc", new JobInformationFile(folder.getRoot()).read().get(0).getJobId());
+        verify(build, times(2)).save();
+    }
+
+    @Test
+    public void legacyJobsAreReadInPlaceWhenLoaded() throws Exception {
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        when(build.getRootDir()).thenReturn(folder.getRoot());
+        when(build.getExternalizableId()).thenReturn("job#2");
+        SauceOnDemandBuildAction action = legacyAction(build, job("abc", "LoginTest", "true"));
+
+        action.onLoad(build);
+        assertEquals("abc", action.getJobs().get(0).getJobId());
+        assertTrue(action.hasLegacyJobs());
+        assertFalse(new JobInformationFile(folder.getRoot()).exists());
+        verify(build, never()).save();
+    }
+
+    @Test
+    public void legacyJobsAreMovedWhenBuildIsSaved() throws Exception {
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        when(build.getRootDir()).thenReturn(folder.getRoot());
+        when(build.getExternalizableId()).thenReturn("job#3");
+        SauceOnDemandBuildAction action = legacyAction(build, job("abc", "LoginTest", "true"));
+        action.onLoad(build);
+        when(build.getAction(SauceOnDemandBuildAction.class)).thenReturn(action);
+
+        SauceOnDemandSaveableListener listener = new SauceOnDemandSaveableListener();
+        listener.onChange(build, null);
+        assertFalse(action.hasLegacyJobs());
+        assertEquals("abc", new JobInformationFile(folder.getRoot()).read().get(0).getJobId());
+        verify(build, times(1)).save();
+
+        //the save without the jobs doesn't save the build again
+        listener.onChange(build, null);
+        verify(build, times(1)).save();
+        assertEquals("abc", action.getJobs().get(0).getJobId());
+    }
+
+    private static SauceOnDemandBuildAction legacyAction(FreeStyleBuild build, JobInformation... jobs) throws Exception {
+        SauceOnDemandBuildAction action = new SauceOnDemandBuildAction(build, null, "user", "key");
+        Field jobInformation = SauceOnDemandBuildAction.class.getDeclaredField("jobInformation");
+        jobInformation.setAccessible(true);
+        jobInformation.set(action, new ArrayList<JobInformation>(Arrays.asList(jobs)));
+        return action;
+    }
+
+    private static JobInformation job(String id, String name, String status) {
+        JobInformation job = new JenkinsJobInformation(id, "hmac");
+        job.setName(name);
+        job.setStatus(status);
+        job.setBrowser("chrome");
+        return job;
+    }
+}
@@ -0,0 +1,94 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.tasks.junit.CaseResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that {@link JobNameMatcher} applies the same rules as the regex based matching it replaced.
+ */
+public class JobNameMatcherTest {
+
+    @Test
+    public void fullNameEqualsJobName() throws Exception {
+        JobInformation job = job("1", "com.example.LoginTest.testLogin");
+        CaseResult cr = testCase("com.example.LoginTest.testLogin", "testLogin");
+        JobNameMatcher matcher = new JobNameMatcher(Collections.singletonList(job), Collections.singletonList(cr));
+        assertEquals(Collections.singletonList(job), matcher.getJobs(cr));
+    }
+
+    @Test
+    public void jobNameContainsDisplayName() throws Exception {
+        JobInformation job = job("1", "Login scenario: testLogin on Firefox");
+        CaseResult cr = testCase("com.example.LoginTest.testLogin", "testLogin");
+        JobNameMatcher matcher = new JobNameMatcher(Collections.singletonList(job), Collections.singletonList(cr));
+        assertEquals(Collections.singletonList(job), matcher.getJobs(cr));
+    }
+
+    @Test
+    public void fullNameContainsJobNameAsWholeWord() throws Exception {
+        JobInformation wholeWord = job("1", "LoginTest");
+        JobInformation partialWord = job("2", "ginTest");
+        CaseResult cr = testCase("com.example.LoginTest.testLogin", "testLogin");
+        JobNameMatcher matcher = new JobNameMatcher(Arrays.asList(wholeWord, partialWord), Collections.singletonList(cr));
+        assertEquals(Collections.singletonList(wholeWord), matcher.getJobs(cr));
+    }
+
+    @Test
+    public void jobsWithoutNameAreIgnored() throws Exception {
+        JobInformation job = job("1", null);
+        CaseResult cr = testCase("com.example.LoginTest.testLogin", "testLogin");
+        JobNameMatcher matcher = new JobNameMatcher(Collections.singletonList(job), Collections.singletonList(cr));
+        assertTrue(matcher.getJobs(cr).isEmpty());
+    }
+
+    @Test
+    public void sameResultsAsRegex() throws Exception {
+        List<JobInformation> jobs = Arrays.asList(
+                job("1", "LoginTest"),
+                job("2", "testLogin"),
+                job("3", "com.example.LoginTest"),
+                job("4", "Checkout"),
+                job("5", "testCheckout with coupon"),
+                job("6", "example"));
+        List<CaseResult> cases = Arrays.asList(
+                testCase("com.example.LoginTest.testLogin", "testLogin"),
+                testCase("com.example.CheckoutTest.testCheckout", "testCheckout"),
+                testCase("com.other.Suite.testNothing", "testNothing"));
+        JobNameMatcher matcher = new JobNameMatcher(jobs, cases);
+        for (CaseResult cr : cases) {
+            List<JobInformation> expected = new ArrayList<JobInformation>();
+            for (JobInformation job : jobs) {
+                if (job.getName().equals(cr.getFullName())
+                        || job.getName().contains(cr.getDisplayName())
+                        || Pattern.compile("\\b(" + Pattern.quote(job.getName()) + ")\\b").matcher(cr.getFullName()).find()) {
+                    expected.add(job);
+                }
+            }
+            assertEquals(cr.getFullName(), expected, matcher.getJobs(cr));
+        }
+    }
+
+    private static JobInformation job(String id, String name) {
+        JobInformation job = new JenkinsJobInformation(id, "hmac");
+        job.setName(name);
+        return job;
+    }
+
+    private static CaseResult testCase(String fullName, String displayName) {
+        CaseResult cr = mock(CaseResult.class);
+        when(cr.getFullName()).thenReturn(fullName);
+        when(cr.getDisplayName()).thenReturn(displayName);
+        return cr;
+    }
+}
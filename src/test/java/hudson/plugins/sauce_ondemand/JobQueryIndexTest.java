@@ -0,0 +1,101 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the filtering, sorting and paging performed by {@link JobQueryIndex}.
+ */
+public class JobQueryIndexTest {
+
+    private final JobInformation login = job("1", "LoginTest.testValid", "passed", "Windows 2012", "chrome");
+    private final JobInformation logout = job("2", "logoutTest", "failed", "Linux", "firefox");
+    private final JobInformation loginFail = job("3", "LoginTest.testInvalid", "failed", "Windows 2012", "firefox");
+    private final JobInformation unnamed = job("4", null, "passed", "Linux", "chrome");
+
+    private final JobQueryIndex index = new JobQueryIndex(Arrays.asList(login, logout, loginFail, unnamed));
+
+    @Test
+    public void unsortedJobsAreInRunOrder() throws Exception {
+        assertEquals(Arrays.asList(login, logout, loginFail, unnamed), index.query(null, null, false, 0, 10).getJobs());
+        assertEquals(Arrays.asList(unnamed, loginFail, logout, login), index.query(null, null, true, 0, 10).getJobs());
+    }
+
+    @Test
+    public void sortIgnoresCaseAndPutsMissingValuesLast() throws Exception {
+        assertEquals(Arrays.asList(loginFail, login, logout, unnamed), index.query(null, "name", false, 0, 10).getJobs());
+        //equal values stay in run order
+        assertEquals(Arrays.asList(logout, loginFail, login, unnamed), index.query(null, "status", false, 0, 10).getJobs());
+    }
+
+    @Test
+    public void filtersAreCombined() throws Exception {
+        Map<String, String> filters = new HashMap<String, String>();
+        filters.put("status", "FAILED");
+        filters.put("os", "windows 2012");
+        filters.put("browser", "");
+        assertEquals(Arrays.asList(loginFail), index.query(filters, null, false, 0, 10).getJobs());
+
+        filters.put("os", "Mac");
+        JobQueryIndex.Page page = index.query(filters, null, false, 0, 10);
+        assertEquals(0, page.getTotal());
+        assertTrue(page.getJobs().isEmpty());
+    }
+
+    @Test
+    public void nameFilterMatchesPrefix() throws Exception {
+        Map<String, String> filters = new HashMap<String, String>();
+        filters.put("name", "login");
+        assertEquals(Arrays.asList(login, loginFail), index.query(filters, null, false, 0, 10).getJobs());
+        filters.put("name", "LoginTest.testV");
+        assertEquals(Arrays.asList(login), index.query(filters, null, false, 0, 10).getJobs());
+        filters.put("name", "zzz");
+        assertEquals(0, index.query(filters, null, false, 0, 10).getTotal());
+    }
+
+    @Test
+    public void pagesCoverAllMatchingJobs() throws Exception {
+        List<JobInformation> jobs = new ArrayList<JobInformation>();
+        for (int i = 0; i < 250; i++) {
+            jobs.add(job(String.valueOf(i), "test" + i, i % 2 == 0 ? "passed" : "failed", "Linux", "chrome"));
+        }
+        JobQueryIndex largeIndex = new JobQueryIndex(jobs);
+        Map<String, String> filters = new HashMap<String, String>();
+        filters.put("status", "passed");
+        List<JobInformation> found = new ArrayList<JobInformation>();
+        for (int start = 0; start < 125; start += 50) {
+            JobQueryIndex.Page page = largeIndex.query(filters, "name", false, start, 50);
+            assertEquals(125, page.getTotal());
+            assertEquals(start, page.getStart());
+            found.addAll(page.getJobs());
+        }
+        assertEquals(125, found.size());
+        assertEquals(125, new HashSet<JobInformation>(found).size());
+        assertTrue(largeIndex.query(filters, "name", false, 125, 50).getJobs().isEmpty());
+    }
+
+    @Test
+    public void distinctValuesAreSorted() throws Exception {
+        assertEquals(Arrays.asList("chrome", "firefox"), index.getValues("browser"));
+        assertEquals(Arrays.asList("Linux", "Windows 2012"), index.getValues("os"));
+        assertTrue(index.getValues("name").isEmpty());
+    }
+
+    private static JobInformation job(String id, String name, String status, String os, String browser) {
+        JobInformation job = new JenkinsJobInformation(id, "hmac");
+        job.setName(name);
+        job.setStatus(status);
+        job.setOs(os);
+        job.setBrowser(browser);
+        return job;
+    }
+}
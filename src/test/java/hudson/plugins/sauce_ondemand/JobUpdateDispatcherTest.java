@@ -0,0 +1,113 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.saucerest.SauceREST;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verifies the retry behaviour of {@link JobUpdateDispatcher}.
+ */
+public class JobUpdateDispatcherTest {
+
+    @Test
+    public void allJobsUpdated() throws Exception {
+        JenkinsSauceREST sauceREST = mock(JenkinsSauceREST.class);
+        Map<String, Map<String, Object>> updates = new LinkedHashMap<String, Map<String, Object>>();
+        for (int i = 0; i < 20; i++) {
+            updates.put("job" + i, Collections.<String, Object>singletonMap("public", true));
+        }
+        JobUpdateDispatcher.Summary summary = dispatcher(sauceREST).dispatch(updates);
+        assertEquals(20, summary.getSucceeded());
+        assertEquals(0, summary.getFailed());
+        verify(sauceREST, times(20)).updateJobInfoOrThrow(anyString(), anyMap());
+    }
+
+    @Test
+    public void retryableErrorIsRetried() throws Exception {
+        JenkinsSauceREST sauceREST = mock(JenkinsSauceREST.class);
+        doAnswer(failures(new JenkinsSauceREST.ResponseException("rate limited", 429, null, null),
+                new JenkinsSauceREST.ResponseException("unavailable", 503, null, null)))
+                .when(sauceREST).updateJobInfoOrThrow(eq("job"), anyMap());
+        JobUpdateDispatcher.Summary summary = dispatcher(sauceREST).dispatch(update("job"));
+        assertEquals(1, summary.getSucceeded());
+        assertEquals(2, summary.getRetried());
+        verify(sauceREST, times(3)).updateJobInfoOrThrow(eq("job"), anyMap());
+    }
+
+    @Test
+    public void clientErrorIsNotRetried() throws Exception {
+        JenkinsSauceREST sauceREST = mock(JenkinsSauceREST.class);
+        doThrow(new JenkinsSauceREST.ResponseException("not found", 404, null, null))
+                .when(sauceREST).updateJobInfoOrThrow(eq("job"), anyMap());
+        JobUpdateDispatcher.Summary summary = dispatcher(sauceREST).dispatch(update("job"));
+        assertEquals(0, summary.getSucceeded());
+        assertEquals(1, summary.getFailed());
+        verify(sauceREST, times(1)).updateJobInfoOrThrow(eq("job"), anyMap());
+    }
+
+    @Test
+    public void retriesAreLimited() throws Exception {
+        JenkinsSauceREST sauceREST = mock(JenkinsSauceREST.class);
+        doThrow(new JenkinsSauceREST.ResponseException("unavailable", 503, null, null))
+                .when(sauceREST).updateJobInfoOrThrow(eq("job"), anyMap());
+        JobUpdateDispatcher.Summary summary = dispatcher(sauceREST).dispatch(update("job"));
+        assertEquals(1, summary.getFailed());
+        verify(sauceREST, times(4)).updateJobInfoOrThrow(eq("job"), anyMap());
+    }
+
+    @Test
+    public void libraryClientIsUpdatedWithoutRetries() throws Exception {
+        SauceREST sauceREST = mock(SauceREST.class);
+        JobUpdateDispatcher.Summary summary = dispatcher(sauceREST).dispatch(update("job"));
+        assertEquals(1, summary.getSucceeded());
+        verify(sauceREST, times(1)).updateJobInfo(eq("job"), anyMap());
+    }
+
+    @Test
+    public void rateLimiterIsSharedPerUser() throws Exception {
+        JobUpdateDispatcher.TokenBucket first = JobUpdateDispatcher.getRateLimiter("shared", 5);
+        assertSame(first, JobUpdateDispatcher.getRateLimiter("shared", 5));
+        JobUpdateDispatcher.TokenBucket reconfigured = JobUpdateDispatcher.getRateLimiter("shared", 10);
+        assertNotSame(first, reconfigured);
+        assertEquals(10, reconfigured.getRate());
+        assertSame(reconfigured, JobUpdateDispatcher.getRateLimiter("shared", 10));
+    }
+
+    /**
+     * @return an answer which throws each of the exceptions in turn, then succeeds
+     */
+    private static Answer failures(final RuntimeException... exceptions) {
+        return new Answer() {
+            private int calls;
+
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                if (calls < exceptions.length) {
+                    throw exceptions[calls++];
+                }
+                return null;
+            }
+        };
+    }
+
+    private static JobUpdateDispatcher dispatcher(SauceREST sauceREST) {
+        return new JobUpdateDispatcher(sauceREST, new JobUpdateDispatcher.TokenBucket(0), 4, 1);
+    }
+
+    private static Map<String, Map<String, Object>> update(String jobId) {
+        Map<String, Map<String, Object>> updates = new HashMap<String, Map<String, Object>>();
+        updates.put(jobId, Collections.<String, Object>singletonMap("passed", true));
+        return updates;
+    }
+}
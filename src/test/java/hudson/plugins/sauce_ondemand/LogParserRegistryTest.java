@@ -0,0 +1,48 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Verifies that the log parsers of builds are released once the builds have completed.
+ */
+public class LogParserRegistryTest {
+
+    @Test
+    public void parserIsReleasedWhenBuildCompletes() throws Exception {
+        Run<?, ?> run = mock(Run.class);
+        SessionEnricher enricher = mock(SessionEnricher.class);
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser parser =
+                new SauceOnDemandBuildWrapper.SauceOnDemandLogParser(new ByteArrayOutputStream(), Charset.forName("UTF-8"), enricher);
+        LogParserRegistry.register(run, parser);
+        assertSame(parser, LogParserRegistry.get(run));
+
+        //an aborted build never reaches the wrapper's tear down, so the listener has to remove the parser
+        new SauceOnDemandRunListener().onCompleted(run, mock(TaskListener.class));
+        assertNull(LogParserRegistry.get(run));
+        verify(enricher).cancel();
+    }
+
+    @Test
+    public void parsersOfConcurrentBuildsAreSeparate() throws Exception {
+        Run<?, ?> first = mock(Run.class);
+        Run<?, ?> second = mock(Run.class);
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser firstParser =
+                new SauceOnDemandBuildWrapper.SauceOnDemandLogParser(new ByteArrayOutputStream(), Charset.forName("UTF-8"));
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser secondParser =
+                new SauceOnDemandBuildWrapper.SauceOnDemandLogParser(new ByteArrayOutputStream(), Charset.forName("UTF-8"));
+        LogParserRegistry.register(first, firstParser);
+        LogParserRegistry.register(second, secondParser);
+        assertSame(firstParser, LogParserRegistry.remove(first));
+        assertSame(secondParser, LogParserRegistry.remove(second));
+        assertNull(LogParserRegistry.remove(first));
+    }
+}
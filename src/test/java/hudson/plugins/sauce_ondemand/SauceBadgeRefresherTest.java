@@ -0,0 +1,146 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.util.StreamTaskListener;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SauceBadgeRefresher} retrieves the latest Sauce job once for each Sauce account, and keeps
+ * the badge state of each Jenkins job up to date.
+ */
+public class SauceBadgeRefresherTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    /**
+     * The number of times the latest Sauce job was retrieved, keyed on Sauce username.
+     */
+    private final Map<String, Integer> fetches = new HashMap<String, Integer>();
+
+    /**
+     * The build number to return as the latest Sauce job, keyed on Sauce username.
+     */
+    private final Map<String, String> latestBuilds = new HashMap<String, String>();
+
+    private final SauceBadgeRefresher refresher = new SauceBadgeRefresher() {
+        @Override
+        protected String retrieveLatestBuild(String username, String accessKey) {
+            Integer count = fetches.get(username);
+            fetches.put(username, count == null ? 1 : count + 1);
+            return latestBuilds.get(username);
+        }
+    };
+
+    private FreeStyleProject first;
+    private FreeStyleProject second;
+    private FreeStyleProject other;
+    private MatrixProject matrix;
+
+    @Before
+    public void setUp() throws Exception {
+        PluginImpl.get().setDisableStatusColumn(false);
+        first = createProject("username", "access key");
+        second = createProject("username", "access key");
+        other = createProject("other", "other key");
+        matrix = jenkinsRule.createMatrixProject();
+        matrix.setAxes(new AxisList(new TextAxis("browser", "firefox", "chrome")));
+        matrix.getBuildWrappersList().add(createWrapper("username", "access key"));
+    }
+
+    @Test
+    public void latestJobIsRetrievedOncePerAccount() throws Exception {
+        assertEquals(2, matrix.getActiveConfigurations().size());
+        refresh();
+        assertEquals(Integer.valueOf(1), fetches.get("username"));
+        assertEquals(Integer.valueOf(1), fetches.get("other"));
+        assertEquals(2, fetches.size());
+    }
+
+    @Test
+    public void badgeIsDisplayedForJobWhichRanLatestSauceJob() throws Exception {
+        latestBuilds.put("username", buildName(build(first)));
+        latestBuilds.put("other", "");
+        refresh();
+        assertEquals("username", SauceBadgeRefresher.getBadgeUser(first));
+        assertNull(SauceBadgeRefresher.getBadgeUser(second));
+        assertNull(SauceBadgeRefresher.getBadgeUser(other));
+        assertNull(SauceBadgeRefresher.getBadgeUser(matrix));
+        for (MatrixConfiguration configuration : matrix.getActiveConfigurations()) {
+            assertNull(SauceBadgeRefresher.getBadgeUser(configuration));
+        }
+
+        //the badge moves to the job which ran the latest Sauce job
+        latestBuilds.put("username", buildName(build(second)));
+        refresh();
+        assertNull(SauceBadgeRefresher.getBadgeUser(first));
+        assertEquals("username", SauceBadgeRefresher.getBadgeUser(second));
+    }
+
+    @Test
+    public void badgeIsKeptWhileLatestJobCannotBeRetrieved() throws Exception {
+        latestBuilds.put("username", buildName(build(first)));
+        refresh();
+        assertEquals("username", SauceBadgeRefresher.getBadgeUser(first));
+
+        latestBuilds.remove("username");
+        refresh();
+        assertEquals("username", SauceBadgeRefresher.getBadgeUser(first));
+
+        //removed once the job no longer uses Sauce
+        first.getBuildWrappersList().clear();
+        refresh();
+        assertNull(SauceBadgeRefresher.getBadgeUser(first));
+    }
+
+    private void refresh() {
+        refresher.execute(new StreamTaskListener(new ByteArrayOutputStream()));
+    }
+
+    private FreeStyleProject createProject(String username, String accessKey) throws Exception {
+        FreeStyleProject project = jenkinsRule.createFreeStyleProject();
+        project.getBuildWrappersList().add(createWrapper(username, accessKey));
+        return project;
+    }
+
+    private static FreeStyleBuild build(FreeStyleProject project) throws Exception {
+        return project.scheduleBuild2(0).get(1, TimeUnit.MINUTES);
+    }
+
+    private static String buildName(FreeStyleBuild build) {
+        return SauceOnDemandBuildWrapper.sanitiseBuildNumber(SauceEnvironmentUtil.getBuildName(build));
+    }
+
+    private static SauceOnDemandBuildWrapper createWrapper(String username, String accessKey) {
+        return new SauceOnDemandBuildWrapper(
+                false,
+                null,
+                new Credentials(username, accessKey),
+                new SeleniumInformation("webDriver", null, null, null, null),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                false,
+                false,
+                false,
+                true);
+    }
+}
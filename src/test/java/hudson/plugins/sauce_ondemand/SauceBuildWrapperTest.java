@@ -84,6 +84,13 @@ public class SauceBuildWrapperTest {
                 return null;
             }
         }).when(spySauceRest).updateJobInfo(anyString(), any(HashMap.class));
+        doAnswer(new Answer() {
+            public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+                Object[] args = invocationOnMock.getArguments();
+                restUpdates.put((String) args[0], (Map) args[1]);
+                return null;
+            }
+        }).when(spySauceRest).updateJobInfoOrThrow(anyString(), any(HashMap.class));
         doAnswer(new Answer() {
             public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
                 return "{}";
@@ -0,0 +1,144 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.SauceConnectFourManager;
+import com.saucelabs.hudson.HudsonSauceManagerFactory;
+import hudson.Launcher;
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.MatrixRun;
+import hudson.matrix.TextAxis;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.util.StreamTaskListener;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that the configurations of a matrix build share the Sauce Connect tunnel launched by the matrix build, and
+ * that the tunnel is released once.
+ */
+public class SauceConnectMatrixTunnelTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private final AtomicInteger launches = new AtomicInteger();
+
+    /**
+     * The number of launches which fail before Sauce Connect starts.
+     */
+    private volatile int failures;
+
+    @Before
+    public void setUp() throws Exception {
+        HudsonSauceManagerFactory.getInstance().start();
+        SauceConnectFourManager sauceConnectFourManager = new SauceConnectFourManager() {
+            @Override
+            public Process openConnection(String username, String apiKey, int port, File sauceConnectJar, String options, String httpsProtocol, PrintStream printStream, Boolean verboseLogging, String sauceConnectPath) throws SauceConnectException {
+                if (launches.incrementAndGet() <= failures) {
+                    throw new SauceConnectException("Sauce Connect failed to start");
+                }
+                return new SauceConnectPoolTest.FakeProcess();
+            }
+        };
+        HudsonSauceManagerFactory.getInstance().getContainer().addComponent(sauceConnectFourManager, SauceConnectFourManager.class.getName());
+    }
+
+    @Test
+    public void configurationsUseTheParentTunnel() throws Exception {
+        MatrixBuild build = runMatrixBuild("-i matrix-shared");
+        assertEquals(Result.SUCCESS, build.getResult());
+        assertEquals(1, launches.get());
+
+        SauceConnectMatrixTunnel matrixTunnel = build.getAction(SauceConnectMatrixTunnel.class);
+        assertNotNull(matrixTunnel);
+        assertFalse(matrixTunnel.isRunning());
+        assertEquals(2, build.getExactRuns().size());
+        for (MatrixRun run : build.getExactRuns()) {
+            String log = JenkinsRule.getLog(run);
+            assertTrue(log.contains("Using the Sauce Connect tunnel started for " + build.getFullDisplayName()));
+            assertTrue(log.contains(SauceOnDemandBuildWrapper.SELENIUM_HOST + "=" + matrixTunnel.getHostName()));
+            assertFalse(log.contains("Launching Sauce Connect"));
+        }
+    }
+
+    @Test
+    public void configurationsLaunchTheirOwnTunnelWhenSharedLaunchFails() throws Exception {
+        failures = 1;
+        MatrixBuild build = runMatrixBuild("-i matrix-fallback");
+        assertEquals(Result.SUCCESS, build.getResult());
+        assertNull(build.getAction(SauceConnectMatrixTunnel.class));
+        assertTrue(JenkinsRule.getLog(build).contains("Unable to launch the shared Sauce Connect tunnel"));
+        assertTrue(launches.get() > 1);
+
+        for (MatrixRun run : build.getExactRuns()) {
+            String log = JenkinsRule.getLog(run);
+            assertFalse(log.contains("Using the Sauce Connect tunnel started for"));
+            assertTrue(log.contains("Launching Sauce Connect"));
+        }
+    }
+
+    @Test
+    public void tunnelIsReleasedOnce() throws Exception {
+        SauceOnDemandBuildWrapper wrapper = mock(SauceOnDemandBuildWrapper.class);
+        SauceConnectMatrixTunnel matrixTunnel = new SauceConnectMatrixTunnel(wrapper, null, "localhost", "-i matrix-release");
+        TaskListener listener = new StreamTaskListener(new ByteArrayOutputStream());
+        MatrixBuild build = mock(MatrixBuild.class);
+        when(build.getAction(SauceConnectMatrixTunnel.class)).thenReturn(matrixTunnel);
+
+        //released by the aggregator once the configurations have finished, then by the listener once the build completes
+        matrixTunnel.release(listener);
+        new SauceOnDemandRunListener().onCompleted(build, listener);
+
+        assertFalse(matrixTunnel.isRunning());
+        verify(wrapper).closeMatrixTunnel(null, listener, "-i matrix-release");
+    }
+
+    private MatrixBuild runMatrixBuild(String options) throws Exception {
+        MatrixProject project = jenkinsRule.createMatrixProject();
+        project.setAxes(new AxisList(new TextAxis("browser", "firefox", "chrome")));
+        project.getBuildWrappersList().add(new SauceOnDemandBuildWrapper(
+                true,
+                null,
+                new Credentials("username", "access key"),
+                new SeleniumInformation("webDriver", null, null, null, null),
+                null,
+                null,
+                null,
+                options,
+                null,
+                null,
+                false,
+                false,
+                false,
+                true,
+                true));
+        project.getBuildersList().add(new TestBuilder() {
+            @Override
+            public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+                String host = build.getEnvironment(listener).get(SauceOnDemandBuildWrapper.SELENIUM_HOST);
+                listener.getLogger().println(SauceOnDemandBuildWrapper.SELENIUM_HOST + "=" + host);
+                return true;
+            }
+        });
+        return project.scheduleBuild2(0).get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,183 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SauceConnectPool} shares tunnels between builds and only closes them once they are idle.
+ */
+public class SauceConnectPoolTest {
+
+    private static final String KEY = SauceConnectPool.key("user", "-i tunnel");
+
+    private ScheduledExecutorService scheduler;
+    private SauceConnectPool pool;
+    private final PrintStream log = new PrintStream(new ByteArrayOutputStream());
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        pool = new SauceConnectPool(scheduler, new TunnelShutdownService(TimeUnit.SECONDS.toMillis(5)));
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void concurrentBuildsShareTunnel() throws Exception {
+        FakeControl control = new FakeControl();
+        Process first = pool.acquire(KEY, control, log);
+        Process second = pool.acquire(KEY, control, log);
+        assertSame(first, second);
+        assertEquals(1, control.opened.get());
+
+        pool.release(KEY, 0, log);
+        pool.awaitClose(KEY, log);
+        assertEquals(0, control.closed.get());
+        pool.release(KEY, 0, log);
+        assertEquals(0, pool.getCount());
+        pool.awaitClose(KEY, log);
+        assertEquals(1, control.closed.get());
+    }
+
+    @Test
+    public void idleTunnelIsReusedWithinLinger() throws Exception {
+        FakeControl control = new FakeControl();
+        Process first = pool.acquire(KEY, control, log);
+        pool.release(KEY, TimeUnit.MINUTES.toMillis(1), log);
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(first, pool.acquire(KEY, control, log));
+        assertEquals(1, control.opened.get());
+        assertEquals(0, control.closed.get());
+        assertEquals(1, pool.getReused());
+    }
+
+    @Test
+    public void idleTunnelIsClosedAfterLinger() throws Exception {
+        FakeControl control = new FakeControl();
+        pool.acquire(KEY, control, log);
+        pool.release(KEY, 50, log);
+        assertTrue(control.closing.await(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.getCount());
+
+        pool.acquire(KEY, control, log);
+        assertEquals(2, control.opened.get());
+    }
+
+    @Test
+    public void exitedTunnelIsReplaced() throws Exception {
+        FakeControl control = new FakeControl();
+        FakeProcess first = (FakeProcess) pool.acquire(KEY, control, log);
+        pool.release(KEY, TimeUnit.MINUTES.toMillis(1), log);
+        first.alive = false;
+
+        Process second = pool.acquire(KEY, control, log);
+        assertNotSame(first, second);
+        //the dead tunnel is closed before its replacement is started
+        assertEquals(1, control.closed.get());
+        assertEquals(1, pool.getDiscarded());
+    }
+
+    @Test
+    public void tunnelsAreKeyedOnOptions() throws Exception {
+        FakeControl control = new FakeControl();
+        Process first = pool.acquire(KEY, control, log);
+        Process other = pool.acquire(SauceConnectPool.key("user", "-i other"), control, log);
+        assertNotSame(first, other);
+        assertEquals(2, pool.getCount());
+    }
+
+    @Test
+    public void failedStartIsNotPooled() throws Exception {
+        FakeControl control = new FakeControl();
+        control.fail = true;
+        try {
+            pool.acquire(KEY, control, log);
+            fail("expected the tunnel to fail to start");
+        } catch (AbstractSauceTunnelManager.SauceConnectException e) {
+            //expected
+        }
+        assertEquals(0, pool.getCount());
+
+        control.fail = false;
+        assertNotNull(pool.acquire(KEY, control, log));
+    }
+
+    private static final class FakeControl implements SauceConnectPool.Control {
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+        private final CountDownLatch closing = new CountDownLatch(1);
+        private volatile boolean fail;
+        private volatile FakeProcess lastProcess;
+
+        public Process open(PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException {
+            if (fail) {
+                throw new AbstractSauceTunnelManager.SauceConnectException("Unable to start");
+            }
+            opened.incrementAndGet();
+            lastProcess = new FakeProcess();
+            return lastProcess;
+        }
+
+        public void close(PrintStream log) {
+            lastProcess.alive = false;
+            closed.incrementAndGet();
+            closing.countDown();
+        }
+    }
+
+    static final class FakeProcess extends Process {
+        volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (alive) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+import com.saucelabs.ci.sauceconnect.SauceConnectFourManager;
+import com.saucelabs.hudson.HudsonSauceManagerFactory;
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.slaves.DumbSlave;
+import hudson.util.StreamTaskListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SauceConnectPrewarmer} only starts tunnels on matching nodes, for the projects whose tunnel
+ * doesn't depend on the build, and leaves them idle in the {@link SauceConnectPool}.
+ */
+public class SauceConnectPrewarmerTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    private final AtomicInteger launches = new AtomicInteger();
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private String prewarmedOptions;
+
+    @Before
+    public void setUp() throws Exception {
+        HudsonSauceManagerFactory.getInstance().start();
+        SauceConnectFourManager sauceConnectFourManager = new SauceConnectFourManager() {
+            @Override
+            public Process openConnection(String username, String apiKey, int port, File sauceConnectJar, String options, String httpsProtocol, PrintStream printStream, Boolean verboseLogging, String sauceConnectPath) throws SauceConnectException {
+                launches.incrementAndGet();
+                return new SauceConnectPoolTest.FakeProcess();
+            }
+        };
+        HudsonSauceManagerFactory.getInstance().getContainer().addComponent(sauceConnectFourManager, SauceConnectFourManager.class.getName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (prewarmedOptions != null) {
+            //close the idle tunnel rather than leaving it to the idle time
+            String key = SauceConnectPool.key("username", prewarmedOptions);
+            SauceConnectPool.get().acquire(key, new SauceConnectPool.Control() {
+                public Process open(PrintStream log) throws AbstractSauceTunnelManager.SauceConnectException {
+                    throw new AbstractSauceTunnelManager.SauceConnectException("Tunnel should still be running");
+                }
+
+                public void close(PrintStream log) {
+                }
+            }, new PrintStream(output));
+            SauceConnectPool.get().release(key, 0, new PrintStream(output));
+        }
+    }
+
+    @Test
+    public void onlyNodesMatchingLabelsArePrewarmed() throws Exception {
+        DumbSlave sauceSlave = jenkinsRule.createSlave(Label.get("sauce"));
+        DumbSlave otherSlave = jenkinsRule.createSlave(Label.get("other"));
+
+        PluginImpl.get().setSauceConnectPrewarmLabels(null);
+        assertFalse(SauceConnectPrewarmer.isPrewarmed(sauceSlave));
+
+        PluginImpl.get().setSauceConnectPrewarmLabels("sauce");
+        assertTrue(SauceConnectPrewarmer.isPrewarmed(sauceSlave));
+        assertFalse(SauceConnectPrewarmer.isPrewarmed(otherSlave));
+
+        PluginImpl.get().setSauceConnectPrewarmLabels("sauce || other");
+        assertTrue(SauceConnectPrewarmer.isPrewarmed(otherSlave));
+    }
+
+    @Test
+    public void projectsAreMatchedToNode() throws Exception {
+        DumbSlave sauceSlave = jenkinsRule.createSlave(Label.get("sauce"));
+        FreeStyleProject onSlave = jenkinsRule.createFreeStyleProject();
+        onSlave.getBuildWrappersList().add(createWrapper("-i on-slave"));
+        onSlave.setAssignedLabel(Label.get("sauce"));
+        FreeStyleProject elsewhere = jenkinsRule.createFreeStyleProject();
+        elsewhere.getBuildWrappersList().add(createWrapper("-i elsewhere"));
+        elsewhere.setAssignedLabel(Label.get("other"));
+
+        List<SauceOnDemandBuildWrapper> wrappers = SauceConnectPrewarmer.getWrappers(sauceSlave);
+        assertEquals(1, wrappers.size());
+        assertEquals("-i on-slave", wrappers.get(0).getOptions());
+    }
+
+    @Test
+    public void matrixConfigurationsAreSkipped() throws Exception {
+        MatrixProject project = jenkinsRule.createMatrixProject();
+        project.setAxes(new AxisList(new TextAxis("browser", "firefox", "chrome")));
+        SauceOnDemandBuildWrapper wrapper = createWrapper("-i matrix");
+        project.getBuildWrappersList().add(wrapper);
+        assertEquals(2, project.getActiveConfigurations().size());
+
+        List<SauceOnDemandBuildWrapper> wrappers = SauceConnectPrewarmer.getWrappers(jenkinsRule.jenkins);
+        assertEquals(1, wrappers.size());
+        assertSame(wrapper, wrappers.get(0));
+    }
+
+    @Test
+    public void optionsWithBuildVariablesAreSkipped() throws Exception {
+        SauceOnDemandBuildWrapper wrapper = createWrapper("-i ${BUILD_NUMBER}");
+        assertFalse(wrapper.prewarmTunnel(jenkinsRule.jenkins.toComputer(), new StreamTaskListener(output), SauceConnectPrewarmer.getIdleTime()));
+        assertEquals(0, launches.get());
+    }
+
+    @Test
+    public void tunnelIsReleasedForIdleTime() throws Exception {
+        prewarmedOptions = "-i prewarmed";
+        SauceOnDemandBuildWrapper wrapper = createWrapper(prewarmedOptions);
+        int idle = SauceConnectPool.get().getIdleCount();
+        long idleTime = SauceConnectPrewarmer.getIdleTime();
+        assertTrue(idleTime >= TimeUnit.SECONDS.toMillis(PluginImpl.get().getSauceConnectLinger()));
+
+        assertTrue(wrapper.prewarmTunnel(jenkinsRule.jenkins.toComputer(), new StreamTaskListener(output), idleTime));
+        assertEquals(1, launches.get());
+        //the tunnel isn't held by any build, but kept running for the idle time
+        assertEquals(idle + 1, SauceConnectPool.get().getIdleCount());
+        assertTrue(output.toString().contains("Keeping idle Sauce Connect tunnel running for "
+                + TimeUnit.MILLISECONDS.toSeconds(idleTime) + " seconds"));
+    }
+
+    private SauceOnDemandBuildWrapper createWrapper(String options) {
+        return new SauceOnDemandBuildWrapper(
+                true,
+                null,
+                new Credentials("username", "access key"),
+                new SeleniumInformation("webDriver", null, null, null, null),
+                null,
+                null,
+                null,
+                options,
+                null,
+                null,
+                true,
+                false,
+                false,
+                true);
+    }
+}
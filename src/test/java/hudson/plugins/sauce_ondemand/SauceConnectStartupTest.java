@@ -0,0 +1,253 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.sauceconnect.AbstractSauceTunnelManager;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SauceConnectStartup} follows the phases of Sauce Connect's startup from its output, and that
+ * {@link SauceConnectStartupMonitor} fails a launch as soon as a phase exceeds its deadline.
+ */
+public class SauceConnectStartupTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final PrintStream log = new PrintStream(output, true);
+
+    @Test
+    public void phasesAreDetectedFromOutput() throws Exception {
+        SauceConnectStartup startup = new SauceConnectStartup();
+        assertEquals(SauceConnectStartup.Phase.LAUNCH, startup.getPhase());
+
+        startup.line("20 Feb 10:00:00 - Sauce Connect 4.3.6, build 1628");
+        assertEquals(SauceConnectStartup.Phase.LAUNCH, startup.getPhase());
+        startup.line("20 Feb 10:00:00 - Starting up; pid 1234");
+        assertEquals(SauceConnectStartup.Phase.PROCESS_STARTED, startup.getPhase());
+        startup.line("20 Feb 10:00:02 - Tunnel ID: 0123456789abcdef");
+        assertEquals(SauceConnectStartup.Phase.TUNNEL_CREATED, startup.getPhase());
+        startup.line("20 Feb 10:00:09 - Sauce Connect is up, you may start your tests.");
+        assertEquals(SauceConnectStartup.Phase.READY, startup.getPhase());
+
+        assertTrue(startup.getTotal() >= 0);
+        assertNull(startup.getFailedPhase());
+    }
+
+    @Test
+    public void unrecognisedPhasesAreFilledIn() {
+        SauceConnectStartup startup = new SauceConnectStartup();
+        startup.line("Connected! You may start your tests.");
+        assertEquals(SauceConnectStartup.Phase.READY, startup.getPhase());
+        assertTrue(startup.getDuration(SauceConnectStartup.Phase.PROCESS_STARTED) >= 0);
+        assertTrue(startup.getDuration(SauceConnectStartup.Phase.TUNNEL_CREATED) >= 0);
+    }
+
+    @Test
+    public void failureRecordsPhaseNotReached() {
+        SauceConnectStartup startup = new SauceConnectStartup();
+        startup.line("Starting up; pid 1234");
+        startup.failed("Unable to create tunnel");
+        assertEquals(SauceConnectStartup.Phase.TUNNEL_CREATED, startup.getFailedPhase());
+        assertEquals(-1, startup.getTotal());
+        assertTrue(startup.toString().contains("Unable to create tunnel"));
+    }
+
+    @Test
+    public void awaitChangeReturnsOnceNextPhaseIsReached() throws Exception {
+        final SauceConnectStartup startup = new SauceConnectStartup();
+        Thread output = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                startup.line("Starting up; pid 1234");
+            }
+        });
+        long start = System.currentTimeMillis();
+        output.start();
+        startup.awaitChange(SauceConnectStartup.Phase.LAUNCH, TimeUnit.SECONDS.toMillis(30));
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+        assertEquals(SauceConnectStartup.Phase.PROCESS_STARTED, startup.getPhase());
+        output.join();
+
+        //doesn't wait once the phase has moved on
+        start = System.currentTimeMillis();
+        startup.awaitChange(SauceConnectStartup.Phase.LAUNCH, TimeUnit.SECONDS.toMillis(30));
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    public void awaitChangeReturnsOnFailure() throws Exception {
+        final SauceConnectStartup startup = new SauceConnectStartup();
+        Thread failure = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                startup.failed("Unable to start");
+            }
+        });
+        long start = System.currentTimeMillis();
+        failure.start();
+        startup.awaitChange(SauceConnectStartup.Phase.LAUNCH, TimeUnit.SECONDS.toMillis(30));
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+        failure.join();
+    }
+
+    @Test
+    public void monitorReturnsProcessOnceReady() throws Exception {
+        final Process process = new SauceConnectPoolTest.FakeProcess();
+        SauceConnectStartup startup = new SauceConnectStartup();
+        Process started = new SauceConnectStartupMonitor(TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(5), TimeUnit.SECONDS.toMillis(5))
+                .start(new SauceConnectStartupMonitor.Opener() {
+                    public Process open(PrintStream output) {
+                        output.println("Starting up; pid 1234");
+                        output.println("Tunnel ID: 0123456789abcdef");
+                        output.println("Sauce Connect is up, you may start your tests.");
+                        return process;
+                    }
+                }, null, "-i tunnel", true, log, startup);
+        assertSame(process, started);
+        assertEquals(SauceConnectStartup.Phase.READY, startup.getPhase());
+        //the output of Sauce Connect is still written to the build
+        assertTrue(output.toString().contains("Tunnel ID: 0123456789abcdef"));
+    }
+
+    @Test
+    public void monitorFailsWhenPhaseExceedsDeadline() throws Exception {
+        final CountDownLatch stuck = new CountDownLatch(1);
+        final AtomicInteger cleanups = new AtomicInteger();
+        SauceConnectStartup startup = new SauceConnectStartup();
+        long start = System.currentTimeMillis();
+        try {
+            new SauceConnectStartupMonitor(TimeUnit.SECONDS.toMillis(30), 300, TimeUnit.SECONDS.toMillis(30))
+                    .start(new SauceConnectStartupMonitor.Opener() {
+                        public Process open(PrintStream output) throws AbstractSauceTunnelManager.SauceConnectException {
+                            output.println("Starting up; pid 1234");
+                            try {
+                                stuck.await();
+                            } catch (InterruptedException e) {
+                                throw new AbstractSauceTunnelManager.SauceConnectException(e);
+                            }
+                            return null;
+                        }
+                    }, new Runnable() {
+                        public void run() {
+                            cleanups.incrementAndGet();
+                        }
+                    }, "-i tunnel", true, log, startup);
+            fail("expected the launch to time out");
+        } catch (SauceConnectStartupMonitor.StartupException e) {
+            assertSame(startup, e.getStartup());
+        } finally {
+            stuck.countDown();
+        }
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10));
+        assertEquals(SauceConnectStartup.Phase.TUNNEL_CREATED, startup.getFailedPhase());
+        assertEquals(1, cleanups.get());
+    }
+
+    @Test
+    public void processReturnedAfterDeadlineIsDestroyedBeforeCleanup() throws Exception {
+        final SauceConnectPoolTest.FakeProcess process = new SauceConnectPoolTest.FakeProcess();
+        final AtomicBoolean aliveAtCleanup = new AtomicBoolean(true);
+        SauceConnectStartup startup = new SauceConnectStartup();
+        try {
+            new SauceConnectStartupMonitor(TimeUnit.SECONDS.toMillis(30), 300, TimeUnit.SECONDS.toMillis(30))
+                    .start(new SauceConnectStartupMonitor.Opener() {
+                        public Process open(PrintStream output) {
+                            output.println("Starting up; pid 1234");
+                            //the tunnel manager doesn't respond to being interrupted
+                            long end = System.currentTimeMillis() + 1000;
+                            while (System.currentTimeMillis() < end) {
+                                try {
+                                    Thread.sleep(50);
+                                } catch (InterruptedException e) {
+                                    //ignored
+                                }
+                            }
+                            return process;
+                        }
+                    }, new Runnable() {
+                        public void run() {
+                            aliveAtCleanup.set(process.alive);
+                        }
+                    }, "-i tunnel", true, log, startup);
+            fail("expected the launch to time out");
+        } catch (SauceConnectStartupMonitor.StartupException e) {
+            assertSame(startup, e.getStartup());
+        }
+        assertFalse(process.alive);
+        assertFalse(aliveAtCleanup.get());
+    }
+
+    @Test
+    public void totalDeadlineAppliesUntilPhaseIsDetected() throws Exception {
+        final Process process = new SauceConnectPoolTest.FakeProcess();
+        SauceConnectStartup startup = new SauceConnectStartup();
+        //the process deadline alone would fail the launch, as no phase is detected from the output
+        Process started = new SauceConnectStartupMonitor(300, TimeUnit.SECONDS.toMillis(30), TimeUnit.SECONDS.toMillis(30))
+                .start(new SauceConnectStartupMonitor.Opener() {
+                    public Process open(PrintStream output) throws AbstractSauceTunnelManager.SauceConnectException {
+                        output.println("Launching Sauce Connect");
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException e) {
+                            throw new AbstractSauceTunnelManager.SauceConnectException(e);
+                        }
+                        return process;
+                    }
+                }, null, "-i tunnel", true, log, startup);
+        assertSame(process, started);
+        assertEquals(SauceConnectStartup.Phase.READY, startup.getPhase());
+    }
+
+    @Test
+    public void monitorFollowsLogFile() throws Exception {
+        final File logFile = File.createTempFile("sauce-connect", ".log");
+        logFile.deleteOnExit();
+        SauceConnectStartup startup = new SauceConnectStartup();
+        new SauceConnectStartupMonitor(0, 0, 0).start(new SauceConnectStartupMonitor.Opener() {
+            public Process open(PrintStream output) throws AbstractSauceTunnelManager.SauceConnectException {
+                try {
+                    FileWriter writer = new FileWriter(logFile);
+                    writer.write("Starting up; pid 1234\nTunnel ID: 0123456789abcdef\n");
+                    writer.close();
+                    //give the log file time to be read
+                    Thread.sleep(1000);
+                } catch (Exception e) {
+                    throw new AbstractSauceTunnelManager.SauceConnectException(e);
+                }
+                return new SauceConnectPoolTest.FakeProcess();
+            }
+        }, null, "-i tunnel -l " + logFile.getAbsolutePath(), false, log, startup);
+        assertTrue(startup.getDuration(SauceConnectStartup.Phase.TUNNEL_CREATED) >= 0);
+        assertTrue(startup.getReached(SauceConnectStartup.Phase.TUNNEL_CREATED) < startup.getReached(SauceConnectStartup.Phase.READY));
+    }
+
+    @Test
+    public void deadlinesAreCombinedWithoutOutput() {
+        assertEquals(600, new SauceConnectStartupMonitor(100, 200, 300).getTotalDeadline());
+        assertEquals(0, new SauceConnectStartupMonitor(100, 0, 300).getTotalDeadline());
+    }
+
+    @Test
+    public void logFileIsFoundInOptions() {
+        assertEquals(new File("/tmp/sc.log"), SauceConnectStartupMonitor.getLogFile("-i tunnel -l /tmp/sc.log"));
+        assertEquals(new File("/tmp/sc.log"), SauceConnectStartupMonitor.getLogFile("--logfile /tmp/sc.log -v"));
+        assertEquals(new File("/tmp/sc.log"), SauceConnectStartupMonitor.getLogFile("--logfile=/tmp/sc.log"));
+        assertNull(SauceConnectStartupMonitor.getLogFile("-i tunnel"));
+    }
+}
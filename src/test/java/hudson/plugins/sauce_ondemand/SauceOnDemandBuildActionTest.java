@@ -0,0 +1,267 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import com.saucelabs.saucerest.SauceREST;
+import hudson.model.FreeStyleBuild;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that {@link SauceOnDemandBuildAction} retrieves the jobs of a build a page at a time, only retrieves the
+ * jobs which the bulk retrieval and the background retrieval missed individually, and keeps its index of the jobs up
+ * to date.
+ */
+public class SauceOnDemandBuildActionTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void jobsAreRetrievedAPageAtATime() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(249, 150));
+        sauceREST.pages.add(jobs(149, 50));
+        sauceREST.pages.add(jobs(49, 0));
+
+        List<JobInformation> jobs = createAction(sauceREST, "job#1").retrieveJobIdsFromSauce();
+        assertEquals(250, jobs.size());
+        assertEquals(Arrays.asList(0, 100, 200), sauceREST.requests);
+        //reversed, so that the jobs are in the order they were run
+        for (int i = 0; i < jobs.size(); i++) {
+            assertEquals(id(i), jobs.get(i).getJobId());
+        }
+    }
+
+    @Test
+    public void jobsReturnedByMoreThanOnePageAreOnlyAddedOnce() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(150, 51));
+        //a job started after the first page was retrieved shifts the second page by one
+        sauceREST.pages.add(jobs(51, 0));
+
+        List<JobInformation> jobs = createAction(sauceREST, "job#2").retrieveJobIdsFromSauce();
+        assertEquals(151, jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            assertEquals(id(i), jobs.get(i).getJobId());
+        }
+    }
+
+    @Test
+    public void jobsMissedByBulkRetrievalAreRetrievedIndividually() throws Exception {
+        //with bulk job retrieval, no job details are retrieved while the build is running
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(1, 0));
+        sauceREST.jobInfo.put(id(5), "{\"id\":\"" + id(5) + "\",\"name\":\"SearchTest\",\"build\":null}");
+        SauceOnDemandBuildAction action = createAction(sauceREST, "job#3");
+
+        Map<String, String> sessions = new LinkedHashMap<String, String>();
+        sessions.put(id(0), "LoginTest");
+        sessions.put(id(5), null);
+        action.processSessionIds(sessions);
+
+        assertEquals(1, sauceREST.requests.size());
+        //only the job which wasn't returned by the bulk retrieval is retrieved individually
+        assertEquals(1, sauceREST.jobInfoRequests.size());
+        assertEquals(id(5), sauceREST.jobInfoRequests.get(0));
+        assertEquals(3, action.getJobs().size());
+        assertEquals("SearchTest", action.getJob(id(5)).getName());
+        assertFalse(action.getJob(id(5)).isHasBuildNumber());
+        assertTrue(action.getJob(id(0)).isHasBuildNumber());
+    }
+
+    @Test
+    public void jobsNotRetrievedInTheBackgroundAreRetrievedWhenProcessed() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        final StubSauceREST enricherREST = new StubSauceREST();
+        enricherREST.jobInfo.put(id(1), "{\"id\":\"" + id(1) + "\",\"name\":\"StoredName\",\"build\":\"job_1\"}");
+        SessionEnricher enricher = new SessionEnricher("username", "access key") {
+            @Override
+            protected SauceREST getSauceREST() {
+                return enricherREST;
+            }
+        };
+        SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser = new SauceOnDemandBuildWrapper.SauceOnDemandLogParser(
+                new ByteArrayOutputStream(), Charset.forName("UTF-8"), enricher);
+        SauceOnDemandBuildAction action = createAction(sauceREST, "job#8", logParser);
+        enricher.sessionFound(id(1), "LoginTest");
+        long timeout = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (!enricherREST.jobInfoRequests.contains(id(1))) {
+            assertTrue(System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+
+        Map<String, String> sessions = new LinkedHashMap<String, String>();
+        sessions.put(id(1), "LoginTest");
+        sessions.put(id(2), "SearchTest");
+        action.processSessionIds(sessions);
+
+        //the job retrieved in the background isn't retrieved again, the other job is retrieved when processed
+        assertEquals(Arrays.asList(id(1)), enricherREST.jobInfoRequests);
+        assertEquals(Arrays.asList(id(2)), sauceREST.jobInfoRequests);
+        assertEquals("StoredName", action.getJob(id(1)).getName());
+        assertEquals("SearchTest", action.getJob(id(2)).getName());
+        logParser.close();
+    }
+
+    @Test
+    public void jobsAreLookedUpById() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(2, 0));
+        SauceOnDemandBuildAction action = createAction(sauceREST, "job#4");
+
+        assertEquals(id(1), action.getJob(id(1)).getJobId());
+        assertEquals("test 1", action.getJob(id(1)).getName());
+        assertNull(action.getJob(id(7)));
+    }
+
+    @Test
+    public void indexIsUpdatedWhenJobIsAdded() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(1, 0));
+        SauceOnDemandBuildAction action = createAction(sauceREST, "job#5");
+        //builds the index
+        assertNull(action.getJob(id(5)));
+
+        action.processSessionIds(null, "SauceOnDemandSessionID=" + id(5) + " job-name=SearchTest");
+        assertEquals("SearchTest", action.getJob(id(5)).getName());
+        assertEquals(3, action.getJobs().size());
+
+        //a job which is already indexed isn't retrieved again
+        action.processSessionIds(null, "SauceOnDemandSessionID=" + id(5) + " job-name=SearchTest");
+        assertEquals(1, sauceREST.jobInfoRequests.size());
+        assertEquals(3, action.getJobs().size());
+    }
+
+    @Test
+    public void indexIsRebuiltWhenJobsAreReadAgain() throws Exception {
+        StubSauceREST sauceREST = new StubSauceREST();
+        sauceREST.pages.add(jobs(1, 0));
+        SauceOnDemandBuildAction action = createAction(sauceREST, "job#6");
+        assertNotNull(action.getJob(id(0)));
+
+        //the jobs are evicted from the cache, and read from a file which has since been rewritten
+        new JobInformationFile(action.getBuild().getRootDir()).write(Arrays.asList(job(id(9))));
+        JobInformationCache.get().invalidate(JobInformationCache.key(action.getBuild()));
+        assertNull(action.getJob(id(0)));
+        assertEquals(id(9), action.getJob(id(9)).getJobId());
+    }
+
+    @Test
+    public void indexIsRebuiltWhenLegacyJobsAreMigrated() throws Exception {
+        SauceOnDemandBuildAction action = createAction(new StubSauceREST(), "job#7");
+        Field jobInformation = SauceOnDemandBuildAction.class.getDeclaredField("jobInformation");
+        jobInformation.setAccessible(true);
+        jobInformation.set(action, new ArrayList<JobInformation>(Arrays.asList(job(id(0)))));
+        action.onLoad(action.getBuild());
+        assertNotNull(action.getJob(id(0)));
+
+        //the file written by an earlier migration takes precedence over the jobs in build.xml
+        new JobInformationFile(action.getBuild().getRootDir()).write(Arrays.asList(job(id(9))));
+        action.migrateJobs();
+        assertNull(action.getJob(id(0)));
+        assertEquals(id(9), action.getJob(id(9)).getJobId());
+    }
+
+    private SauceOnDemandBuildAction createAction(SauceREST sauceREST, String id) throws Exception {
+        return createAction(sauceREST, id, null);
+    }
+
+    private SauceOnDemandBuildAction createAction(final SauceREST sauceREST, String id, SauceOnDemandBuildWrapper.SauceOnDemandLogParser logParser) throws Exception {
+        FreeStyleBuild build = mock(FreeStyleBuild.class);
+        when(build.getRootDir()).thenReturn(folder.newFolder(id.replace('#', '_')));
+        when(build.getExternalizableId()).thenReturn(id);
+        when(build.getFullDisplayName()).thenReturn(id.replace("#", " #"));
+        when(build.getDisplayName()).thenReturn(id.substring(id.indexOf('#')));
+        return new SauceOnDemandBuildAction(build, logParser, "username", "access key") {
+            @Override
+            protected SauceREST getSauceREST() {
+                return sauceREST;
+            }
+        };
+    }
+
+    /**
+     * @return the details of the jobs, from the first id down to the last id, as returned by the Sauce REST API
+     */
+    private static String jobs(int first, int last) throws Exception {
+        JSONArray jobs = new JSONArray();
+        for (int i = first; i >= last; i--) {
+            JSONObject job = new JSONObject();
+            job.put("id", id(i));
+            job.put("name", "test " + i);
+            job.put("passed", "true");
+            job.put("build", "job_1");
+            jobs.put(job);
+        }
+        return new JSONObject().put("jobs", jobs).toString();
+    }
+
+    private static JobInformation job(String id) {
+        JobInformation job = new JenkinsJobInformation(id, "hmac");
+        job.setName("test");
+        return job;
+    }
+
+    private static String id(int i) {
+        return Integer.toHexString(0x1000 + i);
+    }
+
+    /**
+     * Returns the pages of jobs in the order they are requested, and the details of individual jobs.
+     */
+    private static class StubSauceREST extends SauceREST {
+
+        private static final Pattern SKIP = Pattern.compile("skip=(\\d+)");
+
+        private final List<String> pages = new ArrayList<String>();
+        private final Map<String, String> jobInfo = new LinkedHashMap<String, String>();
+        private final List<Integer> requests = new ArrayList<Integer>();
+        private final List<String> jobInfoRequests = Collections.synchronizedList(new ArrayList<String>());
+
+        StubSauceREST() {
+            super("username", "access key");
+        }
+
+        @Override
+        public String retrieveResults(URL restEndpoint) {
+            Matcher matcher = SKIP.matcher(restEndpoint.getQuery());
+            assertTrue(matcher.find());
+            int skip = Integer.parseInt(matcher.group(1));
+            requests.add(skip);
+            int page = requests.size() - 1;
+            return page < pages.size() ? pages.get(page) : "{\"jobs\":[]}";
+        }
+
+        @Override
+        public String getJobInfo(String jobId) {
+            jobInfoRequests.add(jobId);
+            String info = jobInfo.get(jobId);
+            return info == null ? "" : info;
+        }
+    }
+}
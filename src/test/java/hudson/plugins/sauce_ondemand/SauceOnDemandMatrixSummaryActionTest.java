@@ -0,0 +1,80 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import hudson.util.XStream2;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SauceOnDemandMatrixSummaryAction} is updated incrementally as configurations finish.
+ */
+public class SauceOnDemandMatrixSummaryActionTest {
+
+    private final SauceOnDemandMatrixSummaryAction summary = new SauceOnDemandMatrixSummaryAction();
+
+    @Test
+    public void configurationsAreAggregated() throws Exception {
+        JobInformation chromePassed = job("1", "chrome", "true");
+        JobInformation chromeFailed = job("2", "chrome", "false");
+        JobInformation firefoxPassed = job("3", "firefox", "passed");
+        JobInformation unknown = job("4", "firefox", null);
+        summary.addJobs("browser=chrome", Arrays.asList(chromePassed, chromeFailed));
+        summary.addJobs("browser=firefox", Arrays.asList(firefoxPassed, unknown));
+
+        assertTrue(summary.hasSauceOnDemandResults());
+        assertEquals(4, summary.getTotal());
+        assertEquals(2, summary.getPassed());
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getBrowsers().get("chrome").getPassed());
+        assertEquals(1, summary.getBrowsers().get("chrome").getFailed());
+        assertEquals(1, summary.getBrowsers().get("firefox").getPassed());
+        assertEquals(Arrays.asList(chromePassed, chromeFailed, firefoxPassed, unknown), summary.getJobs());
+        assertEquals(4, summary.getJobQueryIndex().size());
+    }
+
+    @Test
+    public void rerunConfigurationReplacesJobs() throws Exception {
+        summary.addJobs("browser=chrome", Arrays.asList(job("1", "chrome", "false")));
+        assertEquals(1, summary.getFailed());
+        assertEquals(1, summary.getJobQueryIndex().size());
+
+        JobInformation rerun = job("2", "chrome", "true");
+        summary.addJobs("browser=chrome", Collections.singletonList(rerun));
+        assertEquals(1, summary.getTotal());
+        assertEquals(1, summary.getPassed());
+        assertEquals(0, summary.getFailed());
+        assertEquals(0, summary.getBrowsers().get("chrome").getFailed());
+        assertEquals(Collections.singletonList(rerun), summary.getJobs());
+
+        summary.addJobs("browser=chrome", Collections.<JobInformation>emptyList());
+        assertFalse(summary.hasSauceOnDemandResults());
+        assertTrue(summary.getBrowsers().isEmpty());
+    }
+
+    @Test
+    public void onlyCountsArePersisted() throws Exception {
+        summary.addJobs("browser=chrome", Arrays.asList(job("0123456789abcdef", "chrome", "true"), job("2", "chrome", "false")));
+        XStream2 xstream = new XStream2();
+        String xml = xstream.toXML(summary);
+        assertFalse(xml.contains("0123456789abcdef"));
+
+        SauceOnDemandMatrixSummaryAction loaded = (SauceOnDemandMatrixSummaryAction) xstream.fromXML(xml);
+        assertEquals(2, loaded.getTotal());
+        assertEquals(1, loaded.getPassed());
+        assertEquals(1, loaded.getFailed());
+        assertEquals(1, loaded.getBrowsers().get("chrome").getFailed());
+        //the jobs are read from the configuration runs, and there is no build
+        assertTrue(loaded.getJobs().isEmpty());
+    }
+
+    private static JobInformation job(String id, String browser, String status) {
+        JobInformation job = new JenkinsJobInformation(id, "hmac");
+        job.setBrowser(browser);
+        job.setStatus(status);
+        return job;
+    }
+}
@@ -0,0 +1,45 @@
+package hudson.plugins.sauce_ondemand;
+
+import hudson.tasks.junit.CaseResult;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that {@link SauceOnDemandReportFactory} uses the session ids which were stored with the build.
+ */
+public class SauceOnDemandReportFactoryTest {
+
+    @Test
+    public void storedSessionIds() throws Exception {
+        Map<String, String[]> sessionIds = new HashMap<String, String[]>();
+        sessionIds.put("com.example.LoginTest.testLogin", new String[]{"abc", "def"});
+        SauceOnDemandReportFactory factory = new SauceOnDemandReportFactory(sessionIds);
+
+        List<SauceOnDemandReport> reports = factory.getTestAction(testCase("com.example.LoginTest.testLogin"));
+        assertEquals(1, reports.size());
+        assertEquals(Arrays.asList("abc", "def"), reports.get(0).getIDs());
+
+        assertTrue(factory.getTestAction(testCase("com.example.LoginTest.testLogout")).isEmpty());
+    }
+
+    @Test
+    public void legacyBuildsShareInstance() throws Exception {
+        assertSame(SauceOnDemandReportFactory.INSTANCE, new SauceOnDemandReportFactory(null).readResolve());
+        SauceOnDemandReportFactory factory = new SauceOnDemandReportFactory(new HashMap<String, String[]>());
+        assertSame(factory, factory.readResolve());
+    }
+
+    private static CaseResult testCase(String fullName) {
+        CaseResult cr = mock(CaseResult.class);
+        when(cr.getFullName()).thenReturn(fullName);
+        return cr;
+    }
+}
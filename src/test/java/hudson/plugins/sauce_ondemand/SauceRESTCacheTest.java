@@ -0,0 +1,95 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies the expiry and eviction rules of {@link SauceRESTCache}.
+ */
+public class SauceRESTCacheTest {
+
+    private static final String JOBS_URL = "https://saucelabs.com/rest/v1/user/build/build-1/jobs?full=true&limit=100&skip=0";
+
+    @Test
+    public void responseIsCachedPerCredential() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(1000);
+        URL url = new URL(JOBS_URL);
+        assertNull(cache.get("user", "key", url));
+        cache.put("user", "key", url, "{\"jobs\": []}");
+        assertEquals("{\"jobs\": []}", cache.get("user", "key", url));
+        assertNull(cache.get("user", "otherKey", url));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void unlistedEndpointsAreNotCached() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(1000);
+        URL url = new URL("https://saucelabs.com/rest/v1/user/activity");
+        cache.put("user", "key", url, "{}");
+        assertNull(cache.get("user", "key", url));
+        assertEquals(0, cache.getCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(10);
+        URL first = new URL("https://saucelabs.com/rest/v1/user/jobs/abc1");
+        URL second = new URL("https://saucelabs.com/rest/v1/user/jobs/abc2");
+        URL third = new URL("https://saucelabs.com/rest/v1/user/jobs/abc3");
+        cache.put("user", "key", first, "aaaa");
+        cache.put("user", "key", second, "bbbb");
+        assertNotNull(cache.get("user", "key", first));
+        cache.put("user", "key", third, "cccc");
+        assertNotNull(cache.get("user", "key", first));
+        assertNull(cache.get("user", "key", second));
+        assertNotNull(cache.get("user", "key", third));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(8, cache.getSize());
+    }
+
+    @Test
+    public void invalidateRemovesResponsesOfUser() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(1000);
+        URL url = new URL(JOBS_URL);
+        cache.put("user", "key", url, "{}");
+        cache.put("other", "key", url, "{}");
+        cache.invalidate("user");
+        assertNull(cache.get("user", "key", url));
+        assertNotNull(cache.get("other", "key", url));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void invalidateBuildKeepsOtherResponses() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(1000);
+        URL build = new URL(JOBS_URL);
+        URL otherBuild = new URL("https://saucelabs.com/rest/v1/user/build/build-2/jobs?full=true&limit=100&skip=0");
+        URL browsers = new URL("https://saucelabs.com/rest/v1/info/browsers/webdriver");
+        cache.put("user", "key", build, "{}");
+        cache.put("user", "key", otherBuild, "{}");
+        cache.put("user", "key", browsers, "[]");
+        cache.invalidateBuild("user", "build-1");
+        assertNull(cache.get("user", "key", build));
+        assertNotNull(cache.get("user", "key", otherBuild));
+        assertNotNull(cache.get("user", "key", browsers));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void invalidateJobsRemovesOnlyUpdatedJobs() throws Exception {
+        SauceRESTCache cache = new SauceRESTCache(1000);
+        URL updated = new URL("https://saucelabs.com/rest/v1/user/jobs/abc1");
+        URL other = new URL("https://saucelabs.com/rest/v1/user/jobs/abc12");
+        cache.put("user", "key", updated, "{}");
+        cache.put("user", "key", other, "{}");
+        cache.invalidateJobs("user", Collections.singleton("abc1"));
+        assertNull(cache.get("user", "key", updated));
+        assertNotNull(cache.get("user", "key", other));
+        assertEquals(1, cache.getEvictions());
+    }
+}
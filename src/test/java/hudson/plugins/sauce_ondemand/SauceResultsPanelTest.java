@@ -0,0 +1,85 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.saucelabs.ci.JobInformation;
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the Sauce results panels on the build and project pages are rendered without retrieving the Sauce
+ * jobs, which are only retrieved by the panels' scripts once the page has been displayed.
+ */
+public class SauceResultsPanelTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Test
+    public void panelsAreRenderedWithoutRetrievingJobs() throws Exception {
+        FreeStyleProject project = jenkinsRule.createFreeStyleProject();
+        project.getBuildWrappersList().add(new SauceOnDemandBuildWrapper(
+                false,
+                null,
+                new Credentials("username", "access key"),
+                new SeleniumInformation("webDriver", null, null, null, null),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                false,
+                false,
+                false,
+                true));
+        FreeStyleBuild build = project.scheduleBuild2(0).get(1, TimeUnit.MINUTES);
+        build.getActions().removeAll(build.getActions(SauceOnDemandBuildAction.class));
+        CountingBuildAction action = new CountingBuildAction(build);
+        build.addAction(action);
+
+        JenkinsRule.WebClient webClient = jenkinsRule.createWebClient();
+        //the scripts which retrieve the jobs aren't run
+        webClient.setJavaScriptEnabled(false);
+        HtmlPage buildPage = webClient.getPage(build);
+        assertTrue(buildPage.asXml().contains("sauce-jobs.js"));
+        HtmlPage projectPage = webClient.getPage(project);
+        assertTrue(projectPage.asXml().contains("sauce-jobs.js"));
+
+        assertEquals(0, action.calls.get());
+    }
+
+    /**
+     * Counts the calls which would retrieve the jobs.
+     */
+    public static class CountingBuildAction extends SauceOnDemandBuildAction {
+
+        private final transient AtomicInteger calls = new AtomicInteger();
+
+        public CountingBuildAction(AbstractBuild<?, ?> build) {
+            super(build, null, "username", "access key");
+        }
+
+        @Override
+        public List<JobInformation> getJobs() {
+            calls.incrementAndGet();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean hasSauceOnDemandResults() {
+            calls.incrementAndGet();
+            return false;
+        }
+    }
+}
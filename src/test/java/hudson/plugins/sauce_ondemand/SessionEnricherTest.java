@@ -0,0 +1,139 @@
+package hudson.plugins.sauce_ondemand;
+
+import com.saucelabs.ci.JobInformation;
+import com.saucelabs.saucerest.SauceREST;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SessionEnricher} retrieves the details of Sauce jobs in the background, and that retrievals
+ * which haven't started are cancelled.
+ */
+public class SessionEnricherTest {
+
+    @Rule
+    public transient JenkinsRule jenkinsRule = new JenkinsRule();
+
+    /**
+     * The job ids whose details have been requested.
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The number of retrievals in progress.
+     */
+    private final CountDownLatch started = new CountDownLatch(SessionEnricher.THREAD_COUNT);
+
+    /**
+     * Released to let the retrievals finish.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private volatile boolean blocking;
+
+    private final SauceREST sauceREST = new SauceREST("username", "access key") {
+        @Override
+        public String getJobInfo(String jobId) {
+            requests.add(jobId);
+            if (blocking) {
+                started.countDown();
+                try {
+                    release.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "{\"id\":\"" + jobId + "\",\"name\":\"stored " + jobId + "\",\"build\":\"job_1\"}";
+        }
+    };
+
+    private final SessionEnricher enricher = new SessionEnricher("username", "access key") {
+        @Override
+        protected SauceREST getSauceREST() {
+            return sauceREST;
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+    }
+
+    @Test
+    public void jobDetailsAreRetrievedInTheBackground() throws Exception {
+        enricher.sessionFound("abc", "LoginTest");
+        //a session id which is output again isn't retrieved again
+        enricher.sessionFound("abc", "LoginTest");
+        awaitRequest("abc");
+
+        JobInformation job = enricher.getJobInformation("abc");
+        assertEquals("abc", job.getJobId());
+        assertEquals("stored abc", job.getName());
+        assertTrue(job.isHasBuildNumber());
+        assertEquals(Collections.singletonList("abc"), requests);
+
+        //the details are handed over once
+        assertNull(enricher.getJobInformation("abc"));
+        assertNull(enricher.getJobInformation("unknown"));
+    }
+
+    @Test
+    public void retrievalsWhichHaveNotStartedAreCancelled() throws Exception {
+        blocking = true;
+        for (int i = 0; i < SessionEnricher.THREAD_COUNT; i++) {
+            enricher.sessionFound("running" + i, null);
+        }
+        assertTrue(started.await(1, TimeUnit.MINUTES));
+        enricher.sessionFound("queued", null);
+        enricher.sessionFound("cancelled", null);
+
+        //the caller retrieves the details of a job whose retrieval hasn't started
+        assertNull(enricher.getJobInformation("queued"));
+        enricher.cancel();
+        release.countDown();
+
+        SessionEnricher other = new SessionEnricher("username", "access key") {
+            @Override
+            protected SauceREST getSauceREST() {
+                return sauceREST;
+            }
+        };
+        blocking = false;
+        other.sessionFound("later", null);
+        awaitRequest("later");
+        assertEquals("later", other.getJobInformation("later").getJobId());
+        assertFalse(requests.contains("queued"));
+        assertFalse(requests.contains("cancelled"));
+    }
+
+    @Test
+    public void executorIsRecreatedOnceShutDown() throws Exception {
+        SessionEnricher.shutdown();
+        enricher.sessionFound("abc", null);
+        awaitRequest("abc");
+        assertEquals("abc", enricher.getJobInformation("abc").getJobId());
+        SessionEnricher.shutdown();
+    }
+
+    /**
+     * Waits for the retrieval of the job details to start, as a retrieval which hasn't started is cancelled when the
+     * details are requested.
+     */
+    private void awaitRequest(String jobId) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (!requests.contains(jobId)) {
+            assertTrue("retrieval of " + jobId + " didn't start", System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+}
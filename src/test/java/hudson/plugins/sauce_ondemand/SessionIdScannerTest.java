@@ -0,0 +1,92 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SessionIdScanner} matches the same session ids as {@link SauceOnDemandBuildAction#SESSION_ID_PATTERN}.
+ */
+public class SessionIdScannerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void sessionIdWithoutJobName() throws Exception {
+        Map<String, String> sessions = scan(UTF8, "[junit] SauceOnDemandSessionID=0123345abc\n");
+        assertEquals(1, sessions.size());
+        assertTrue(sessions.containsKey("0123345abc"));
+        assertNull(sessions.get("0123345abc"));
+    }
+
+    @Test
+    public void sessionIdWithJobName() throws Exception {
+        Map<String, String> sessions = scan(UTF8, "SauceOnDemandSessionID=abcdef012 job-name=com.example.SomeTest.testSomething\r\n");
+        assertEquals("com.example.SomeTest.testSomething", sessions.get("abcdef012"));
+    }
+
+    @Test
+    public void multipleSessionIdsOnLine() throws Exception {
+        Map<String, String> sessions = scan(UTF8, "SauceOnDemandSessionID=aaa SauceOnDemandSessionID=bbb\n");
+        assertEquals(2, sessions.size());
+        assertTrue(sessions.containsKey("aaa"));
+        assertTrue(sessions.containsKey("bbb"));
+    }
+
+    @Test
+    public void firstOccurrenceIsKept() throws Exception {
+        SessionIdScanner scanner = new SessionIdScanner(UTF8);
+        scanLine(scanner, UTF8, "SauceOnDemandSessionID=abc job-name=first\n");
+        scanLine(scanner, UTF8, "SauceOnDemandSessionID=abc job-name=second\n");
+        assertEquals("first", scanner.getSessions().get("abc"));
+    }
+
+    @Test
+    public void markerWithoutSessionId() throws Exception {
+        assertTrue(scan(UTF8, "SauceOnDemandSessionID=xyz\n").isEmpty());
+    }
+
+    @Test
+    public void multiByteJobName() throws Exception {
+        Map<String, String> sessions = scan(UTF8, "SauceOnDemandSessionID=abc\u00e9job-name=t\u00e9st\n");
+        assertEquals("t\u00e9st", sessions.get("abc"));
+    }
+
+    @Test
+    public void nonAsciiCompatibleCharset() throws Exception {
+        Charset utf16 = Charset.forName("UTF-16LE");
+        Map<String, String> sessions = scan(utf16, "SauceOnDemandSessionID=abc job-name=test\n");
+        assertEquals("test", sessions.get("abc"));
+    }
+
+    @Test
+    public void matchesRegex() throws Exception {
+        String[] lines = {
+                "SauceOnDemandSessionID=0123abc job-name=name with spaces\n",
+                "prefix SauceOnDemandSessionID=0123abcd\n",
+                "SauceOnDemandSessionID=ff:job-name=x\n",
+                "SauceOnDemandSessionID=ffjob-name=x\n"
+        };
+        for (String line : lines) {
+            Map<String, String> sessions = scan(UTF8, line);
+            java.util.regex.Matcher m = SauceOnDemandBuildAction.SESSION_ID_PATTERN.matcher(line);
+            assertTrue(m.find());
+            assertEquals(line, m.group(2), sessions.get(m.group(1)));
+        }
+    }
+
+    private static Map<String, String> scan(Charset charset, String line) {
+        SessionIdScanner scanner = new SessionIdScanner(charset);
+        scanLine(scanner, charset, line);
+        return scanner.getSessions();
+    }
+
+    private static void scanLine(SessionIdScanner scanner, Charset charset, String line) {
+        byte[] bytes = ("garbage" + line).getBytes(charset);
+        int offset = "garbage".getBytes(charset).length;
+        scanner.scan(bytes, offset, bytes.length - offset);
+    }
+}
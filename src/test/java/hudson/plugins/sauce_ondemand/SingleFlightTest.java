@@ -0,0 +1,78 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link SingleFlight} executes concurrent calls for the same key once.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsAreCoalesced() throws Exception {
+        final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> callable = new Callable<String>() {
+            public String call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "result";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            futures.add(executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return singleFlight.execute("key", callable);
+                }
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return singleFlight.execute("key", callable);
+                    }
+                }));
+            }
+            //give the other callers time to join the call in progress
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("result", future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void completedCallsAreNotRetained() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Integer> callable = new Callable<Integer>() {
+            public Integer call() throws Exception {
+                return calls.incrementAndGet();
+            }
+        };
+        assertEquals(Integer.valueOf(1), singleFlight.execute("key", callable));
+        assertEquals(Integer.valueOf(2), singleFlight.execute("key", callable));
+    }
+}
@@ -0,0 +1,97 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link TestReportSessionScanner} attributes the session ids in the JUnit XML reports to the same tests
+ * as the parsed test results.
+ */
+public class TestReportSessionScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sessionIdsAreAttributedToTests() throws Exception {
+        write("TEST-com.example.LoginTest.xml",
+                "<testsuite name='com.example.LoginTest'>"
+                        + "<testcase classname='com.example.LoginTest' name='login'>"
+                        + "<system-out><![CDATA[starting\nSauceOnDemandSessionID=abc123 job-name=login\n]]></system-out>"
+                        + "</testcase>"
+                        + "<testcase classname='com.example.LoginTest' name='logout'>"
+                        + "<system-err>SauceOnDemandSessionID=def456</system-err>"
+                        + "</testcase>"
+                        + "</testsuite>");
+
+        TestReportSessionScanner.Sessions sessions = scan("**/TEST-*.xml");
+        assertEquals(1, sessions.getReportCount());
+        assertEquals(Collections.singletonList("abc123"), sessions.getSessionIds("com.example.LoginTest.login"));
+        assertEquals(Collections.singletonList("def456"), sessions.getSessionIds("com.example.LoginTest.logout"));
+        assertEquals("login", sessions.getSessions().get("abc123"));
+        assertTrue(sessions.getSessions().containsKey("def456"));
+    }
+
+    @Test
+    public void suiteOutputIsAttributedToTestsWithoutOutput() throws Exception {
+        write("TEST-com.example.SearchTest.xml",
+                "<testsuite name='com.example.SearchTest'>"
+                        + "<testcase name='search'/>"
+                        + "<testcase name='filter'><system-out>no sessions</system-out></testcase>"
+                        + "<system-out>SauceOnDemandSessionID=aaa111\nSauceOnDemandSessionID=bbb222</system-out>"
+                        + "</testsuite>");
+
+        TestReportSessionScanner.Sessions sessions = scan("TEST-*.xml");
+        assertEquals(Arrays.asList("aaa111", "bbb222"), sessions.getSessionIds("com.example.SearchTest.search"));
+        assertTrue(sessions.getSessionIds("com.example.SearchTest.filter").isEmpty());
+        assertEquals(2, sessions.getSessions().size());
+    }
+
+    @Test
+    public void separateSurefireOutputIsScanned() throws Exception {
+        write("TEST-com.example.CartTest.xml",
+                "<testsuite name='com.example.CartTest'><testcase name='add'/></testsuite>");
+        write("com.example.CartTest-output.txt", "SauceOnDemandSessionID=ccc333 job-name=add\n");
+
+        TestReportSessionScanner.Sessions sessions = scan("TEST-*.xml");
+        assertEquals(Collections.singletonList("ccc333"), sessions.getSessionIds("com.example.CartTest.add"));
+    }
+
+    @Test
+    public void staleAndMalformedReportsAreSkipped() throws Exception {
+        File stale = write("TEST-old.xml",
+                "<testsuite name='Old'><testcase name='old'><system-out>SauceOnDemandSessionID=ddd444</system-out></testcase></testsuite>");
+        assertTrue(stale.setLastModified(System.currentTimeMillis() - 60000));
+        write("TEST-broken.xml", "<testsuite name='Broken'><testcase");
+
+        TestReportSessionScanner.Sessions sessions = new TestReportSessionScanner("TEST-*.xml", System.currentTimeMillis() - 1000)
+                .invoke(folder.getRoot(), null);
+        assertEquals(0, sessions.getReportCount());
+        assertTrue(sessions.getSessions().isEmpty());
+    }
+
+    private TestReportSessionScanner.Sessions scan(String pattern) throws Exception {
+        return new TestReportSessionScanner(pattern, 0).invoke(folder.getRoot(), null);
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
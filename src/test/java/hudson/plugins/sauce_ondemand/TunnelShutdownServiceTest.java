@@ -0,0 +1,76 @@
+package hudson.plugins.sauce_ondemand;
+
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link TunnelShutdownService} destroys Sauce Connect processes which don't close in time.
+ */
+public class TunnelShutdownServiceTest {
+
+    @Test
+    public void tunnelIsClosedGracefully() throws Exception {
+        TunnelShutdownService service = new TunnelShutdownService(TimeUnit.SECONDS.toMillis(5));
+        final SauceConnectPoolTest.FakeProcess process = new SauceConnectPoolTest.FakeProcess();
+        service.close("user (tunnel)", process, new SauceConnectPool.Control() {
+            public Process open(PrintStream log) {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close(PrintStream log) {
+                process.alive = false;
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, service.getGraceful());
+        assertEquals(0, service.getDestroyed());
+        assertEquals(0, service.getInProgress());
+    }
+
+    @Test
+    public void processIsDestroyedOnTimeout() throws Exception {
+        TunnelShutdownService service = new TunnelShutdownService(100);
+        final CountDownLatch hang = new CountDownLatch(1);
+        SauceConnectPoolTest.FakeProcess process = new SauceConnectPoolTest.FakeProcess();
+        service.close("user (tunnel)", process, new SauceConnectPool.Control() {
+            public Process open(PrintStream log) {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close(PrintStream log) {
+                try {
+                    hang.await();
+                } catch (InterruptedException e) {
+                    //cancelled by the service
+                }
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertFalse(process.alive);
+        assertEquals(1, service.getDestroyed());
+        assertEquals(0, service.getGraceful());
+    }
+
+    @Test
+    public void processWhichDoesNotExitIsDestroyed() throws Exception {
+        TunnelShutdownService service = new TunnelShutdownService(300);
+        SauceConnectPoolTest.FakeProcess process = new SauceConnectPoolTest.FakeProcess();
+        service.close("user (tunnel)", process, new SauceConnectPool.Control() {
+            public Process open(PrintStream log) {
+                throw new UnsupportedOperationException();
+            }
+
+            public void close(PrintStream log) {
+                //asked to close, but the process keeps running
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertFalse(process.alive);
+        assertEquals(1, service.getDestroyed());
+    }
+}